@@ -1,23 +1,42 @@
 package io.webos.portfolio.browser.control;
 
 import io.webos.portfolio.browser.entity.BrowserConfig;
+import io.webos.portfolio.browser.entity.CachedPage;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.NotFoundException;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service for proxying and sanitizing external web content.
  * Validates URLs against a whitelist, fetches content, removes dangerous tags,
- * rewrites relative URLs, and injects custom styles.
+ * rewrites relative URLs, and injects custom styles, in one pass over the response as it
+ * is read by the {@link HtmlSanitizer}; bodies beyond maxBodyBytes are truncated.
+ * Sanitized pages are kept in the {@link PageCache} and revalidated upstream with
+ * their ETag and Last-Modified once they expire. Concurrent navigations to the same page share
+ * one fetch and sanitization through a {@link SingleFlight}.
  */
 @ApplicationScoped
 public class BrowserService {
@@ -30,6 +49,22 @@ public class BrowserService {
             .followRedirects(HttpClient.Redirect.NORMAL)
             .build();
 
+    @ConfigProperty(name = "webos.browser.max-body-bytes", defaultValue = "5242880")
+    long maxBodyBytes;
+
+    @Inject
+    PageCache pageCache;
+
+    /**
+     * Revalidates pages served stale, off the request path.
+     */
+    ExecutorService revalidations = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Loads running upstream, by normalized URL.
+     */
+    SingleFlight<String> loads = new SingleFlight<>(Executors.newVirtualThreadPerTaskExecutor());
+
     /**
      * Validates if a URL is allowed based on the configured whitelist prefixes.
      * 
@@ -45,58 +80,26 @@ public class BrowserService {
     }
 
     /**
-     * Removes dangerous HTML tags that could execute scripts or embed external content.
-     * Removes: script, iframe, object, embed tags.
-     * 
-     * @param document the Jsoup document to sanitize
-     * @return the sanitized document
+     * Normalizes the URL so that spellings of the same page share their cache entry and fetch:
+     * lowercases scheme and host, drops a default port and the fragment, and resolves dot segments.
+     *
+     * @return the normalized URL, or null if it is not an absolute http(s) URL without user info
      */
-    public Document removeDangerousTags(Document document) {
-        document.select("script, iframe, object, embed").remove();
-        return document;
-    }
-
-    /**
-     * Rewrites relative URLs to absolute URLs using the base URL.
-     * Converts src, href, and action attributes from relative to absolute.
-     * 
-     * @param document the Jsoup document to process
-     * @param baseUrl the base URL for resolving relative URLs
-     * @return the document with absolute URLs
-     */
-    public Document rewriteRelativeUrls(Document document, String baseUrl) {
-        document.setBaseUri(baseUrl);
-        
-        document.select("[src]").forEach(element -> 
-            element.attr("src", element.absUrl("src")));
-        
-        document.select("[href]").forEach(element -> 
-            element.attr("href", element.absUrl("href")));
-        
-        document.select("[action]").forEach(element -> 
-            element.attr("action", element.absUrl("action")));
-        
-        return document;
-    }
-
-    /**
-     * Injects custom styles into the document head.
-     * Creates a head element if one doesn't exist.
-     * 
-     * @param document the Jsoup document to modify
-     * @return the document with injected styles
-     */
-    public Document injectStyles(Document document) {
-        Element head = document.head();
-        if (head == null) {
-            head = document.appendElement("head");
-        }
-        
-        Element styleElement = head.appendElement("style");
-        styleElement.attr("type", "text/css");
-        styleElement.text(this.config.customStyles());
-        
-        return document;
+    static String normalize(String url) {
+        try {
+            var uri = new URI(url.strip()).normalize();
+            var scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+            if (!(scheme.equals("http") || scheme.equals("https")) || uri.getHost() == null || uri.getRawUserInfo() != null) {
+                return null;
+            }
+            var defaultPort = scheme.equals("https") ? 443 : 80;
+            var port = uri.getPort() == -1 || uri.getPort() == defaultPort ? "" : ":" + uri.getPort();
+            var path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            var query = uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
+            return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + port + path + query;
+        } catch (URISyntaxException e) {
+            return null;
+        }
     }
 
     /**
@@ -108,24 +111,47 @@ public class BrowserService {
      * @throws BadGatewayException if the fetch fails or returns an error status
      */
     public String fetchContent(String url) {
+        var response = fetch(url, null);
+        try (var body = response.body()) {
+            return new String(body.readAllBytes(), charset(response.headers()));
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Failed to read content from: {0}", url, e);
+            throw new BadGatewayException("Failed to fetch content: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fetches the URL, conditionally on the validators of the cached page if one is given,
+     * so an unchanged page is answered with an empty 304 response. The body is left to be read
+     * and closed by the caller.
+     *
+     * @throws BadGatewayException if the fetch fails or returns an error status
+     */
+    HttpResponse<InputStream> fetch(String url, CachedPage cached) {
         try {
-            var request = HttpRequest.newBuilder()
+            var builder = HttpRequest.newBuilder()
                     .uri(URI.create(url))
                     .header("User-Agent", this.config.userAgent())
                     .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
                     .timeout(Duration.ofSeconds(30))
-                    .GET()
-                    .build();
+                    .GET();
+            if (cached != null && cached.etag() != null) {
+                builder.header("If-None-Match", cached.etag());
+            }
+            if (cached != null && cached.lastModified() != null) {
+                builder.header("If-Modified-Since", cached.lastModified());
+            }
 
-            var response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            var response = this.httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
             
             if (response.statusCode() >= 400) {
+                response.body().close();
                 LOGGER.log(System.Logger.Level.WARNING, "External site returned error: {0} for URL: {1}", 
                         response.statusCode(), url);
                 throw new BadGatewayException("External site returned error: " + response.statusCode());
             }
             
-            return response.body();
+            return response;
         } catch (IOException | InterruptedException e) {
             LOGGER.log(System.Logger.Level.ERROR, "Failed to fetch content from: {0}", url, e);
             if (e instanceof InterruptedException) {
@@ -138,25 +164,164 @@ public class BrowserService {
     /**
      * Fetches content from a whitelisted URL, sanitizes it, and returns the processed HTML.
      * Orchestrates validation, fetching, sanitization, URL rewriting, and style injection.
+     * A fresh cached page is returned without contacting upstream; an expired one is returned
+     * while it is revalidated in the background, or revalidated first if it may not be served stale.
+     * Requests arriving while the page is loaded wait for that load instead of starting their own.
      * 
      * @param url the target URL to proxy
      * @return sanitized HTML content ready for display
      * @throws NotFoundException if the URL is not in the whitelist
-     * @throws BadGatewayException if the external fetch fails
+     * @throws BadGatewayException if the external fetch fails or the request is interrupted waiting for it
      */
     public String fetchAndSanitize(String url) {
-        if (!isAllowed(url)) {
+        var target = url == null ? null : normalize(url);
+        if (target == null || !isAllowed(target)) {
             LOGGER.log(System.Logger.Level.INFO, "Blocked URL not in whitelist: {0}", url);
             throw new NotFoundException("URL not allowed: " + url);
         }
 
-        var rawHtml = fetchContent(url);
-        var document = Jsoup.parse(rawHtml);
-        
-        removeDangerousTags(document);
-        rewriteRelativeUrls(document, url);
-        injectStyles(document);
-        
-        return document.html();
+        var cached = this.pageCache.get(target);
+        if (cached.isEmpty()) {
+            return coalesced(target, null);
+        }
+        var page = cached.get();
+        var now = System.currentTimeMillis();
+        if (page.fresh(now)) {
+            return page.html();
+        }
+        if (page.servableStale(now)) {
+            revalidateInBackground(target, page);
+            return page.html();
+        }
+        return coalesced(target, page);
+    }
+
+    /**
+     * Loads the page, or joins the load of it already running.
+     */
+    String coalesced(String url, CachedPage cached) {
+        try {
+            return this.loads.run(url, () -> load(url, cached));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BadGatewayException("Navigation to " + url + " was interrupted");
+        }
+    }
+
+    /**
+     * Fetches and sanitizes the page and caches it; with a cached page, only if upstream changed it.
+     */
+    String load(String url, CachedPage cached) {
+        var response = fetch(url, cached != null && cached.revalidatable() ? cached : null);
+        var now = System.currentTimeMillis();
+        if (response.statusCode() == 304 && cached != null) {
+            close(response);
+            return this.pageCache.revalidated(url, cached, response.headers(), now).html();
+        }
+        String html;
+        try (var body = new CappedInputStream(response.body(), this.maxBodyBytes)) {
+            html = sanitize(new InputStreamReader(body, charset(response.headers())), url);
+            if (body.truncated) {
+                LOGGER.log(System.Logger.Level.INFO, "Truncated {0} at {1} bytes", url, this.maxBodyBytes);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Failed to read content from: {0}", url, e);
+            throw new BadGatewayException("Failed to fetch content: " + e.getMessage());
+        }
+        if (response.statusCode() == 200) {
+            this.pageCache.store(url, html, response.headers(), now);
+        }
+        return html;
+    }
+
+    void revalidateInBackground(String url, CachedPage cached) {
+        if (!this.pageCache.startRevalidation(url)) {
+            return;
+        }
+        this.revalidations.execute(() -> {
+            try {
+                coalesced(url, cached);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Revalidating {0} failed: {1}", url, e.getMessage());
+            } finally {
+                this.pageCache.endRevalidation(url);
+            }
+        });
+    }
+
+    /**
+     * Removes dangerous tags, makes URLs absolute and injects the custom styles.
+     */
+    String sanitize(String rawHtml, String url) {
+        return sanitize(new StringReader(rawHtml), url);
+    }
+
+    String sanitize(Reader rawHtml, String url) {
+        var html = new StringWriter(8192);
+        try {
+            new HtmlSanitizer(rawHtml, html, url, this.config.customStyles()).sanitize();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return html.toString();
+    }
+
+    /**
+     * The charset of the Content-Type header, UTF-8 if none or an unknown one is given.
+     */
+    static Charset charset(HttpHeaders headers) {
+        return headers.firstValue("Content-Type")
+                .flatMap(type -> Arrays.stream(type.split(";"))
+                        .map(String::strip)
+                        .filter(parameter -> parameter.toLowerCase(Locale.ROOT).startsWith("charset="))
+                        .map(parameter -> parameter.substring("charset=".length()).replace("\"", ""))
+                        .findFirst())
+                .filter(Charset::isSupported)
+                .map(Charset::forName)
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    static void close(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Closing the response body failed", e);
+        }
+    }
+
+    /**
+     * Ends the stream after limit bytes, closing it there so the rest is not downloaded.
+     */
+    static class CappedInputStream extends FilterInputStream {
+
+        long remaining;
+        boolean truncated;
+
+        CappedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (this.remaining <= 0) {
+                if (!this.truncated && this.in.read() != -1) {
+                    this.truncated = true;
+                    this.in.close();
+                }
+                return -1;
+            }
+            var read = this.in.read(buffer, offset, (int) Math.min(length, this.remaining));
+            if (read > 0) {
+                this.remaining -= read;
+            }
+            return read;
+        }
     }
 }
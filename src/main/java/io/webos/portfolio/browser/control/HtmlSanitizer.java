@@ -0,0 +1,588 @@
+package io.webos.portfolio.browser.control;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Entities;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single-pass streaming sanitizer for proxied pages: tokenizes the HTML as it is read and writes
+ * the sanitized page as it goes, without building a document.
+ * <p>
+ * script, iframe, object and embed elements are dropped with their content; an object left open ends
+ * with the element around it. Comments, and the bogus comments processing instructions make, are kept
+ * with their angle brackets escaped. src, href and action attributes are made absolute against the
+ * page URL; the custom styles are injected before the end of the head, else before the body, else at the end.
+ * Text is copied as is and tags are written anew from their parsed name and attributes, with
+ * attribute values escaped, so every '&lt;' in the output starts a tag written here: whichever
+ * mode a browser tokenizes a part of the page in, it finds no markup the sanitizer did not see.
+ */
+class HtmlSanitizer {
+
+    static final Set<String> DROPPED_WITH_TEXT = Set.of("script", "iframe");
+    static final Set<String> DROPPED_WITH_CHILDREN = Set.of("object");
+    static final Set<String> DROPPED = Set.of("script", "iframe", "object", "embed");
+    static final Set<String> URL_ATTRIBUTES = Set.of("src", "href", "action");
+    static final Set<String> VOID = Set.of("area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta",
+        "param", "source", "track", "wbr");
+    /**
+     * Elements whose content browsers parse as XML, where CDATA sections are text.
+     */
+    static final Set<String> FOREIGN = Set.of("svg", "math");
+
+    final Reader reader;
+    final Writer out;
+    final String baseUrl;
+    final URL base;
+    final String styles;
+
+    char[] buffer = new char[8192];
+    /**
+     * Reused for the tag being written, the name or value being read, and copying the tag out.
+     */
+    StringBuilder tag = new StringBuilder(256);
+    StringBuilder token = new StringBuilder(64);
+    char[] chars = new char[256];
+    int position;
+    int limit;
+    boolean stylesInjected;
+    /**
+     * The elements open inside the dropped element, itself first; empty unless one is being dropped.
+     */
+    ArrayDeque<String> skipped = new ArrayDeque<>();
+    int foreignDepth;
+    /**
+     * Whether the tag read last ended in "/>", which only closes svg and math elements at once.
+     */
+    boolean selfClosing;
+
+    HtmlSanitizer(Reader reader, Writer out, String baseUrl, String styles) {
+        this.reader = reader;
+        this.out = out;
+        this.baseUrl = baseUrl;
+        this.base = base(baseUrl);
+        this.styles = styles;
+    }
+
+    /**
+     * Reads the page to its end and writes the sanitized page; an unfinished tag at the end is dropped.
+     */
+    void sanitize() throws IOException {
+        while (ensure(1)) {
+            if (this.buffer[this.position] != '<') {
+                text();
+                continue;
+            }
+            var next = peek(1);
+            if (next == '!' || next == '?') {
+                declaration();
+            } else if (next == '/') {
+                endTag();
+            } else if (letter(next)) {
+                startTag();
+            } else {
+                this.position++;
+                write("&lt;");
+            }
+        }
+        this.skipped.clear();
+        injectStyles();
+        this.out.flush();
+    }
+
+    void text() throws IOException {
+        var start = this.position;
+        while (this.position < this.limit && this.buffer[this.position] != '<') {
+            this.position++;
+        }
+        if (this.skipped.isEmpty()) {
+            this.out.write(this.buffer, start, this.position - start);
+        }
+    }
+
+    /**
+     * A doctype is kept, and comments are; CDATA is text inside svg and math, and like any other
+     * declaration or processing instruction a bogus comment up to the next '>' elsewhere, as browsers read it.
+     */
+    void declaration() throws IOException {
+        var bang = peek(1) == '!';
+        this.position += 2;
+        if (bang && startsWith("--")) {
+            comment();
+            return;
+        }
+        if (bang && this.foreignDepth > 0 && startsWith("[cdata[")) {
+            cdata();
+            return;
+        }
+        var doctype = bang && startsWith("doctype");
+        var content = new StringBuilder(bang ? "" : "?");
+        int c;
+        while ((c = read()) != -1 && c != '>') {
+            content.append((char) c);
+        }
+        if (c != '>') {
+            return;
+        }
+        if (doctype) {
+            write("<!" + content.toString().replace("<", "") + ">");
+        } else {
+            writeComment(content);
+        }
+    }
+
+    /**
+     * Reads a comment to "-->" or "--!>"; "&lt;!-->" and "&lt;!--->" end at once, as browsers read them.
+     * A comment the page ends in is dropped.
+     */
+    void comment() throws IOException {
+        this.position += 2;
+        var content = new StringBuilder();
+        if (peek(0) == '>' || (peek(0) == '-' && peek(1) == '>')) {
+            this.position += peek(0) == '>' ? 1 : 2;
+            writeComment(content);
+            return;
+        }
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '-' && peek(0) == '-' && peek(1) == '>') {
+                this.position += 2;
+                writeComment(content);
+                return;
+            }
+            if (c == '-' && peek(0) == '-' && peek(1) == '!' && peek(2) == '>') {
+                this.position += 3;
+                writeComment(content);
+                return;
+            }
+            content.append((char) c);
+        }
+    }
+
+    /**
+     * Writes the comment with its angle brackets escaped, so it neither ends early nor hides markup
+     * from a browser reading it differently.
+     */
+    void writeComment(CharSequence content) throws IOException {
+        var comment = new StringBuilder(content.length() + 7).append("<!--");
+        for (var i = 0; i < content.length(); i++) {
+            var c = content.charAt(i);
+            switch (c) {
+                case '<' -> comment.append("&lt;");
+                case '>' -> comment.append("&gt;");
+                default -> comment.append(c);
+            }
+        }
+        write(comment.append("-->").toString());
+    }
+
+    /**
+     * Writes a CDATA section of svg or math as the text it holds, escaped.
+     */
+    void cdata() throws IOException {
+        this.position += "[CDATA[".length();
+        var text = new StringBuilder();
+        int c;
+        while ((c = read()) != -1) {
+            if (c == ']' && peek(0) == ']' && peek(1) == '>') {
+                this.position += 2;
+                break;
+            }
+            text.append((char) c);
+        }
+        var escaped = new StringBuilder(text.length());
+        escape(escaped, text.toString());
+        write(escaped.toString());
+    }
+
+    void startTag() throws IOException {
+        this.position++;
+        var name = name();
+        var tag = this.tag;
+        tag.setLength(0);
+        tag.append('<').append(name);
+        var closed = attributes(tag);
+        if (!closed || !validName(name)) {
+            return;
+        }
+        if (DROPPED_WITH_TEXT.contains(name)) {
+            skipText(name);
+            return;
+        }
+        if (!this.skipped.isEmpty()) {
+            if (!VOID.contains(name)) {
+                this.skipped.push(name);
+            }
+            return;
+        }
+        if (DROPPED_WITH_CHILDREN.contains(name)) {
+            this.skipped.push(name);
+            return;
+        }
+        if (FOREIGN.contains(name) && !this.selfClosing) {
+            this.foreignDepth++;
+        }
+        if (DROPPED.contains(name)) {
+            return;
+        }
+        if (name.equals("body")) {
+            injectStyles();
+        }
+        write(tag.append('>'));
+    }
+
+    void endTag() throws IOException {
+        this.position += 2;
+        if (!letter(peek(0))) {
+            bogusEndTag();
+            return;
+        }
+        var name = name();
+        if (!attributes(null) || !validName(name)) {
+            return;
+        }
+        if (!this.skipped.isEmpty()) {
+            if (!this.skipped.contains(name)) {
+                // closes an element around the dropped one, and with it the dropped one
+                this.skipped.clear();
+            } else {
+                while (!this.skipped.pop().equals(name)) {
+                    // closes the elements left open inside the one it ends
+                }
+                return;
+            }
+        }
+        if (DROPPED.contains(name)) {
+            return;
+        }
+        if (FOREIGN.contains(name) && this.foreignDepth > 0) {
+            this.foreignDepth--;
+        }
+        if (name.equals("head")) {
+            injectStyles();
+        }
+        write("</" + name + ">");
+    }
+
+    /**
+     * "&lt;/>" is ignored, as browsers do; any other end tag not starting with a letter is a bogus comment.
+     */
+    void bogusEndTag() throws IOException {
+        var content = new StringBuilder();
+        int c;
+        while ((c = read()) != -1 && c != '>') {
+            content.append((char) c);
+        }
+        if (c == '>' && !content.isEmpty()) {
+            writeComment(content);
+        }
+    }
+
+    String name() throws IOException {
+        var name = this.token;
+        name.setLength(0);
+        int c;
+        while ((c = peek(0)) != -1 && !whitespace(c) && c != '/' && c != '>') {
+            name.append((char) c);
+            this.position++;
+        }
+        return name.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reads the attributes up to the end of the tag, appending them sanitized to the tag if one is given.
+     *
+     * @return false if the page ended inside the tag
+     */
+    boolean attributes(StringBuilder tag) throws IOException {
+        while (true) {
+            int c;
+            this.selfClosing = false;
+            while ((c = peek(0)) != -1 && (whitespace(c) || c == '/')) {
+                this.selfClosing = c == '/';
+                this.position++;
+            }
+            if (c == -1) {
+                return false;
+            }
+            if (c == '>') {
+                this.position++;
+                return true;
+            }
+            var name = this.token;
+            name.setLength(0);
+            name.append((char) read());
+            while ((c = peek(0)) != -1 && !whitespace(c) && c != '/' && c != '>' && c != '=') {
+                name.append((char) c);
+                this.position++;
+            }
+            var attribute = tag == null ? null : name.toString().toLowerCase(Locale.ROOT);
+            while ((c = peek(0)) != -1 && whitespace(c)) {
+                this.position++;
+            }
+            String value = null;
+            if (c == '=') {
+                this.position++;
+                value = value();
+                if (value == null) {
+                    return false;
+                }
+            }
+            if (tag != null) {
+                attribute(tag, attribute, value);
+            }
+        }
+    }
+
+    /**
+     * Reads a quoted or unquoted attribute value and decodes its character references.
+     *
+     * @return the value, or null if the page ended inside it
+     */
+    String value() throws IOException {
+        int c;
+        while ((c = peek(0)) != -1 && whitespace(c)) {
+            this.position++;
+        }
+        var raw = this.token;
+        raw.setLength(0);
+        if (c == '"' || c == '\'') {
+            this.position++;
+            var quote = c;
+            while ((c = read()) != quote) {
+                if (c == -1) {
+                    return null;
+                }
+                raw.append((char) c);
+            }
+        } else {
+            while ((c = peek(0)) != -1 && !whitespace(c) && c != '>') {
+                raw.append((char) c);
+                this.position++;
+            }
+        }
+        return unescape(raw.toString());
+    }
+
+    void attribute(StringBuilder tag, String name, String value) {
+        if (!validName(name)) {
+            return;
+        }
+        tag.append(' ').append(name);
+        if (URL_ATTRIBUTES.contains(name)) {
+            value = absolute(value == null ? "" : value);
+        }
+        if (value != null) {
+            tag.append("=\"");
+            escape(tag, value);
+            tag.append('"');
+        }
+    }
+
+    /**
+     * Resolves the URL against the page as Jsoup's absUrl does; absolute http(s) URLs are kept as they are.
+     */
+    String absolute(String url) {
+        if (url.startsWith("https://") || url.startsWith("http://")) {
+            return url;
+        }
+        if (this.base == null) {
+            return StringUtil.resolve(this.baseUrl, url);
+        }
+        try {
+            return StringUtil.resolve(this.base, url).toExternalForm();
+        } catch (MalformedURLException e) {
+            return StringUtil.resolve(this.baseUrl, url);
+        }
+    }
+
+    /**
+     * Drops the text of a script or iframe up to its end tag, which is dropped too.
+     */
+    void skipText(String name) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c != '<' || peek(0) != '/') {
+                continue;
+            }
+            var matches = true;
+            for (var i = 0; i < name.length() && matches; i++) {
+                matches = Character.toLowerCase(peek(1 + i)) == name.charAt(i);
+            }
+            var after = peek(1 + name.length());
+            if (matches && (whitespace(after) || after == '/' || after == '>' || after == -1)) {
+                this.position += 1 + name.length();
+                attributes(null);
+                return;
+            }
+        }
+    }
+
+    void injectStyles() throws IOException {
+        if (this.stylesInjected) {
+            return;
+        }
+        this.stylesInjected = true;
+        write("<style type=\"text/css\">" + this.styles + "</style>");
+    }
+
+    void write(String markup) throws IOException {
+        if (this.skipped.isEmpty()) {
+            this.out.write(markup);
+        }
+    }
+
+    void write(StringBuilder markup) throws IOException {
+        if (this.chars.length < markup.length()) {
+            this.chars = new char[Math.max(markup.length(), 2 * this.chars.length)];
+        }
+        markup.getChars(0, markup.length(), this.chars, 0);
+        this.out.write(this.chars, 0, markup.length());
+    }
+
+    /**
+     * Case-insensitively compares the upcoming characters to the lowercase prefix, without consuming them.
+     */
+    boolean startsWith(String prefix) throws IOException {
+        for (var i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(peek(i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int read() throws IOException {
+        return ensure(1) ? this.buffer[this.position++] : -1;
+    }
+
+    int peek(int offset) throws IOException {
+        return ensure(offset + 1) ? this.buffer[this.position + offset] : -1;
+    }
+
+    /**
+     * Makes sure count characters are buffered past the position, unless the page ends before.
+     */
+    boolean ensure(int count) throws IOException {
+        while (this.limit - this.position < count) {
+            if (this.position > 0) {
+                System.arraycopy(this.buffer, this.position, this.buffer, 0, this.limit - this.position);
+                this.limit -= this.position;
+                this.position = 0;
+            }
+            var read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (read < 0) {
+                return false;
+            }
+            this.limit += read;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the character references of an attribute value as browsers do: those terminated by ';',
+     * and numeric ones and the legacy named ones like "&amp;amp" without it, unless followed by '='.
+     * Other ampersands are left as they are.
+     */
+    static String unescape(String raw) {
+        var ampersand = raw.indexOf('&');
+        if (ampersand < 0) {
+            return raw;
+        }
+        var decoded = new StringBuilder(raw.length()).append(raw, 0, ampersand);
+        for (var i = ampersand; i < raw.length(); i++) {
+            var c = raw.charAt(i);
+            if (c != '&') {
+                decoded.append(c);
+                continue;
+            }
+            var end = nameEnd(raw, i + 1);
+            var terminated = end < raw.length() && raw.charAt(end) == ';';
+            var name = raw.substring(i + 1, end);
+            var legacy = name.startsWith("#")
+                || (Entities.isBaseNamedEntity(name) && (end == raw.length() || raw.charAt(end) != '='));
+            var reference = end > i + 1 && end - i <= 32 && (terminated || legacy) ? reference(name) : null;
+            if (reference == null) {
+                decoded.append(c);
+            } else {
+                decoded.append(reference);
+                i = terminated ? end : end - 1;
+            }
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * The end of the name of the reference starting at the index: letters and digits, after a '#' if numeric.
+     */
+    static int nameEnd(String raw, int start) {
+        var end = start < raw.length() && raw.charAt(start) == '#' ? start + 1 : start;
+        while (end < raw.length() && Character.isLetterOrDigit(raw.charAt(end)) && raw.charAt(end) < 128) {
+            end++;
+        }
+        return end;
+    }
+
+    static String reference(String name) {
+        if (!name.startsWith("#")) {
+            var character = Entities.getByName(name);
+            return character.isEmpty() ? null : character;
+        }
+        try {
+            var hex = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X');
+            var codePoint = hex ? Integer.parseInt(name.substring(2), 16) : Integer.parseInt(name.substring(1));
+            return codePoint > 0 && Character.isValidCodePoint(codePoint) ? Character.toString(codePoint) : "\uFFFD";
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static URL base(String baseUrl) {
+        try {
+            return new URL(baseUrl);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    static void escape(StringBuilder target, String value) {
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '&' -> target.append("&amp;");
+                case '"' -> target.append("&quot;");
+                case '<' -> target.append("&lt;");
+                case '>' -> target.append("&gt;");
+                default -> target.append(c);
+            }
+        }
+    }
+
+    /**
+     * Names with quotes, angle brackets or backticks are dropped rather than written back.
+     */
+    static boolean validName(String name) {
+        for (var i = 0; i < name.length(); i++) {
+            var c = name.charAt(i);
+            if (c == '<' || c == '"' || c == '\'' || c == '`' || c == '=') {
+                return false;
+            }
+        }
+        return !name.isEmpty();
+    }
+
+    static boolean letter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    static boolean whitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
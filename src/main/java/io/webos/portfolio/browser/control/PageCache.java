@@ -0,0 +1,153 @@
+package io.webos.portfolio.browser.control;
+
+import io.webos.portfolio.browser.entity.CacheControl;
+import io.webos.portfolio.browser.entity.CachedPage;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Size-bounded LRU cache of sanitized pages, honouring the upstream Cache-Control.
+ * <p>
+ * Freshness comes from max-age (less the Age header, unless malformed), else Expires, else a heuristic of a tenth
+ * of the time since Last-Modified, at most heuristicTtl. no-store pages are not kept; no-cache
+ * and must-revalidate pages are revalidated before every reuse. Other pages are served stale while
+ * being revalidated for their stale-while-revalidate window, or staleWhileRevalidate if they give none.
+ * The proxy fetches without credentials on its own behalf, so "private" pages are cached too.
+ */
+@ApplicationScoped
+public class PageCache {
+
+    @ConfigProperty(name = "webos.browser.cache.max-bytes", defaultValue = "16777216")
+    long maxBytes;
+
+    @ConfigProperty(name = "webos.browser.cache.heuristic-ttl", defaultValue = "PT1M")
+    Duration heuristicTtl;
+
+    @ConfigProperty(name = "webos.browser.cache.stale-while-revalidate", defaultValue = "PT10M")
+    Duration staleWhileRevalidate;
+
+    LinkedHashMap<String, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+    long bytes;
+    Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    public synchronized Optional<CachedPage> get(String url) {
+        return Optional.ofNullable(this.pages.get(url));
+    }
+
+    /**
+     * Keeps the page, evicting the least recently used ones beyond maxBytes;
+     * a page larger than the whole cache is not kept.
+     */
+    public synchronized void put(String url, CachedPage page) {
+        remove(url);
+        if (page.bytes() > this.maxBytes) {
+            return;
+        }
+        this.pages.put(url, page);
+        this.bytes += page.bytes();
+        var eldest = this.pages.entrySet().iterator();
+        while (this.bytes > this.maxBytes && eldest.hasNext()) {
+            this.bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    public synchronized void remove(String url) {
+        var removed = this.pages.remove(url);
+        if (removed != null) {
+            this.bytes -= removed.bytes();
+        }
+    }
+
+    /**
+     * Caches a fetched page, or drops the cached one if upstream forbids storing it.
+     */
+    public void store(String url, String html, HttpHeaders headers, long nowMillis) {
+        var page = page(html, headers, nowMillis, null);
+        if (page.cacheControl().noStore()) {
+            remove(url);
+        } else {
+            put(url, page);
+        }
+    }
+
+    /**
+     * Renews a page upstream confirmed unchanged with a 304; its headers may update the
+     * validators and the caching policy, else the earlier ones stay.
+     */
+    public CachedPage revalidated(String url, CachedPage cached, HttpHeaders headers, long nowMillis) {
+        var page = page(cached.html(), headers, nowMillis, cached);
+        if (page.cacheControl().noStore()) {
+            remove(url);
+        } else {
+            put(url, page);
+        }
+        return page;
+    }
+
+    /**
+     * Claims the background revalidation of the page; false if one is running already.
+     */
+    public boolean startRevalidation(String url) {
+        return this.revalidating.add(url);
+    }
+
+    public void endRevalidation(String url) {
+        this.revalidating.remove(url);
+    }
+
+    public synchronized int size() {
+        return this.pages.size();
+    }
+
+    CachedPage page(String html, HttpHeaders headers, long nowMillis, CachedPage previous) {
+        var cacheControl = headers.firstValue("Cache-Control")
+            .map(CacheControl::parse)
+            .orElse(previous == null ? CacheControl.NONE : previous.cacheControl());
+        var etag = headers.firstValue("ETag").orElse(previous == null ? null : previous.etag());
+        var lastModified = headers.firstValue("Last-Modified").orElse(previous == null ? null : previous.lastModified());
+        var freshFor = freshness(cacheControl, headers, lastModified, nowMillis);
+        var staleFor = !cacheControl.allowsStale() ? 0
+            : cacheControl.staleWhileRevalidate() != null ? cacheControl.staleWhileRevalidate() * 1000
+            : this.staleWhileRevalidate.toMillis();
+        return new CachedPage(html, etag, lastModified, cacheControl, nowMillis + freshFor, nowMillis + freshFor + staleFor);
+    }
+
+    long freshness(CacheControl cacheControl, HttpHeaders headers, String lastModified, long nowMillis) {
+        if (cacheControl.noCache()) {
+            return 0;
+        }
+        if (cacheControl.maxAge() != null) {
+            var age = headers.firstValue("Age").map(CacheControl::seconds).orElse(0L);
+            return Math.max(0, cacheControl.maxAge() - age) * 1000;
+        }
+        var date = headers.firstValue("Date").flatMap(PageCache::millis).orElse(nowMillis);
+        var expires = headers.firstValue("Expires");
+        if (expires.isPresent()) {
+            return Math.max(0, millis(expires.get()).orElse(0L) - date);
+        }
+        var modified = Optional.ofNullable(lastModified).flatMap(PageCache::millis);
+        if (modified.isPresent()) {
+            return Math.min(Math.max(0, date - modified.get()) / 10, this.heuristicTtl.toMillis());
+        }
+        return this.heuristicTtl.toMillis();
+    }
+
+    static Optional<Long> millis(String httpDate) {
+        try {
+            return Optional.of(ZonedDateTime.parse(httpDate, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli());
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.webos.portfolio.browser.control;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into one run of the work, whose result or failure
+ * every caller shares. The work runs on the executor, not on the thread of the first caller,
+ * so an interrupted caller only stops waiting; when the last caller stops, the work is cancelled.
+ */
+class SingleFlight<T> {
+
+    final ExecutorService executor;
+    final ConcurrentHashMap<String, Flight<T>> flights = new ConcurrentHashMap<>();
+
+    SingleFlight(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * A run of the work and the number of callers waiting for it.
+     */
+    static class Flight<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger();
+        volatile Future<?> task;
+    }
+
+    /**
+     * Joins the run of the work for the key, starting it if none is running, and waits for its result.
+     * A failure of the work is rethrown as is if unchecked.
+     *
+     * @throws InterruptedException if the caller is interrupted while waiting
+     */
+    T run(String key, Supplier<T> work) throws InterruptedException {
+        while (true) {
+            var flight = new Flight<T>();
+            var running = this.flights.putIfAbsent(key, flight);
+            if (running == null) {
+                start(key, flight, work);
+                running = flight;
+            }
+            try {
+                return await(key, running);
+            } catch (CancellationException e) {
+                // abandoned by its callers before this one joined; start over
+            }
+        }
+    }
+
+    /**
+     * Keys with work running.
+     */
+    int size() {
+        return this.flights.size();
+    }
+
+    /**
+     * Runs the work on the executor; the flight leaves the map before it completes, so a caller
+     * arriving later starts a run of its own instead of taking a failure it did not wait for.
+     */
+    void start(String key, Flight<T> flight, Supplier<T> work) {
+        flight.task = this.executor.submit(() -> {
+            T result = null;
+            Throwable failure = null;
+            try {
+                if (!flight.result.isDone()) {
+                    result = work.get();
+                }
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                this.flights.remove(key, flight);
+            }
+            if (failure != null) {
+                flight.result.completeExceptionally(failure);
+            } else {
+                flight.result.complete(result);
+            }
+        });
+        if (flight.result.isCancelled()) {
+            flight.task.cancel(true);
+        }
+    }
+
+    T await(String key, Flight<T> flight) throws InterruptedException {
+        flight.waiters.incrementAndGet();
+        try {
+            return flight.result.get();
+        } catch (InterruptedException e) {
+            leave(key, flight);
+            throw e;
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * The caller stopped waiting; cancels the work if nobody else waits for it.
+     */
+    void leave(String key, Flight<T> flight) {
+        if (flight.waiters.decrementAndGet() > 0) {
+            return;
+        }
+        this.flights.remove(key, flight);
+        flight.result.cancel(false);
+        var task = flight.task;
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+}
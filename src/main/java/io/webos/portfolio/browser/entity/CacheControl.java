@@ -0,0 +1,70 @@
+package io.webos.portfolio.browser.entity;
+
+import java.util.Locale;
+
+/**
+ * The directives of an upstream Cache-Control header the page cache acts on.
+ * Ages are in seconds, null when the directive is absent.
+ */
+public record CacheControl(
+    Long maxAge,
+    Long staleWhileRevalidate,
+    boolean noStore,
+    boolean noCache,
+    boolean mustRevalidate
+) {
+
+    public static final CacheControl NONE = new CacheControl(null, null, false, false, false);
+    /**
+     * 2^31 seconds, the largest age RFC 9111 asks caches to tell apart; in milliseconds it still fits a long.
+     */
+    public static final long MAX_SECONDS = 1L << 31;
+
+    /**
+     * Parses a Cache-Control header; unknown directives and malformed ages are ignored.
+     */
+    public static CacheControl parse(String header) {
+        if (header == null || header.isBlank()) {
+            return NONE;
+        }
+        Long maxAge = null;
+        Long staleWhileRevalidate = null;
+        var noStore = false;
+        var noCache = false;
+        var mustRevalidate = false;
+        for (var directive : header.split(",")) {
+            var separator = directive.indexOf('=');
+            var name = (separator < 0 ? directive : directive.substring(0, separator)).strip().toLowerCase(Locale.ROOT);
+            var value = separator < 0 ? null : seconds(directive.substring(separator + 1));
+            switch (name) {
+                case "max-age" -> maxAge = value;
+                case "stale-while-revalidate" -> staleWhileRevalidate = value;
+                case "no-store" -> noStore = true;
+                case "no-cache" -> noCache = true;
+                case "must-revalidate", "proxy-revalidate" -> mustRevalidate = true;
+                default -> { }
+            }
+        }
+        return new CacheControl(maxAge, staleWhileRevalidate, noStore, noCache, mustRevalidate);
+    }
+
+    /**
+     * Parses an age in seconds as RFC 9111 reads delta-seconds: a negative one as 0, one too large
+     * to compute with as {@link #MAX_SECONDS}; null if malformed.
+     */
+    public static Long seconds(String value) {
+        var digits = value.strip().replace("\"", "");
+        try {
+            return Math.min(MAX_SECONDS, Math.max(0, Long.parseLong(digits)));
+        } catch (NumberFormatException e) {
+            return digits.matches("\\d+") ? MAX_SECONDS : null;
+        }
+    }
+
+    /**
+     * Whether a stale copy may be served while it is revalidated.
+     */
+    public boolean allowsStale() {
+        return !this.noCache && !this.mustRevalidate;
+    }
+}
@@ -0,0 +1,38 @@
+package io.webos.portfolio.browser.entity;
+
+/**
+ * A sanitized page in the proxy's cache, with the validators to revalidate it upstream.
+ * Until freshUntil it is served as is; until staleUntil it is served while being revalidated
+ * in the background; after that it is revalidated before it is served again.
+ *
+ * @param etag the upstream ETag, or null
+ * @param lastModified the upstream Last-Modified date as sent, or null
+ */
+public record CachedPage(
+    String html,
+    String etag,
+    String lastModified,
+    CacheControl cacheControl,
+    long freshUntilMillis,
+    long staleUntilMillis
+) {
+
+    public boolean fresh(long nowMillis) {
+        return nowMillis < this.freshUntilMillis;
+    }
+
+    public boolean servableStale(long nowMillis) {
+        return nowMillis < this.staleUntilMillis;
+    }
+
+    public boolean revalidatable() {
+        return this.etag != null || this.lastModified != null;
+    }
+
+    /**
+     * Approximate memory held, two bytes per character of the html.
+     */
+    public long bytes() {
+        return 2L * this.html.length();
+    }
+}
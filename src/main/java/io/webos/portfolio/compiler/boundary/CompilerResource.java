@@ -1,17 +1,37 @@
 package io.webos.portfolio.compiler.boundary;
 
+import io.vertx.core.http.HttpServerRequest;
+import io.webos.portfolio.compiler.control.CodeAnalysis;
 import io.webos.portfolio.compiler.control.JShellService;
+import io.webos.portfolio.compiler.entity.BatchRequest;
+import io.webos.portfolio.compiler.entity.BenchmarkRequest;
+import io.webos.portfolio.compiler.entity.ExecutionEvent;
 import io.webos.portfolio.compiler.entity.ExecutionRequest;
-import io.webos.portfolio.compiler.entity.ExecutionResult;
 import jakarta.inject.Inject;
+import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.math.BigInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * JAX-RS resource for Java code execution via JShell.
@@ -25,29 +45,225 @@ public class CompilerResource {
     @Inject
     JShellService jshellService;
 
+    @Inject
+    CodeAnalysis codeAnalysis;
+
     /**
      * Executes Java code and returns the combined output.
      * 
-     * @param request JSON object containing "code" field
-     * @return JSON response with "output" field containing execution results
+     * @param request JSON object containing "code" and an optional "sessionId" field
+     * @return JSON response with "output" field containing execution results, the
+     *         "limit" that terminated the execution, if any, and "lossy" if restoring the session
+     *         lost the values its earlier statements assigned
      */
     @POST
     @Path("/execute")
-    public Response execute(JsonObject request) {
+    public Response execute(JsonObject request, @Context HttpServerRequest httpRequest) {
         if (request == null) {
             throw new BadRequestException("Request body is required");
         }
 
-        var executionRequest = ExecutionRequest.fromJSON(request);
+        var executionRequest = parse(request);
         var code = executionRequest.code();
+        var result = this.jshellService.execute(client(httpRequest), executionRequest.sessionId(), code);
+
+        return Response.ok(result.toJSON()).build();
+    }
 
+    /**
+     * Executes Java code and streams its "stdout" and "stderr" as they are written,
+     * a "snippet" event with the result of each snippet, and a final "done" event,
+     * which names the "limit" if one terminated the execution and, as the plain execution does, sets "lossy".
+     * Each event is handed to the client before the next is taken, so a slow client
+     * slows the snippet down instead of its output piling up on the server.
+     */
+    @POST
+    @Path("/execute/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void executeStreaming(JsonObject request, @Context SseEventSink eventSink, @Context Sse sse,
+                                 @Context HttpServerRequest httpRequest) {
+        if (request == null) {
+            throw new BadRequestException("Request body is required");
+        }
+        var executionRequest = parse(request);
+        stream(eventSink, sse, events -> this.jshellService.stream(client(httpRequest),
+            executionRequest.sessionId(), executionRequest.code(), events));
+    }
+
+    /**
+     * Executes a batch in parallel and streams a "result" event per item as it completes,
+     * with the item's "id", "output", "waitedMillis" and "elapsedMillis", then a final "done" event.
+     *
+     * @param request JSON object containing either "snippets", or "code" and the "cases" to evaluate after it
+     */
+    @POST
+    @Path("/batch")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void batch(JsonObject request, @Context SseEventSink eventSink, @Context Sse sse,
+                      @Context HttpServerRequest httpRequest) {
+        if (request == null) {
+            throw new BadRequestException("Request body is required");
+        }
+        BatchRequest batchRequest;
+        try {
+            batchRequest = BatchRequest.fromJSON(request);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        var items = batchRequest.items();
+        if (items.size() > this.jshellService.maxBatchItems()) {
+            throw new BadRequestException("A batch holds at most " + this.jshellService.maxBatchItems() + " items");
+        }
+        stream(eventSink, sse, events -> this.jshellService.batch(client(httpRequest), items, events));
+    }
+
+    /**
+     * Benchmarks code with warm-up and measured iterations.
+     *
+     * @param request JSON object containing the "code" measured, the "setup" declaring what it uses,
+     *                and the number of "warmups" and "iterations"
+     * @return JSON response with the "output", and the "statistics" in ns/op unless the code failed
+     */
+    @POST
+    @Path("/benchmark")
+    public Response benchmark(JsonObject request, @Context HttpServerRequest httpRequest) {
+        if (request == null) {
+            throw new BadRequestException("Request body is required");
+        }
+        BenchmarkRequest benchmarkRequest;
+        try {
+            benchmarkRequest = BenchmarkRequest.fromJSON(request);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        if (benchmarkRequest.code().isBlank()) {
+            throw new BadRequestException("Code field is required and cannot be empty");
+        }
+        if (benchmarkRequest.warmups() < 0 || benchmarkRequest.warmups() > BenchmarkRequest.MAX_ITERATIONS
+                || benchmarkRequest.iterations() < 1 || benchmarkRequest.iterations() > BenchmarkRequest.MAX_ITERATIONS) {
+            throw new BadRequestException("Warmups and iterations must lie between 0 or 1 and " + BenchmarkRequest.MAX_ITERATIONS);
+        }
+        return Response.ok(this.jshellService.benchmark(client(httpRequest), benchmarkRequest).toJSON()).build();
+    }
+
+    /**
+     * The key executions outside a session take turns in the scheduler by: the client's address.
+     */
+    static String client(HttpServerRequest httpRequest) {
+        var address = httpRequest == null ? null : httpRequest.remoteAddress();
+        return address == null ? "client:" : "client:" + address.hostAddress();
+    }
+
+    /**
+     * Validates the code.
+     */
+    ExecutionRequest parse(JsonObject request) {
+        ExecutionRequest executionRequest;
+        try {
+            executionRequest = ExecutionRequest.fromJSON(request);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        var code = executionRequest.code();
         if (code == null || code.isBlank()) {
             throw new BadRequestException("Code field is required and cannot be empty");
         }
+        return executionRequest;
+    }
 
-        var output = this.jshellService.execute(code);
-        var result = ExecutionResult.success(output);
-        
-        return Response.ok(result.toJSON()).build();
+    /**
+     * Hands the events of the execution to the sink and closes it. An error response thrown before
+     * the first event, like a 429 of the scheduler, leaves the sink untouched, so the client receives
+     * that status instead of an empty stream.
+     */
+    static void stream(SseEventSink eventSink, Sse sse, Consumer<Consumer<ExecutionEvent>> execution) {
+        var opened = new AtomicBoolean();
+        var rejected = false;
+        try {
+            execution.accept(event -> {
+                opened.set(true);
+                send(eventSink, sse.newEvent(event.name(), event.data()));
+            });
+        } catch (WebApplicationException e) {
+            rejected = !opened.get();
+            throw e;
+        } finally {
+            if (!rejected) {
+                eventSink.close();
+            }
+        }
+    }
+
+    static void send(SseEventSink eventSink, OutboundSseEvent event) {
+        if (eventSink.isClosed()) {
+            throw new CancellationException("Client disconnected");
+        }
+        try {
+            eventSink.send(event).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw new CancellationException("Client disconnected");
+        }
+    }
+
+    /**
+     * Suggests completions at the cursor without executing the code.
+     *
+     * @param request JSON object containing "code" and the "cursor" offset, which defaults to the end of the code
+     * @return JSON response with the "anchor" the suggestions replace from, "suggestions" and "signatures"
+     */
+    @POST
+    @Path("/complete")
+    public Response complete(JsonObject request) {
+        if (request == null) {
+            throw new BadRequestException("Request body is required");
+        }
+        var code = request.getString("code", "");
+        return Response.ok(this.codeAnalysis.complete(code, cursor(request, code)).toJSON()).build();
+    }
+
+    /**
+     * The "cursor" of the request, an integral offset within the code, or the end of the code if absent.
+     */
+    static int cursor(JsonObject request, String code) {
+        var value = request.get("cursor");
+        if (value == null || value.getValueType() == JsonValue.ValueType.NULL) {
+            return code.length();
+        }
+        if (!(value instanceof JsonNumber number) || !number.isIntegral()) {
+            throw new BadRequestException("Cursor must be an integer");
+        }
+        var cursor = number.bigIntegerValue();
+        if (cursor.signum() < 0 || cursor.compareTo(BigInteger.valueOf(code.length())) > 0) {
+            throw new BadRequestException("Cursor must lie within the code");
+        }
+        return cursor.intValue();
+    }
+
+    /**
+     * Compiles the code without executing it.
+     *
+     * @param request JSON object containing "code"
+     * @return JSON response with the "completeness" of the last snippet and the compiler "diagnostics"
+     */
+    @POST
+    @Path("/analyze")
+    public Response analyze(JsonObject request) {
+        if (request == null) {
+            throw new BadRequestException("Request body is required");
+        }
+        var code = request.getString("code", "");
+        return Response.ok(this.codeAnalysis.analyze(code).toJSON()).build();
+    }
+
+    /**
+     * Ends a JShell Studio session, discarding all its snippets.
+     */
+    @DELETE
+    @Path("/sessions/{sessionId}")
+    public Response endSession(@PathParam("sessionId") String sessionId) {
+        if (!this.jshellService.endSession(sessionId)) {
+            throw new NotFoundException("No session: " + sessionId);
+        }
+        return Response.noContent().build();
     }
 }
@@ -0,0 +1,100 @@
+package io.webos.portfolio.compiler.control;
+
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+import jdk.jshell.SourceCodeAnalysis;
+import jdk.jshell.VarSnippet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JShell that only compiles and never runs user code. It therefore uses the in-process
+ * "local" execution engine instead of launching a remote JVM, which keeps analyses in the
+ * tens of milliseconds. Only declarations are ever evaluated, and they are dropped again
+ * after each analysis; their classes stay loaded though, so the shell is replaced after maxUses.
+ */
+class AnalysisShell implements AutoCloseable {
+
+    static final String WARM_UP_CODE = "class $WarmUp { void run() { var list = java.util.List.of(1); } }";
+
+    JShell shell;
+    List<Snippet> declared = new ArrayList<>();
+    int uses;
+
+    AnalysisShell() {
+        this.shell = JShell.builder()
+            .executionEngine("local")
+            .build();
+        this.shell.eval(PooledShell.WARM_UP_IMPORTS);
+        warmUp();
+    }
+
+    /**
+     * Loads the compiler and the completion index before the first request.
+     */
+    void warmUp() {
+        declare(WARM_UP_CODE);
+        analysis().completionSuggestions("LocalDate.now().", 16, new int[1]);
+        analysis().documentation("Math.max(", 9, false);
+        reset();
+        this.uses = 0;
+    }
+
+    SourceCodeAnalysis analysis() {
+        return this.shell.sourceCodeAnalysis();
+    }
+
+    JShell shell() {
+        return this.shell;
+    }
+
+    /**
+     * Compiles a declaration; anything that would execute code on evaluation is refused,
+     * since it would run inside this JVM. Erroneous code is let through, JShell only rejects it.
+     */
+    List<SnippetEvent> declare(String source) {
+        var kinds = analysis().sourceToSnippets(source).stream()
+            .map(Snippet::kind)
+            .toList();
+        if (kinds.isEmpty() || !kinds.stream().allMatch(kind -> kind == Snippet.Kind.ERRONEOUS || JShellService.DECLARATIONS.contains(kind))) {
+            throw new IllegalArgumentException("Not a declaration: " + kinds);
+        }
+        return record(this.shell.eval(source));
+    }
+
+    /**
+     * Declares the variable without its initializer, which would run code, so later code can refer to it.
+     */
+    List<SnippetEvent> declareVariable(VarSnippet variable) {
+        var source = variable.typeName() + " " + variable.name() + ";";
+        var uninitialized = analysis().sourceToSnippets(source).stream()
+            .allMatch(snippet -> snippet.subKind() == Snippet.SubKind.VAR_DECLARATION_SUBKIND);
+        if (!uninitialized) {
+            throw new IllegalArgumentException("Not a plain variable declaration: " + source);
+        }
+        return record(this.shell.eval(source));
+    }
+
+    List<SnippetEvent> record(List<SnippetEvent> events) {
+        events.stream()
+            .filter(event -> event.causeSnippet() == null)
+            .forEach(event -> this.declared.add(event.snippet()));
+        return events;
+    }
+
+    /**
+     * Drops everything declared since the last reset and counts the use.
+     */
+    void reset() {
+        this.declared.forEach(this.shell::drop);
+        this.declared.clear();
+        this.uses++;
+    }
+
+    @Override
+    public void close() {
+        this.shell.close();
+    }
+}
@@ -0,0 +1,115 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.BenchmarkResult;
+import io.webos.portfolio.compiler.entity.BenchmarkStatistics;
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import jdk.jshell.Snippet;
+import jdk.jshell.SourceCodeAnalysis;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Wraps code under test into a measuring class evaluated in the shell. Each iteration runs the
+ * code in a loop of as many operations as fill the iteration time, calibrated by doubling, so
+ * timer resolution and loop overhead vanish; warm-up iterations let the JIT compile it first.
+ * The value of an expression is consumed by comparing it with volatile fields, as JMH's
+ * blackhole does, so the JIT cannot drop its computation as dead code. An expression JShell
+ * cannot type, as one using a local variable of the measured code, runs unconsumed as a statement;
+ * what it uses belongs in the setup.
+ * The iteration times are printed on one marked line, which is taken out of the output.
+ */
+class BenchmarkHarness {
+
+    static final String MARKER = "@benchmark ";
+    static final Pattern RESULT_LINE = Pattern.compile("^" + MARKER + "([\\d ]+)$", Pattern.MULTILINE);
+    static final long MAX_OPS = 1L << 40;
+    static final String TEMPLATE = """
+        class $Benchmark {
+            static volatile int i1 = 1, i2 = 2;
+            static volatile long l1 = 1, l2 = 2;
+            static volatile double d1 = 1, d2 = 2;
+            static volatile boolean b1 = false, b2 = true;
+            static volatile Object nothing = new Object();
+            static boolean escaped;
+            static void consume(int value) { if ((value ^ i1) == (value ^ i2)) escaped = true; }
+            static void consume(long value) { if ((value ^ l1) == (value ^ l2)) escaped = true; }
+            static void consume(double value) { if (value == d1 && value == d2) escaped = true; }
+            static void consume(boolean value) { if (value == b1 && value == b2) escaped = true; }
+            static void consume(Object value) { if (value == nothing) escaped = true; }
+            static long run(long ops) throws Throwable {
+                long start = System.nanoTime();
+                for (long op = 0; op < ops; op++) {
+        %s
+                }
+                return System.nanoTime() - start;
+            }
+            static String measure(int warmups, int iterations, long iterationNanos) throws Throwable {
+                long ops = 1;
+                while (ops < %dL && run(ops) < iterationNanos) {
+                    ops *= 2;
+                }
+                for (int i = 0; i < warmups; i++) {
+                    run(ops);
+                }
+                StringBuilder samples = new StringBuilder("%s").append(ops);
+                for (int i = 0; i < iterations; i++) {
+                    samples.append(' ').append(run(ops));
+                }
+                return samples.toString();
+            }
+        }
+        System.out.println($Benchmark.measure(%d, %d, %dL));
+        """;
+
+    /**
+     * The harness for the code, whose snippets JShell splits and types with the setup already declared:
+     * expressions are consumed, statements and local variables run as they are.
+     */
+    static String source(List<String> snippets, SourceCodeAnalysis analysis, int warmups, int iterations,
+                         long iterationNanos) {
+        var body = snippets.stream()
+            .map(snippet -> "            " + operation(snippet, analysis))
+            .collect(Collectors.joining("\n"));
+        return TEMPLATE.formatted(body, MAX_OPS, MARKER, warmups, iterations, iterationNanos);
+    }
+
+    static String operation(String snippet, SourceCodeAnalysis analysis) {
+        var source = snippet.strip();
+        var kinds = analysis.sourceToSnippets(source);
+        if (kinds.isEmpty()) {
+            return "";
+        }
+        var first = kinds.getFirst();
+        if (first.subKind() == Snippet.SubKind.TEMP_VAR_EXPRESSION_SUBKIND) {
+            return "consume(" + stripSemicolon(source) + ");";
+        }
+        if (JShellService.DECLARATIONS.contains(first.kind())) {
+            throw new IllegalArgumentException("Declare methods, classes and imports in the setup");
+        }
+        return source.endsWith(";") || source.endsWith("}") ? source : source + ";";
+    }
+
+    static String stripSemicolon(String source) {
+        return source.endsWith(";") ? source.substring(0, source.length() - 1) : source;
+    }
+
+    /**
+     * Takes the iteration times out of the execution's output and computes the statistics;
+     * without them, the code failed and the output says why.
+     */
+    static BenchmarkResult result(ExecutionResult execution) {
+        var matcher = RESULT_LINE.matcher(execution.output());
+        if (execution.limit() != null || !matcher.find()) {
+            return new BenchmarkResult(execution, null);
+        }
+        var numbers = Arrays.stream(matcher.group(1).split(" "))
+            .mapToLong(Long::parseLong)
+            .toArray();
+        var output = matcher.replaceAll("").strip();
+        var statistics = BenchmarkStatistics.of(numbers[0], Arrays.copyOfRange(numbers, 1, numbers.length));
+        return new BenchmarkResult(ExecutionResult.success(output), statistics);
+    }
+}
@@ -0,0 +1,339 @@
+package io.webos.portfolio.compiler.control;
+
+import io.quarkus.runtime.StartupEvent;
+import io.webos.portfolio.compiler.entity.Analysis;
+import io.webos.portfolio.compiler.entity.Completion;
+import io.webos.portfolio.compiler.entity.Diagnostic;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jdk.jshell.DeclarationSnippet;
+import jdk.jshell.Diag;
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+import jdk.jshell.SourceCodeAnalysis;
+import jdk.jshell.VarSnippet;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Completion and diagnostics for JShell Studio without executing anything.
+ * Requests are served by a few warm {@link AnalysisShell}s, so the editor can ask while the user types.
+ * <p>
+ * JShell only reports diagnostics for code it evaluates. To compile the code without running it,
+ * imports are declared on their own and everything else is wrapped into a class that is never
+ * instantiated: methods and types become its members, statements, variables and expressions the
+ * body of one of its methods. Diagnostic positions are mapped back onto the submitted code.
+ */
+@ApplicationScoped
+public class CodeAnalysis {
+
+    static final System.Logger LOGGER = System.getLogger(CodeAnalysis.class.getName());
+    static final Duration BORROW_TIMEOUT = Duration.ofSeconds(1);
+    static final int SUGGESTION_LIMIT = 100;
+    static final String WRAPPER_START = "class $Analysis {\n";
+    static final String BODY_START = "void $run() throws Throwable {\n";
+    static final String WRAPPER_END = "\n}\n}";
+    /**
+     * A bare expression is a valid snippet, but not a valid statement in the wrapper body.
+     */
+    static final String NOT_A_STATEMENT = "compiler.err.not.stmt";
+    static final Pattern WRAPPER_LOCATION = Pattern.compile("\\n\\s*location: class \\$Analysis");
+    static final Pattern UNRESOLVED_VARIABLE = Pattern.compile("symbol:\\s+variable (\\w+)");
+
+    @ConfigProperty(name = "webos.compiler.analysis.shells", defaultValue = "2")
+    int shellCount;
+
+    @ConfigProperty(name = "webos.compiler.analysis.max-uses", defaultValue = "500")
+    int maxUses;
+
+    LinkedBlockingQueue<AnalysisShell> shells = new LinkedBlockingQueue<>();
+    ExecutorService background = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * A complete snippet, or the incomplete rest, with its offset in the submitted code.
+     */
+    record Part(int start, String source, SourceCodeAnalysis.Completeness completeness, Snippet.Kind kind) {
+
+        int end() {
+            return this.start + this.source.length();
+        }
+    }
+
+    /**
+     * Maps a stretch of the wrapper class back onto the submitted code.
+     */
+    record Segment(int offset, int start, int length) {
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        for (var i = 0; i < this.shellCount; i++) {
+            this.background.execute(this::startShell);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        this.background.shutdownNow();
+        this.shells.forEach(AnalysisShell::close);
+        this.shells.clear();
+    }
+
+    /**
+     * Suggests completions for the code at the cursor, together with the signatures
+     * of the method being called there. Earlier declarations of the code are known
+     * to the completion; earlier variables are declared without their initializers.
+     */
+    public Completion complete(String code, int cursor) {
+        var shell = borrow();
+        try {
+            var analysis = shell.analysis();
+            var parts = parts(analysis, code.substring(0, cursor));
+            var current = parts.isEmpty() || parts.getLast().end() < cursor
+                ? new Part(cursor, "", SourceCodeAnalysis.Completeness.EMPTY, null)
+                : parts.getLast();
+            parts.stream()
+                .filter(part -> part != current)
+                .forEach(part -> declare(shell, part));
+
+            var input = code.substring(current.start(), cursor);
+            var anchor = new int[1];
+            var suggestions = analysis.completionSuggestions(input, input.length(), anchor).stream()
+                .sorted(Comparator.comparing(suggestion -> !suggestion.matchesType()))
+                .map(SourceCodeAnalysis.Suggestion::continuation)
+                .distinct()
+                .limit(SUGGESTION_LIMIT)
+                .toList();
+            var signatures = analysis.documentation(input, input.length(), false).stream()
+                .map(SourceCodeAnalysis.Documentation::signature)
+                .toList();
+            return new Completion(current.start() + anchor[0], suggestions, signatures);
+        } finally {
+            release(shell);
+        }
+    }
+
+    void declare(AnalysisShell shell, Part part) {
+        if (JShellService.DECLARATIONS.contains(part.kind())) {
+            shell.declare(part.source());
+        } else if (part.kind() == Snippet.Kind.VAR) {
+            shell.analysis().sourceToSnippets(part.source()).stream()
+                .filter(VarSnippet.class::isInstance)
+                .forEach(snippet -> shell.declareVariable((VarSnippet) snippet));
+        }
+    }
+
+    /**
+     * Compiles the code without running it and reports its diagnostics, ordered by position,
+     * and the completeness of its last snippet.
+     */
+    public Analysis analyze(String code) {
+        var shell = borrow();
+        try {
+            var parts = parts(shell.analysis(), code);
+            var variables = variables(shell.analysis(), parts);
+            var diagnostics = new ArrayList<Diagnostic>();
+            var members = new ArrayList<Part>();
+            var body = new ArrayList<Part>();
+            for (var part : parts) {
+                if (part.kind() == Snippet.Kind.IMPORT) {
+                    var segments = List.of(new Segment(0, part.start(), part.source().length()));
+                    diagnose(shell, shell.declare(part.source()), code, segments, variables, diagnostics);
+                } else if (part.kind() == Snippet.Kind.TYPE_DECL || part.kind() == Snippet.Kind.METHOD) {
+                    members.add(part);
+                } else {
+                    body.add(part);
+                }
+            }
+            if (!members.isEmpty() || !body.isEmpty()) {
+                var wrapper = new StringBuilder(WRAPPER_START);
+                var segments = new ArrayList<Segment>();
+                append(wrapper, members, segments);
+                wrapper.append(BODY_START);
+                append(wrapper, body, segments);
+                wrapper.append(WRAPPER_END);
+                diagnose(shell, shell.declare(wrapper.toString()), code, segments, variables, diagnostics);
+            }
+            diagnostics.sort(Comparator.comparingInt(Diagnostic::start));
+            var completeness = parts.isEmpty() ? SourceCodeAnalysis.Completeness.EMPTY : parts.getLast().completeness();
+            return new Analysis(completeness.name(), diagnostics);
+        } finally {
+            release(shell);
+        }
+    }
+
+    /**
+     * Splits the code into snippets the way JShell evaluates it, keeping their offsets.
+     * Snippets completed by JShell with a semicolon get it appended.
+     */
+    List<Part> parts(SourceCodeAnalysis analysis, String code) {
+        var parts = new ArrayList<Part>();
+        var remaining = code;
+        while (!remaining.isBlank()) {
+            var start = code.length() - remaining.length();
+            var info = analysis.analyzeCompletion(remaining);
+            var completeness = info.completeness();
+            if (completeness == SourceCodeAnalysis.Completeness.EMPTY) {
+                break;
+            }
+            if (!completeness.isComplete()) {
+                parts.add(new Part(start, remaining, completeness, null));
+                break;
+            }
+            var source = remaining.substring(0, remaining.length() - info.remaining().length());
+            if (completeness == SourceCodeAnalysis.Completeness.COMPLETE_WITH_SEMI) {
+                source += ";";
+            }
+            var snippets = analysis.sourceToSnippets(info.source());
+            var kind = snippets.isEmpty() ? Snippet.Kind.ERRONEOUS : snippets.getFirst().kind();
+            parts.add(new Part(start, source, completeness, kind));
+            remaining = info.remaining();
+        }
+        return parts;
+    }
+
+    /**
+     * Names of the top-level variables. In the wrapper they are local to its body, so
+     * methods referring to them would report them as missing although JShell resolves them.
+     */
+    Set<String> variables(SourceCodeAnalysis analysis, List<Part> parts) {
+        var names = new HashSet<String>();
+        for (var part : parts) {
+            if (part.kind() == Snippet.Kind.VAR) {
+                analysis.sourceToSnippets(part.source()).stream()
+                    .filter(VarSnippet.class::isInstance)
+                    .map(snippet -> ((VarSnippet) snippet).name())
+                    .forEach(names::add);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Appends the parts on lines of their own; expressions, which need no semicolon as snippets, get one
+     * on the next line, in case they end in a line comment.
+     * Statements ending in a block need none, and an extra one would be an empty statement anyway.
+     */
+    void append(StringBuilder wrapper, List<Part> parts, List<Segment> segments) {
+        for (var part : parts) {
+            segments.add(new Segment(wrapper.length(), part.start(), part.source().length()));
+            wrapper.append(part.source()).append('\n');
+            if (part.completeness().isComplete() && !part.source().strip().endsWith(";") && !part.source().strip().endsWith("}")) {
+                wrapper.append(";\n");
+            }
+        }
+    }
+
+    /**
+     * Collects the diagnostics of the events. Unresolved references leave a declaration
+     * recoverable without diagnostics, so they are reported at their first use instead.
+     */
+    void diagnose(AnalysisShell shell, List<SnippetEvent> events, String code, List<Segment> segments,
+                  Set<String> variables, List<Diagnostic> diagnostics) {
+        for (var event : events) {
+            var snippet = event.snippet();
+            shell.shell().diagnostics(snippet)
+                .filter(diag -> !NOT_A_STATEMENT.equals(diag.getCode()))
+                .filter(diag -> !refersTo(diag.getMessage(null), variables))
+                .forEach(diag -> diagnostics.add(locate(diag, code, segments)));
+            if (event.status().isDefined() && snippet instanceof DeclarationSnippet declaration) {
+                shell.shell().unresolvedDependencies(declaration)
+                    .filter(dependency -> !variables.contains(dependencyName(dependency)))
+                    .map(dependency -> unresolved(dependency, code))
+                    .forEach(diagnostics::add);
+            }
+        }
+    }
+
+    boolean refersTo(String message, Set<String> variables) {
+        var matcher = UNRESOLVED_VARIABLE.matcher(message);
+        return matcher.find() && variables.contains(matcher.group(1));
+    }
+
+    Diagnostic locate(Diag diag, String code, List<Segment> segments) {
+        var position = (int) diag.getStartPosition();
+        var segment = segments.stream()
+            .filter(candidate -> candidate.offset() <= position)
+            .reduce((first, second) -> second)
+            .orElse(segments.getFirst());
+        var start = codePosition(segment, position, code);
+        var end = Math.max(start, codePosition(segment, (int) diag.getEndPosition(), code));
+        var message = WRAPPER_LOCATION.matcher(diag.getMessage(null)).replaceAll("");
+        return Diagnostic.at(code, diag.isError(), message, start, end);
+    }
+
+    int codePosition(Segment segment, int position, String code) {
+        var offset = Math.clamp(position - segment.offset(), 0, segment.length());
+        return Math.min(segment.start() + offset, code.length());
+    }
+
+    /**
+     * Reports a dependency such as "method foo(int)" at the first occurrence of its name.
+     */
+    Diagnostic unresolved(String dependency, String code) {
+        var message = "cannot find symbol: " + dependency;
+        var matcher = Pattern.compile("\\b" + Pattern.quote(dependencyName(dependency)) + "\\b").matcher(code);
+        if (!matcher.find()) {
+            return Diagnostic.at(code, true, message, 0, 0);
+        }
+        return Diagnostic.at(code, true, message, matcher.start(), matcher.end());
+    }
+
+    String dependencyName(String dependency) {
+        return dependency.substring(dependency.indexOf(' ') + 1).replaceAll("\\(.*", "");
+    }
+
+    /**
+     * @throws TooManyRequestsException if all analysis shells stay busy
+     */
+    AnalysisShell borrow() {
+        try {
+            var shell = this.shells.poll(BORROW_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            if (shell == null) {
+                throw new TooManyRequestsException(1);
+            }
+            return shell;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TooManyRequestsException(1);
+        }
+    }
+
+    /**
+     * Returns the shell for the next request, or replaces it once it is used up.
+     */
+    void release(AnalysisShell shell) {
+        try {
+            shell.reset();
+            if (shell.uses < this.maxUses) {
+                this.shells.offer(shell);
+                return;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Resetting analysis shell failed: " + e.getMessage());
+        }
+        this.background.execute(() -> {
+            shell.close();
+            startShell();
+        });
+    }
+
+    void startShell() {
+        try {
+            this.shells.offer(new AnalysisShell());
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Starting analysis shell failed", e);
+        }
+    }
+}
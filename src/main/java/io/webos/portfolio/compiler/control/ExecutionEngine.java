@@ -0,0 +1,30 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.Engine;
+
+import java.time.Duration;
+
+/**
+ * Supplies the shells snippets run on. The {@link JShellPool} is the remote engine, whose
+ * shells each execute in a JVM of their own; the {@link LocalEngine} executes in this JVM
+ * and therefore only admits code of a restricted API surface.
+ */
+public interface ExecutionEngine {
+
+    Engine kind();
+
+    /**
+     * Whether the code may run on this engine.
+     */
+    boolean admits(String code);
+
+    /**
+     * @throws IllegalStateException if no shell became available within the timeout
+     */
+    PooledShell borrow(Duration timeout) throws InterruptedException;
+
+    /**
+     * Hands a borrowed shell back once its execution has ended.
+     */
+    void release(PooledShell shell);
+}
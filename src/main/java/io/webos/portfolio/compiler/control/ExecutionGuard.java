@@ -0,0 +1,101 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import io.webos.portfolio.compiler.entity.Limit;
+import jdk.jshell.EvalException;
+import jdk.jshell.SnippetEvent;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Enforces the {@link ExecutionLimits} on one execution of a shell. The waiting thread checks
+ * wall and CPU time every CHECK_INTERVAL_MS, the shell's output streams count the bytes written,
+ * and an OutOfMemoryError of a snippet counts as the memory limit. The first limit breached
+ * kills the shell's remote JVM, so the snippet ends even if it ignores being stopped.
+ */
+class ExecutionGuard {
+
+    static final System.Logger LOGGER = System.getLogger(ExecutionGuard.class.getName());
+    static final long CHECK_INTERVAL_MS = 50;
+    static final String OUT_OF_MEMORY = OutOfMemoryError.class.getName();
+
+    PooledShell pooled;
+    ExecutionLimits limits;
+    long startedMillis = System.currentTimeMillis();
+    Duration cpuAtStart;
+    AtomicLong outputBytes = new AtomicLong();
+    AtomicReference<Limit> breached = new AtomicReference<>();
+
+    ExecutionGuard(PooledShell pooled, ExecutionLimits limits) {
+        this.pooled = pooled;
+        this.limits = limits;
+        this.cpuAtStart = pooled.cpuTime();
+    }
+
+    long elapsedMillis() {
+        return System.currentTimeMillis() - this.startedMillis;
+    }
+
+    /**
+     * Checks wall and CPU time.
+     *
+     * @return the limit breached so far, or null
+     */
+    Limit check() {
+        if (this.breached.get() == null) {
+            if (elapsedMillis() >= this.limits.wallTime().toMillis()) {
+                breach(Limit.WALL_TIME);
+            } else if (this.pooled.cpuTime().minus(this.cpuAtStart).compareTo(this.limits.cpuTime()) > 0) {
+                breach(Limit.CPU_TIME);
+            }
+        }
+        return this.breached.get();
+    }
+
+    /**
+     * Counts output about to be written; false once the output limit is breached, so it is dropped.
+     */
+    boolean admitOutput(int bytes) {
+        if (this.outputBytes.addAndGet(bytes) > this.limits.maxOutputBytes()) {
+            breach(Limit.OUTPUT);
+        }
+        return this.breached.get() == null;
+    }
+
+    void inspect(SnippetEvent event) {
+        if (event.exception() instanceof EvalException thrown && OUT_OF_MEMORY.equals(thrown.getExceptionClassName())) {
+            breach(Limit.MEMORY);
+        }
+    }
+
+    void breach(Limit limit) {
+        if (this.breached.compareAndSet(null, limit)) {
+            LOGGER.log(System.Logger.Level.WARNING, "Code execution exceeded its " + limit.label() + " limit");
+            this.pooled.kill();
+        }
+    }
+
+    Limit breached() {
+        return this.breached.get();
+    }
+
+    /**
+     * What was exceeded, for the breached limit.
+     */
+    String message() {
+        return switch (this.breached.get()) {
+            case WALL_TIME -> "Execution exceeded " + this.limits.wallTime().toMillis() + "ms";
+            case CPU_TIME -> "Execution used more than " + this.limits.cpuTime().toMillis() + "ms of CPU time";
+            case MEMORY -> "Execution ran out of its " + this.limits.maxHeap() + " heap";
+            case OUTPUT -> "Output exceeded " + this.limits.maxOutputBytes() + " bytes";
+        };
+    }
+
+    ExecutionResult result() {
+        var limit = this.breached.get();
+        var prefix = limit == Limit.WALL_TIME ? "Timeout Error: " : "Limit Error: ";
+        return ExecutionResult.limitExceeded(limit, prefix + message());
+    }
+}
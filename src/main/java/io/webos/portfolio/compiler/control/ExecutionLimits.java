@@ -0,0 +1,51 @@
+package io.webos.portfolio.compiler.control;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+
+/**
+ * Limits every code execution runs under. Wall time, CPU time and output are checked by an
+ * {@link ExecutionGuard} while the snippet runs; the heap is the maximum heap of each shell's
+ * remote JVM, so it applies to shells started after a change.
+ */
+@ApplicationScoped
+public class ExecutionLimits {
+
+    @ConfigProperty(name = "webos.compiler.limits.wall-time", defaultValue = "PT3S")
+    Duration wallTime;
+
+    @ConfigProperty(name = "webos.compiler.limits.cpu-time", defaultValue = "PT2S")
+    Duration cpuTime;
+
+    @ConfigProperty(name = "webos.compiler.limits.max-heap", defaultValue = "64m")
+    String maxHeap;
+
+    @ConfigProperty(name = "webos.compiler.limits.max-output-bytes", defaultValue = "65536")
+    long maxOutputBytes;
+
+    public Duration wallTime() {
+        return this.wallTime;
+    }
+
+    public Duration cpuTime() {
+        return this.cpuTime;
+    }
+
+    public String maxHeap() {
+        return this.maxHeap;
+    }
+
+    public long maxOutputBytes() {
+        return this.maxOutputBytes;
+    }
+
+    /**
+     * Options of the remote JVM enforcing the heap limit; the JVM fails snippets with
+     * an OutOfMemoryError instead of growing, which the guard reports as the memory limit.
+     */
+    String[] remoteVMOptions() {
+        return new String[]{"-Xmx" + this.maxHeap};
+    }
+}
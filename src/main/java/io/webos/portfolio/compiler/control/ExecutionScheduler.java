@@ -0,0 +1,182 @@
+package io.webos.portfolio.compiler.control;
+
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for code executions.
+ * At most maxConcurrent executions run at once; up to maxQueued more wait, and anything
+ * beyond is rejected at once with a {@link TooManyRequestsException}.
+ * Waiting executions are admitted round-robin across sessions, so one visitor
+ * submitting a burst cannot starve the others.
+ */
+@ApplicationScoped
+public class ExecutionScheduler {
+
+    static final double AVERAGE_WEIGHT = 0.2;
+
+    @ConfigProperty(name = "webos.compiler.scheduler.max-concurrent", defaultValue = "4")
+    int maxConcurrent;
+
+    @ConfigProperty(name = "webos.compiler.scheduler.max-queued", defaultValue = "32")
+    int maxQueued;
+
+    @Inject
+    Meter meter;
+
+    int running;
+    int queued;
+    Map<String, ArrayDeque<Waiter>> queues = new HashMap<>();
+    ArrayDeque<String> rotation = new ArrayDeque<>();
+    double averageRunMillis = 1000;
+
+    DoubleHistogram waitTimes;
+    LongCounter rejections;
+
+    static class Waiter {
+        CountDownLatch admission = new CountDownLatch(1);
+        boolean admitted;
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        this.meter.upDownCounterBuilder("webos.compiler.queue.depth")
+            .setDescription("Executions waiting for a slot")
+            .buildWithCallback(measurement -> measurement.record(queued()));
+        this.meter.upDownCounterBuilder("webos.compiler.running")
+            .setDescription("Executions currently running")
+            .buildWithCallback(measurement -> measurement.record(running()));
+        this.waitTimes = this.meter.histogramBuilder("webos.compiler.queue.wait")
+            .setDescription("Time executions waited for a slot")
+            .setUnit("ms")
+            .build();
+        this.rejections = this.meter.counterBuilder("webos.compiler.rejections")
+            .setDescription("Executions rejected because the queue was full")
+            .build();
+    }
+
+    /**
+     * Waits for an execution slot in the session's turn.
+     *
+     * @throws TooManyRequestsException if maxQueued executions are already waiting
+     */
+    public Permit admit(String sessionKey) throws InterruptedException {
+        var start = System.nanoTime();
+        Waiter waiter;
+        synchronized (this) {
+            if (this.running < this.maxConcurrent && this.queued == 0) {
+                this.running++;
+                this.waitTimes.record(0);
+                return new Permit();
+            }
+            if (this.queued >= this.maxQueued) {
+                this.rejections.add(1);
+                throw new TooManyRequestsException(retryAfterSeconds());
+            }
+            waiter = new Waiter();
+            var queue = this.queues.get(sessionKey);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                this.queues.put(sessionKey, queue);
+                this.rotation.addLast(sessionKey);
+            }
+            queue.addLast(waiter);
+            this.queued++;
+        }
+        try {
+            waiter.admission.await();
+        } catch (InterruptedException e) {
+            abandon(sessionKey, waiter);
+            throw e;
+        }
+        this.waitTimes.record((System.nanoTime() - start) / 1e6);
+        return new Permit();
+    }
+
+    synchronized void abandon(String sessionKey, Waiter waiter) {
+        if (waiter.admitted) {
+            release(0);
+            return;
+        }
+        var queue = this.queues.get(sessionKey);
+        if (queue != null && queue.remove(waiter)) {
+            this.queued--;
+            if (queue.isEmpty()) {
+                this.queues.remove(sessionKey);
+                this.rotation.remove(sessionKey);
+            }
+        }
+    }
+
+    synchronized void release(long runMillis) {
+        if (runMillis > 0) {
+            this.averageRunMillis += AVERAGE_WEIGHT * (runMillis - this.averageRunMillis);
+        }
+        this.running--;
+        dispatch();
+    }
+
+    /**
+     * Hands free slots to the heads of the session queues in rotation.
+     */
+    void dispatch() {
+        while (this.running < this.maxConcurrent && this.queued > 0) {
+            var sessionKey = this.rotation.pollFirst();
+            var queue = this.queues.get(sessionKey);
+            var waiter = queue.pollFirst();
+            if (queue.isEmpty()) {
+                this.queues.remove(sessionKey);
+            } else {
+                this.rotation.addLast(sessionKey);
+            }
+            this.queued--;
+            this.running++;
+            waiter.admitted = true;
+            waiter.admission.countDown();
+        }
+    }
+
+    /**
+     * Estimates when the queue will have drained from the recent average run time.
+     */
+    long retryAfterSeconds() {
+        var drainMillis = (this.queued + 1) * this.averageRunMillis / this.maxConcurrent;
+        return Math.max(1, (long) Math.ceil(drainMillis / 1000));
+    }
+
+    public synchronized int queued() {
+        return this.queued;
+    }
+
+    public synchronized int running() {
+        return this.running;
+    }
+
+    /**
+     * An execution slot; closing it admits the next waiting execution.
+     */
+    public class Permit implements AutoCloseable {
+
+        long startNanos = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            if (this.released.compareAndSet(false, true)) {
+                release(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos));
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.ExecutionEvent;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the events of one execution from the evaluating threads to the thread sending them.
+ * The queue is bounded, so a client reading slowly blocks the shell's output, which in turn
+ * stalls the snippet writing it. Once closed, events are dropped, so nothing stays blocked
+ * after the client is gone or the execution timed out.
+ */
+class ExecutionStream {
+
+    static final int CAPACITY = 256;
+    static final int CHUNK_SIZE = 8 * 1024;
+    static final long OFFER_INTERVAL_MS = 50;
+    static final ExecutionEvent END = new ExecutionEvent("end", "");
+
+    LinkedBlockingQueue<ExecutionEvent> queue = new LinkedBlockingQueue<>(CAPACITY);
+    volatile boolean closed;
+
+    void output(String stream, String text) {
+        add(ExecutionEvent.output(stream, text));
+    }
+
+    void add(ExecutionEvent event) {
+        try {
+            while (!this.closed) {
+                if (this.queue.offer(event, OFFER_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void finish() {
+        add(END);
+    }
+
+    /**
+     * Waits for the next event; consecutive output of one stream already queued
+     * is joined into one event of up to CHUNK_SIZE characters.
+     *
+     * @return the next event, {@link #END} once the evaluation finished, or null after the timeout
+     */
+    ExecutionEvent next(long timeoutMillis) throws InterruptedException {
+        var event = this.queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (event == null || !event.output()) {
+            return event;
+        }
+        var text = new StringBuilder(event.data());
+        var following = this.queue.peek();
+        while (following != null && following.name().equals(event.name())
+                && text.length() + following.data().length() <= CHUNK_SIZE) {
+            text.append(this.queue.poll().data());
+            following = this.queue.peek();
+        }
+        return ExecutionEvent.output(event.name(), text.toString());
+    }
+
+    void close() {
+        this.closed = true;
+        this.queue.clear();
+    }
+}
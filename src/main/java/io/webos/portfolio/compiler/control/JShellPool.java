@@ -0,0 +1,206 @@
+package io.webos.portfolio.compiler.control;
+
+import io.quarkus.runtime.StartupEvent;
+import io.webos.portfolio.compiler.entity.Engine;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The remote {@link ExecutionEngine}: a pool of pre-started {@link PooledShell}s, so executions
+ * skip launching a remote JVM.
+ * The pool keeps minIdle shells warm and grows on demand up to maxSize; shells idle for
+ * longer than idleTimeout are closed again down to minIdle, so the size follows the load.
+ * Returned shells are reset in the background, and recycled after maxUses uses or
+ * when polluted. Idle shells are health-checked periodically. Shells start with the
+ * heap limit of the {@link ExecutionLimits}.
+ */
+@ApplicationScoped
+public class JShellPool implements ExecutionEngine {
+
+    static final System.Logger LOGGER = System.getLogger(JShellPool.class.getName());
+    static final Duration MAINTENANCE_INTERVAL = Duration.ofSeconds(30);
+
+    @ConfigProperty(name = "webos.compiler.pool.min-idle", defaultValue = "2")
+    int minIdle;
+
+    @ConfigProperty(name = "webos.compiler.pool.max-size", defaultValue = "12")
+    int maxSize;
+
+    @ConfigProperty(name = "webos.compiler.pool.max-uses", defaultValue = "100")
+    int maxUses;
+
+    @ConfigProperty(name = "webos.compiler.pool.idle-timeout", defaultValue = "PT5M")
+    Duration idleTimeout;
+
+    @Inject
+    ExecutionLimits limits;
+
+    LinkedBlockingDeque<PooledShell> idle = new LinkedBlockingDeque<>();
+    AtomicInteger size = new AtomicInteger();
+    AtomicInteger starting = new AtomicInteger();
+    ExecutorService background = Executors.newVirtualThreadPerTaskExecutor();
+    ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().daemon().name("jshell-pool-maintenance").factory());
+
+    void onStart(@Observes StartupEvent event) {
+        replenish();
+        var interval = MAINTENANCE_INTERVAL.toMillis();
+        this.maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        this.maintenance.shutdownNow();
+        this.background.shutdownNow();
+        this.idle.forEach(PooledShell::close);
+        this.idle.clear();
+    }
+
+    @Override
+    public Engine kind() {
+        return Engine.REMOTE;
+    }
+
+    /**
+     * Any code may run remotely; the shell's JVM is killed if it breaches a limit.
+     */
+    @Override
+    public boolean admits(String code) {
+        return true;
+    }
+
+    /**
+     * Takes the most recently returned shell, starts a new one if the pool may still grow,
+     * or waits for a shell to be returned.
+     *
+     * @throws IllegalStateException if no shell became available within the timeout
+     */
+    @Override
+    public PooledShell borrow(Duration timeout) throws InterruptedException {
+        var shell = this.idle.pollFirst();
+        if (shell == null && reserve()) {
+            shell = start();
+        }
+        if (shell == null) {
+            shell = this.idle.pollFirst(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        replenish();
+        if (shell == null) {
+            throw new IllegalStateException("No JShell available");
+        }
+        return shell;
+    }
+
+    /**
+     * Hands the shell back; it is reset or recycled off the request path.
+     */
+    @Override
+    public void release(PooledShell shell) {
+        this.background.execute(() -> recycleOrReturn(shell));
+    }
+
+    void recycleOrReturn(PooledShell shell) {
+        if (!shell.reusable(this.maxUses)) {
+            discard(shell);
+            return;
+        }
+        try {
+            shell.reset();
+            this.idle.offerFirst(shell);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Resetting JShell failed: " + e.getMessage());
+            discard(shell);
+        }
+    }
+
+    /**
+     * Starts shells in the background until minIdle are idle or starting.
+     */
+    void replenish() {
+        while (this.idle.size() + this.starting.get() < this.minIdle && reserve()) {
+            this.starting.incrementAndGet();
+            this.background.execute(() -> {
+                try {
+                    this.idle.offerLast(start());
+                } finally {
+                    this.starting.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    boolean reserve() {
+        var current = this.size.get();
+        while (current < this.maxSize) {
+            if (this.size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+            current = this.size.get();
+        }
+        return false;
+    }
+
+    /**
+     * Starts a shell on a slot already reserved; the slot is given back if starting fails.
+     */
+    PooledShell start() {
+        try {
+            return new PooledShell(this.limits.remoteVMOptions());
+        } catch (RuntimeException e) {
+            this.size.decrementAndGet();
+            LOGGER.log(System.Logger.Level.ERROR, "Starting JShell failed", e);
+            throw e;
+        }
+    }
+
+    void discard(PooledShell shell) {
+        this.size.decrementAndGet();
+        try {
+            shell.close();
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Closing JShell failed: " + e.getMessage());
+        }
+        replenish();
+    }
+
+    /**
+     * Shrinks the pool after idle periods and replaces shells failing the health check.
+     * Each shell is taken out of the idle queue while it is checked, so no borrower sees it.
+     */
+    void maintain() {
+        var cutoff = System.currentTimeMillis() - this.idleTimeout.toMillis();
+        for (var shell : List.copyOf(this.idle)) {
+            if (!this.idle.remove(shell)) {
+                continue;
+            }
+            if (shell.idleSince(cutoff) && this.size.get() > this.minIdle) {
+                discard(shell);
+            } else if (!shell.healthy()) {
+                LOGGER.log(System.Logger.Level.INFO, "Replacing unhealthy JShell");
+                discard(shell);
+            } else {
+                this.idle.offerLast(shell);
+            }
+        }
+    }
+
+    public int size() {
+        return this.size.get();
+    }
+
+    public int idleCount() {
+        return this.idle.size();
+    }
+}
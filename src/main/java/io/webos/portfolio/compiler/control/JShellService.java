@@ -1,85 +1,682 @@
 package io.webos.portfolio.compiler.control;
 
+import io.webos.portfolio.compiler.entity.BatchItem;
+import io.webos.portfolio.compiler.entity.BatchResult;
+import io.webos.portfolio.compiler.entity.BenchmarkRequest;
+import io.webos.portfolio.compiler.entity.BenchmarkResult;
+import io.webos.portfolio.compiler.entity.Engine;
+import io.webos.portfolio.compiler.entity.ExecutionEvent;
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import io.webos.portfolio.compiler.entity.Limit;
+import io.webos.portfolio.compiler.entity.SnippetResult;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import jdk.jshell.JShell;
 import jdk.jshell.Snippet;
 import jdk.jshell.SnippetEvent;
+import jdk.jshell.SourceCodeAnalysis;
+import jdk.jshell.VarSnippet;
 import jdk.jshell.Diag;
+import jdk.jshell.EvalException;
+import jdk.jshell.JShellException;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * Executes Java code snippets using the JShell API with timeout enforcement.
- * Each execution runs in a separate thread with a 500ms timeout to prevent
- * infinite loops from freezing the server.
+ * Executes Java code snippets using the JShell API under the {@link ExecutionLimits}.
+ * Snippets run on shells borrowed from an {@link ExecutionEngine}, the warm {@link JShellPool}
+ * or the in-process {@link LocalEngine}, once admitted by the {@link ExecutionScheduler};
+ * each execution runs in a separate thread guarded by an {@link ExecutionGuard}, so runaway
+ * snippets are killed instead of freezing the server. Deterministic code that ran before on
+ * a fresh state is answered from the {@link ResultCache} instead.
  */
 @ApplicationScoped
 public class JShellService {
 
     static final System.Logger LOGGER = System.getLogger(JShellService.class.getName());
-    static final long TIMEOUT_MS = 3000;
+    static final String NO_OUTPUT = "Executed successfully";
+    /**
+     * Iteration times the calibration of a benchmark takes at most.
+     */
+    static final int CALIBRATION_ITERATIONS = 2;
+    static final Set<Snippet.Kind> DECLARATIONS = EnumSet.of(Snippet.Kind.IMPORT, Snippet.Kind.TYPE_DECL, Snippet.Kind.METHOD);
+
+    @Inject
+    JShellPool pool;
+
+    @Inject
+    ReplSessions replSessions;
+
+    @Inject
+    ExecutionScheduler scheduler;
+
+    @Inject
+    ExecutionLimits limits;
+
+    @Inject
+    LocalEngine localEngine;
+
+    @Inject
+    ResultCache cache;
+
+    /**
+     * Engine of benchmarks, "remote" or "local"; local takes the JVM start and the JDI round trips out
+     * of the measurement. Nothing else runs locally, as local snippets run inside the server.
+     */
+    @ConfigProperty(name = "webos.compiler.engine", defaultValue = "remote")
+    String engine;
+
+    @ConfigProperty(name = "webos.compiler.batch.max-items", defaultValue = "16")
+    int maxBatchItems;
 
     /**
-     * Executes Java code and returns combined output.
-     * Runs in a separate thread with 500ms timeout.
+     * Shared by all executions; the scheduler bounds how many run at once.
+     */
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Executes Java code, in the JShell Studio session if one is given, and returns combined output.
+     * Executions outside a session take turns in the scheduler by client, a session's by the session.
      *
+     * @param client the key of the visitor, such as their address
      * @param code the Java code to execute
-     * @return combined output (System.out + expression results)
+     * @return combined output (System.out + expression results), or the limit that ended it
+     */
+    public ExecutionResult execute(String client, String sessionId, String code) {
+        return sessionId == null || sessionId.isBlank() ? executeFresh(client, code) : executeInSession(sessionId, code);
+    }
+
+    /**
+     * Runs in a separate thread under the execution limits, on a fresh state.
      */
-    public String execute(String code) {
+    ExecutionResult executeFresh(String client, String code) {
         if (code == null || code.isBlank()) {
-            return "No code provided";
+            return ExecutionResult.success("No code provided");
+        }
+        var engine = this.pool;
+        var key = this.cache.key(engine.kind(), code);
+        var cached = key == null ? Optional.<ExecutionResult>empty() : this.cache.result(key);
+        if (cached.isPresent()) {
+            return cached.get();
         }
 
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (var permit = this.scheduler.admit(client)) {
+            var pooled = engine.borrow(this.limits.wallTime());
+            var result = evaluate(pooled, code, snippet -> {}, () -> engine.release(pooled));
+            if (key != null) {
+                this.cache.put(key, result);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResult.error("Error: Execution interrupted");
+        } catch (IllegalStateException e) {
+            return ExecutionResult.error("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executes Java code in the given JShell Studio session, where imports, classes,
+     * methods and variables of earlier executions remain defined.
+     * Breaching a limit kills the session's shell, so the session ends with it.
+     * On a fresh session a cached result is returned at once, and the code is evaluated
+     * before the session's next execution, see {@link ReplSession#defer(String)}.
+     * The execution restoring a session that lost values on being spilled reports it, see
+     * {@link ExecutionResult#lossy()}.
+     */
+    ExecutionResult executeInSession(String sessionId, String code) {
+        if (code == null || code.isBlank()) {
+            return ExecutionResult.success("No code provided");
+        }
+
+        try (var permit = this.scheduler.admit(sessionId)) {
+            var session = openSession(sessionId);
+            var lossy = session.takeLossy();
+            var key = session.fresh() ? this.cache.key(Engine.REMOTE, code) : null;
+            var cached = key == null ? Optional.<ExecutionResult>empty() : this.cache.result(key);
+            if (cached.isPresent()) {
+                session.defer(code);
+                session.release();
+                return cached.get();
+            }
+            var result = evaluate(session.shell(), code, session::record, session::release);
+            if (result.limit() != null) {
+                this.replSessions.end(sessionId);
+            } else if (key != null) {
+                this.cache.put(key, result);
+            }
+            return lossy ? result.asLossy() : result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResult.error("Error: Execution interrupted");
+        } catch (IllegalStateException e) {
+            return ExecutionResult.error("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executes the code, in the JShell Studio session if one is given, and hands its stdout and stderr
+     * and the result of each snippet to the consumer while it runs, ending with a "done" event.
+     * The consumer may block: it slows the snippet down instead of its output piling up.
+     * Restoring a session that lost values sets "lossy" on the "done" event.
+     *
+     * Like {@link #execute(String, String, String)}, it takes turns by client or by session.
+     *
+     * @throws TooManyRequestsException if the scheduler or the session registry rejects the execution,
+     *                                  always before the first event
+     */
+    public void stream(String client, String sessionId, String code, Consumer<ExecutionEvent> events) {
+        var stateful = sessionId != null && !sessionId.isBlank();
+        var engine = this.pool;
+        var key = this.cache.key(engine.kind(), code);
+        var cached = stateful || key == null ? Optional.<List<ExecutionEvent>>empty() : this.cache.events(key);
+        if (cached.isPresent()) {
+            replay(cached.get(), events);
+            return;
+        }
+        try (var permit = this.scheduler.admit(stateful ? sessionId : client)) {
+            if (stateful) {
+                var session = openSession(sessionId);
+                if (session.takeLossy()) {
+                    var received = events;
+                    events = event -> received.accept("done".equals(event.name()) ? event.asLossy() : event);
+                }
+                var freshKey = session.fresh() ? key : null;
+                cached = freshKey == null ? Optional.empty() : this.cache.events(freshKey);
+                if (cached.isPresent()) {
+                    session.defer(code);
+                    try {
+                        replay(cached.get(), events);
+                    } finally {
+                        session.release();
+                    }
+                    return;
+                }
+                if (streamEvaluation(session.shell(), code, session::record, session::release, caching(freshKey, events)) != null) {
+                    this.replSessions.end(sessionId);
+                }
+            } else {
+                var pooled = engine.borrow(this.limits.wallTime());
+                streamEvaluation(pooled, code, snippet -> {}, () -> engine.release(pooled), caching(key, events));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            events.accept(ExecutionEvent.done("error", e.getMessage(), 0));
+        }
+    }
+
+    /**
+     * Sends the events of a cached execution, and "done" at once.
+     */
+    void replay(List<ExecutionEvent> cached, Consumer<ExecutionEvent> events) {
+        cached.forEach(events);
+        events.accept(ExecutionEvent.done("completed", "", 0));
+    }
+
+    /**
+     * Passes the events on, caching them under the key if the execution completes.
+     */
+    Consumer<ExecutionEvent> caching(String key, Consumer<ExecutionEvent> events) {
+        if (key == null) {
+            return events;
+        }
+        var recorded = new ArrayList<ExecutionEvent>();
+        return event -> {
+            events.accept(event);
+            if (!"done".equals(event.name())) {
+                recorded.add(event);
+            } else if (event.completed()) {
+                this.cache.putEvents(key, recorded);
+            }
+        };
+    }
+
+    /**
+     * Executes the items in parallel, each on a fresh shell, and hands each result to the consumer
+     * as soon as it is ready, so results arrive in completion order, followed by a "done" event.
+     * All items are admitted under the client's scheduler key, so a batch takes turns with other visitors
+     * instead of crowding them out; up to the scheduler's concurrency it takes as long as its slowest item.
+     * The slot of the first item executed is taken before anything is handed to the consumer, and
+     * whatever ends the batch early cancels the items still running.
+     *
+     * @throws TooManyRequestsException if the scheduler has no room for even the first item
+     */
+    public void batch(String client, List<BatchItem> items, Consumer<ExecutionEvent> events) {
+        var started = System.currentTimeMillis();
+        var batchKey = client;
+        var reserved = new AtomicReference<ExecutionScheduler.Permit>();
         try {
-            Future<String> future = executor.submit(() -> executeInJShell(code));
-            return future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
-        } catch (TimeoutException e) {
-            LOGGER.log(System.Logger.Level.WARNING, "Code execution timed out");
-            return "Timeout Error: Execution exceeded 3000ms";
+            reserved.set(this.scheduler.admit(batchKey));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        var completed = new LinkedBlockingQueue<BatchResult>();
+        var running = items.stream()
+            .map(item -> this.executor.submit(() -> completed.add(executeItem(item, batchKey, reserved))))
+            .toList();
+        try {
+            for (var i = 0; i < items.size(); i++) {
+                events.accept(ExecutionEvent.result(completed.take()));
+            }
+            events.accept(ExecutionEvent.done("completed", "", System.currentTimeMillis() - started));
+        } catch (InterruptedException | CancellationException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            running.forEach(future -> future.cancel(true));
+            var unused = reserved.getAndSet(null);
+            if (unused != null) {
+                unused.close();
+            }
+        }
+    }
+
+    /**
+     * Benchmarks the code on a fresh shell, see {@link BenchmarkHarness}. The iterations share the
+     * execution limits: each lasts half the wall time divided among them and the calibration.
+     */
+    public BenchmarkResult benchmark(String client, BenchmarkRequest request) {
+        var iterationNanos = this.limits.wallTime().toNanos() / 2 / (request.warmups() + request.iterations() + CALIBRATION_ITERATIONS);
+        try (var permit = this.scheduler.admit(client)) {
+            var engine = benchmarkEngine(request.setup() + "\n" + request.code());
+            var pooled = engine.borrow(this.limits.wallTime());
+            var execution = guarded(pooled, guard -> {
+                var setup = request.setup().isBlank() ? "" : executeInJShell(pooled, request.setup(), snippet -> {}, guard);
+                var shell = pooled.shell();
+                String harness;
+                try {
+                    harness = BenchmarkHarness.source(snippets(shell, request.code()), shell.sourceCodeAnalysis(),
+                        request.warmups(), request.iterations(), iterationNanos);
+                } catch (IllegalArgumentException e) {
+                    return "Error: " + e.getMessage();
+                }
+                var measured = executeInJShell(pooled, harness, snippet -> {}, guard);
+                return setup.isEmpty() || setup.equals(NO_OUTPUT) ? measured : setup + "\n" + measured;
+            }, () -> engine.release(pooled));
+            return BenchmarkHarness.result(execution);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return "Error: Execution interrupted";
+            return new BenchmarkResult(ExecutionResult.error("Error: Execution interrupted"), null);
+        } catch (IllegalStateException e) {
+            return new BenchmarkResult(ExecutionResult.error("Error: " + e.getMessage()), null);
+        }
+    }
+
+    /**
+     * Runs the main method of a class compiled by the {@link JavacService} on a fresh remote shell,
+     * which gets the class directory on its class path; that cannot be undone, so the shell is recycled.
+     * An exception thrown by main is reported as the snippet's runtime error.
+     */
+    public ExecutionResult launch(String client, Path classes, String mainClass, List<String> arguments) {
+        try (var permit = this.scheduler.admit(client)) {
+            var pooled = this.pool.borrow(this.limits.wallTime());
+            pooled.markPolluted();
+            pooled.shell().addToClasspath(classes.toString());
+            return guarded(pooled, guard -> {
+                var output = executeInJShell(pooled, launcher(mainClass, arguments), snippet -> {}, guard);
+                return NO_OUTPUT.equals(output) ? "" : output;
+            }, () -> this.pool.release(pooled));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResult.error("Error: Execution interrupted");
+        } catch (IllegalStateException e) {
+            return ExecutionResult.error("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Snippets live in a package of their own, so main is looked up reflectively,
+     * which also reaches classes of the unnamed package.
+     */
+    static String launcher(String mainClass, List<String> arguments) {
+        var literals = arguments.stream()
+            .map(JShellService::literal)
+            .collect(Collectors.joining(", "));
+        return """
+            try {
+                var main = Class.forName(%1$s).getDeclaredMethod("main", String[].class);
+                main.setAccessible(true);
+                main.invoke(null, (Object) new String[] {%2$s});
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("No main method in class " + %1$s);
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                throw e.getCause();
+            }
+            """.formatted(literal(mainClass), literals);
+    }
+
+    static String literal(String value) {
+        var escaped = new StringBuilder("\"");
+        for (var c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.append('"').toString();
+    }
+
+    public int maxBatchItems() {
+        return this.maxBatchItems;
+    }
+
+    /**
+     * Executes one item, see {@link #runItem}; failing in any way is its result, not the batch's,
+     * so the batch never waits for a result that is not coming.
+     */
+    BatchResult executeItem(BatchItem item, String batchKey, AtomicReference<ExecutionScheduler.Permit> reserved) {
+        try {
+            return runItem(item, batchKey, reserved);
+        } catch (Throwable e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Batch item " + item.id() + " failed", e);
+            return new BatchResult(item.id(), ExecutionResult.error("Error: " + e.getMessage()), 0, 0);
+        }
+    }
+
+    /**
+     * Executes one item, on the batch's reserved slot if no other item took it yet; failing to be
+     * admitted or to get a shell is its result, not the batch's.
+     */
+    BatchResult runItem(BatchItem item, String batchKey, AtomicReference<ExecutionScheduler.Permit> reserved) {
+        var started = System.currentTimeMillis();
+        var engine = this.pool;
+        var key = this.cache.key(engine.kind(), item.code());
+        var cached = key == null ? Optional.<ExecutionResult>empty() : this.cache.result(key);
+        if (cached.isPresent()) {
+            return new BatchResult(item.id(), cached.get(), 0, 0);
+        }
+        var reservation = reserved.getAndSet(null);
+        try (var permit = reservation != null ? reservation : this.scheduler.admit(batchKey)) {
+            var admitted = System.currentTimeMillis();
+            var pooled = engine.borrow(this.limits.wallTime());
+            var result = evaluate(pooled, item.code(), snippet -> {}, () -> engine.release(pooled));
+            if (key != null) {
+                this.cache.put(key, result);
+            }
+            return new BatchResult(item.id(), result, admitted - started, System.currentTimeMillis() - admitted);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BatchResult(item.id(), ExecutionResult.error("Error: Execution interrupted"), 0, 0);
+        } catch (IllegalStateException | TooManyRequestsException e) {
+            var waited = System.currentTimeMillis() - started;
+            return new BatchResult(item.id(), ExecutionResult.error("Error: " + e.getMessage()), waited, 0);
+        }
+    }
+
+    /**
+     * Evaluates on a separate thread while forwarding its events on this one, until it ends or breaches a limit.
+     * A consumer throwing CancellationException, as when the client went away, stops the evaluation.
+     *
+     * @return the limit breached, or null
+     */
+    Limit streamEvaluation(PooledShell pooled, String code, Consumer<Snippet> snippetLog, Runnable onDone,
+                           Consumer<ExecutionEvent> events) {
+        var guard = new ExecutionGuard(pooled, this.limits);
+        var stream = new ExecutionStream();
+        var failure = new AtomicReference<String>();
+        pooled.guard(guard);
+        pooled.listen(stream::output);
+        this.executor.execute(() -> {
+            try {
+                evaluateSnippets(pooled, code, snippetLog, event -> {
+                    guard.inspect(event);
+                    if (event.causeSnippet() == null) {
+                        stream.add(ExecutionEvent.snippet(describe(event, pooled.shell())));
+                    }
+                });
+            } catch (RuntimeException e) {
+                pooled.markPolluted();
+                failure.set(e.getMessage());
+            } finally {
+                stream.finish();
+                pooled.listen(null);
+                pooled.guard(null);
+                pooled.takeOutput();
+                onDone.run();
+            }
+        });
+
+        try {
+            while (true) {
+                var limit = guard.check();
+                if (limit != null) {
+                    stream.close();
+                    events.accept(ExecutionEvent.limitExceeded(limit, guard.message(), guard.elapsedMillis()));
+                    return limit;
+                }
+                var event = stream.next(ExecutionGuard.CHECK_INTERVAL_MS);
+                if (event == ExecutionStream.END) {
+                    limit = guard.breached();
+                    var message = failure.get();
+                    if (limit != null) {
+                        events.accept(ExecutionEvent.limitExceeded(limit, guard.message(), guard.elapsedMillis()));
+                    } else if (message != null) {
+                        events.accept(ExecutionEvent.done("error", message, guard.elapsedMillis()));
+                    } else {
+                        events.accept(ExecutionEvent.done("completed", "", guard.elapsedMillis()));
+                    }
+                    return limit;
+                }
+                if (event != null) {
+                    events.accept(event);
+                }
+            }
+        } catch (InterruptedException | CancellationException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            stream.close();
+            pooled.markPolluted();
+            pooled.shell().stop();
+            return guard.breached();
+        } finally {
+            stream.close();
+        }
+    }
+
+    SnippetResult describe(SnippetEvent event, JShell shell) {
+        var snippet = event.snippet();
+        var diagnostics = event.status() == Snippet.Status.REJECTED
+            ? shell.diagnostics(snippet).map(this::formatDiagnostic).toList()
+            : List.<String>of();
+        var named = snippet.kind() == Snippet.Kind.VAR || snippet.kind() == Snippet.Kind.EXPRESSION;
+        var exception = event.exception() == null ? null : describe(event.exception());
+        return new SnippetResult(snippet.source().strip(), snippet.kind().name(), event.status().name(),
+            named ? extractName(snippet) : null, named ? event.value() : null, diagnostics, exception);
+    }
+
+    String describe(JShellException exception) {
+        var message = exception.getMessage();
+        if (exception instanceof EvalException thrown) {
+            return message == null ? thrown.getExceptionClassName() : thrown.getExceptionClassName() + ": " + message;
+        }
+        return message == null ? exception.getClass().getSimpleName() : message;
+    }
+
+    /**
+     * The engine benchmarks run on, as configured; local only if it admits the code, so code it may
+     * not run falls back to the remote engine. Every other execution runs remotely.
+     */
+    ExecutionEngine benchmarkEngine(String code) {
+        return Engine.of(this.engine) == Engine.LOCAL && this.localEngine.admits(code) ? this.localEngine : this.pool;
+    }
+
+    /**
+     * Ends the JShell Studio session; returns false if there was none.
+     */
+    public boolean endSession(String sessionId) {
+        return this.replSessions.end(sessionId);
+    }
+
+    /**
+     * Returns the session exclusively for one execution, starting over if it was evicted meanwhile,
+     * and restored if it was spilled.
+     */
+    ReplSession openSession(String sessionId) throws InterruptedException {
+        while (true) {
+            var session = this.replSessions.session(sessionId, this.limits.wallTime());
+            if (session.acquire()) {
+                restore(session);
+                return session;
+            }
+        }
+    }
+
+    /**
+     * Replays the sources of a spilled session, or those deferred by a cached execution, onto its shell,
+     * each under the execution limits of its own, dropping their output. A replay breaching a limit
+     * ends the session, so the next execution starts over.
+     *
+     * @throws IllegalStateException if the replay breached a limit
+     */
+    void restore(ReplSession session) {
+        var pooled = session.shell();
+        for (var source : session.takeRestore()) {
+            var result = guarded(pooled, guard -> replaySource(pooled, source, session, guard), () -> {});
+            if (result.limit() != null) {
+                session.release();
+                this.replSessions.end(session.id());
+                throw new IllegalStateException("Restoring the session failed: " + result.output());
+            }
+        }
+    }
+
+    String replaySource(PooledShell pooled, String source, ReplSession session, ExecutionGuard guard) {
+        evaluateSnippets(pooled, source, session::record, guard::inspect);
+        pooled.takeOutput();
+        return "";
+    }
+
+    ExecutionResult evaluate(PooledShell pooled, String code, Consumer<Snippet> snippetLog, Runnable onDone) {
+        return guarded(pooled, guard -> executeInJShell(pooled, code, snippetLog, guard), onDone);
+    }
+
+    /**
+     * Runs the evaluation on a separate thread, checking the limits while waiting for it;
+     * onDone runs once evaluation has ended, which after a breach is when the killed snippet returns.
+     */
+    ExecutionResult guarded(PooledShell pooled, Function<ExecutionGuard, String> evaluation, Runnable onDone) {
+        var guard = new ExecutionGuard(pooled, this.limits);
+        pooled.guard(guard);
+        try {
+            Future<String> future = this.executor.submit(() -> {
+                try {
+                    return evaluation.apply(guard);
+                } finally {
+                    pooled.guard(null);
+                    onDone.run();
+                }
+            });
+            while (true) {
+                try {
+                    var output = future.get(ExecutionGuard.CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    return guard.breached() == null ? ExecutionResult.success(output) : guard.result();
+                } catch (TimeoutException e) {
+                    if (guard.check() != null) {
+                        return guard.result();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pooled.shell().stop();
+            return ExecutionResult.error("Error: Execution interrupted");
         } catch (Exception e) {
             LOGGER.log(System.Logger.Level.ERROR, "Execution error", e);
-            return "Error: " + e.getMessage();
-        } finally {
-            executor.shutdownNow();
+            return ExecutionResult.error("Error: " + e.getMessage());
         }
     }
 
-    String executeInJShell(String code) {
-        var outputCapture = new ByteArrayOutputStream();
+    /**
+     * Evaluates the code snippet by snippet. Declarations identical to an active one are
+     * skipped, so resubmitting a whole editor only compiles what changed.
+     */
+    String executeInJShell(PooledShell pooled, String code, Consumer<Snippet> snippetLog, ExecutionGuard guard) {
         var resultBuilder = new StringBuilder();
+        var shell = pooled.shell();
 
-        try (var shell = createJShellWithOutput(outputCapture)) {
-            var events = shell.eval(code);
-            
-            for (var event : events) {
+        try {
+            evaluateSnippets(pooled, code, snippetLog, event -> {
+                guard.inspect(event);
                 processSnippetEvent(event, shell, resultBuilder);
-            }
-
-            var capturedOutput = outputCapture.toString(StandardCharsets.UTF_8);
+            });
+            var capturedOutput = pooled.takeOutput();
             return combineOutput(capturedOutput, resultBuilder.toString());
         } catch (Exception e) {
+            pooled.markPolluted();
             return "Error: " + e.getMessage();
         }
     }
 
-    JShell createJShellWithOutput(ByteArrayOutputStream outputCapture) {
-        var printStream = new PrintStream(outputCapture, true, StandardCharsets.UTF_8);
-        return JShell.builder()
-            .out(printStream)
-            .err(printStream)
-            .build();
+    void evaluateSnippets(PooledShell pooled, String code, Consumer<Snippet> snippetLog, Consumer<SnippetEvent> handler) {
+        var shell = pooled.shell();
+        pooled.inspect(code);
+        var declared = activeDeclarations(shell);
+        for (var source : snippets(shell, code)) {
+            if (declared.contains(source)) {
+                continue;
+            }
+            for (var event : pooled.eval(source)) {
+                handler.accept(event);
+                if (event.causeSnippet() == null && event.status() != Snippet.Status.REJECTED) {
+                    snippetLog.accept(event.snippet());
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the code into complete snippets; JShell evaluates only one per eval call.
+     * Incomplete trailing code is passed on as is, so its error is reported.
+     */
+    List<String> snippets(JShell shell, String code) {
+        var analysis = shell.sourceCodeAnalysis();
+        var sources = new ArrayList<String>();
+        var remaining = code;
+        while (!remaining.isBlank()) {
+            var info = analysis.analyzeCompletion(remaining);
+            if (info.completeness() == SourceCodeAnalysis.Completeness.EMPTY) {
+                break;
+            }
+            if (!info.completeness().isComplete()) {
+                sources.add(remaining);
+                break;
+            }
+            sources.add(info.source());
+            remaining = info.remaining();
+        }
+        return sources;
+    }
+
+    Set<String> activeDeclarations(JShell shell) {
+        return shell.snippets()
+            .filter(snippet -> DECLARATIONS.contains(snippet.kind()))
+            .filter(snippet -> shell.status(snippet) == Snippet.Status.VALID)
+            .map(Snippet::source)
+            .collect(Collectors.toSet());
     }
 
     void processSnippetEvent(SnippetEvent event, JShell shell, StringBuilder resultBuilder) {
@@ -116,7 +713,7 @@ public class JShellService {
         return "Warning: " + message;
     }
 
-    void appendException(jdk.jshell.JShellException exception, StringBuilder resultBuilder) {
+    void appendException(JShellException exception, StringBuilder resultBuilder) {
         if (resultBuilder.length() > 0) {
             resultBuilder.append("\n");
         }
@@ -141,14 +738,15 @@ public class JShellService {
         }
     }
 
+    /**
+     * Declared variables are shown by name; expressions, which JShell stores
+     * as temporary variables, by their source.
+     */
     String extractName(Snippet snippet) {
         var source = snippet.source().trim();
-        if (snippet.kind() == Snippet.Kind.VAR) {
-            var parts = source.split("\\s+");
-            if (parts.length >= 2) {
-                var namePart = parts[1].split("=")[0].trim();
-                return namePart;
-            }
+        if (snippet instanceof VarSnippet variable
+                && variable.subKind() != Snippet.SubKind.TEMP_VAR_EXPRESSION_SUBKIND) {
+            return variable.name();
         }
         return source;
     }
@@ -167,6 +765,6 @@ public class JShellService {
             combined.append(snippetResults);
         }
         
-        return combined.toString().isEmpty() ? "Executed successfully" : combined.toString();
+        return combined.toString().isEmpty() ? NO_OUTPUT : combined.toString();
     }
 }
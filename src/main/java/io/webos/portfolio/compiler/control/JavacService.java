@@ -0,0 +1,301 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.Compilation;
+import io.webos.portfolio.compiler.entity.Engine;
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import io.webos.portfolio.filesystem.entity.FileNode;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles the Java files of a VFS directory in memory through javax.tools and runs their main method.
+ * <p>
+ * Builds are incremental: the classes of every file are cached per project by the hash of its content,
+ * and a build only compiles the files whose content changed, together with the unchanged files that
+ * mention a type declared by a changed or removed file, so they are checked against its new version.
+ * Everything else is linked against the cached classes.
+ */
+@ApplicationScoped
+public class JavacService {
+
+    static final System.Logger LOGGER = System.getLogger(JavacService.class.getName());
+    static final Pattern TYPE_DECLARATION = Pattern.compile("\\b(?:class|interface|enum|record)\\s+([A-Za-z_$][\\w$]*)");
+    static final List<String> OPTIONS = List.of("-proc:none", "-g");
+
+    @ConfigProperty(name = "webos.compiler.javac.max-projects", defaultValue = "32")
+    int maxProjects;
+
+    @Inject
+    JShellService shellService;
+
+    @Inject
+    ResultCache cache;
+
+    /**
+     * Build caches of the most recently compiled projects, by directory id.
+     */
+    Map<String, Project> projects = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Project> eldest) {
+            return size() > JavacService.this.maxProjects;
+        }
+    });
+
+    /**
+     * Classes compiled from one version of a file, by binary name in the order javac wrote them.
+     */
+    record Unit(Map<String, byte[]> classes) {
+
+        Set<String> typeNames() {
+            return this.classes.keySet().stream()
+                .map(JavacService::simpleName)
+                .collect(Collectors.toSet());
+        }
+    }
+
+    /**
+     * The last successful build of a project: units by content hash, and the hash of each file by id.
+     */
+    static class Project {
+        final Map<String, Unit> units = new HashMap<>();
+        final Map<String, String> hashes = new HashMap<>();
+    }
+
+    /**
+     * Compiles the sources of the project, reusing the classes of unchanged files.
+     * A failed build leaves the cache as it was, so the next one compiles the same files again.
+     */
+    public Compilation compile(String projectId, List<FileNode> sources) {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler available on this server");
+        }
+        var project = this.projects.computeIfAbsent(projectId, id -> new Project());
+        synchronized (project) {
+            var hashes = new LinkedHashMap<FileNode, String>();
+            sources.forEach(source -> hashes.put(source, hash(source.content())));
+            var changed = sources.stream()
+                .filter(source -> !project.units.containsKey(hashes.get(source)))
+                .toList();
+
+            var names = new HashSet<String>();
+            changed.forEach(source -> names.addAll(declaredTypes(project, source)));
+            var ids = sources.stream().map(FileNode::id).collect(Collectors.toSet());
+            project.hashes.forEach((fileId, hash) -> {
+                if (!ids.contains(fileId)) {
+                    names.addAll(project.units.get(hash).typeNames());
+                }
+            });
+            var dependent = mentioning(names);
+            var recompile = sources.stream()
+                .filter(source -> changed.contains(source) || dependent.matcher(content(source)).find())
+                .toList();
+
+            var classPath = new HashMap<String, byte[]>();
+            hashes.forEach((source, hash) -> {
+                if (!recompile.contains(source)) {
+                    classPath.putAll(project.units.get(hash).classes());
+                }
+            });
+            var diagnostics = new DiagnosticCollector<JavaFileObject>();
+            var compiled = recompile.isEmpty() ? Map.<FileNode, Unit>of() : build(compiler, recompile, classPath, diagnostics);
+            var messages = diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() != Diagnostic.Kind.NOTE)
+                .map(this::format)
+                .toList();
+            if (compiled == null) {
+                return Compilation.failure(messages, recompile.size());
+            }
+
+            compiled.forEach((source, unit) -> project.units.put(hashes.get(source), unit));
+            project.hashes.clear();
+            hashes.forEach((source, hash) -> project.hashes.put(source.id(), hash));
+            project.units.keySet().retainAll(project.hashes.values());
+
+            var classes = new LinkedHashMap<String, byte[]>();
+            var sourceClasses = new LinkedHashMap<String, List<String>>();
+            hashes.forEach((source, hash) -> {
+                var unit = project.units.get(hash);
+                classes.putAll(unit.classes());
+                sourceClasses.put(source.id(), List.copyOf(unit.classes().keySet()));
+            });
+            var deterministic = sources.stream().allMatch(source -> ResultCache.deterministic(content(source)));
+            var fingerprint = deterministic ? hash(String.join("\n", hashes.values())) : null;
+            return new Compilation(true, messages, classes, sourceClasses, recompile.size(), sources.size() - recompile.size(),
+                fingerprint);
+        }
+    }
+
+    /**
+     * Compiles the sources against the class path; returns their classes, or null if the compilation failed.
+     */
+    Map<FileNode, Unit> build(JavaCompiler compiler, List<FileNode> sources, Map<String, byte[]> classPath,
+                              DiagnosticCollector<JavaFileObject> diagnostics) {
+        var standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        try (var fileManager = new VfsFileManager(standard, classPath)) {
+            var units = sources.stream().map(VfsFileManager::source).toList();
+            if (!compiler.getTask(null, fileManager, diagnostics, OPTIONS, null, units).call()) {
+                return null;
+            }
+            var compiled = new LinkedHashMap<FileNode, Unit>();
+            for (var source : sources) {
+                var classes = new LinkedHashMap<String, byte[]>();
+                fileManager.outputs.getOrDefault(source, List.of())
+                    .forEach(output -> classes.put(output.binaryName, output.bytecode.toByteArray()));
+                compiled.put(source, new Unit(classes));
+            }
+            return compiled;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs the main method of the class on a fresh remote shell under the execution limits,
+     * with the classes of the compilation on its class path. Runs of deterministic sources
+     * are answered from the {@link ResultCache} when repeated with the same arguments.
+     * Runs take turns in the scheduler by client.
+     */
+    public ExecutionResult run(String client, Compilation compilation, String mainClass, List<String> arguments) {
+        if (compilation.fingerprint() == null) {
+            return launch(client, compilation, mainClass, arguments);
+        }
+        var key = this.cache.scope(Engine.REMOTE) + "java " + compilation.fingerprint() + " " + mainClass + "\0" + String.join("\0", arguments);
+        var cached = this.cache.result(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        var result = launch(client, compilation, mainClass, arguments);
+        this.cache.put(key, result);
+        return result;
+    }
+
+    ExecutionResult launch(String client, Compilation compilation, String mainClass, List<String> arguments) {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("webos-javac");
+            for (var entry : compilation.classes().entrySet()) {
+                var file = directory.resolve(entry.getKey().replace('.', '/') + ".class");
+                Files.createDirectories(file.getParent());
+                Files.write(file, entry.getValue());
+            }
+            return this.shellService.launch(client, directory, mainClass, arguments);
+        } catch (IOException e) {
+            return ExecutionResult.error("Error: " + e.getMessage());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * The class "java File.java" launches: the top-level class named like the file, else its first one.
+     */
+    public Optional<String> mainClass(Compilation compilation, FileNode file) {
+        var classes = compilation.topLevelClasses(file.id());
+        var baseName = file.name().substring(0, file.name().length() - ".java".length());
+        return classes.stream()
+            .filter(name -> simpleName(name).equals(baseName))
+            .findFirst()
+            .or(() -> classes.stream().findFirst());
+    }
+
+    /**
+     * The top-level class named by its binary or simple name.
+     */
+    public Optional<String> mainClass(Compilation compilation, String name) {
+        return compilation.sourceClasses().keySet().stream()
+            .flatMap(fileId -> compilation.topLevelClasses(fileId).stream())
+            .filter(candidate -> candidate.equals(name) || simpleName(candidate).equals(name))
+            .findFirst();
+    }
+
+    /**
+     * Types the file declares now and did in the version compiled last.
+     */
+    Set<String> declaredTypes(Project project, FileNode source) {
+        var names = TYPE_DECLARATION.matcher(content(source)).results()
+            .map(result -> result.group(1))
+            .collect(Collectors.toCollection(HashSet::new));
+        var previous = project.units.get(project.hashes.getOrDefault(source.id(), ""));
+        if (previous != null) {
+            names.addAll(previous.typeNames());
+        }
+        return names;
+    }
+
+    static Pattern mentioning(Collection<String> names) {
+        if (names.isEmpty()) {
+            return Pattern.compile("(?!)");
+        }
+        return Pattern.compile(names.stream()
+            .map(Pattern::quote)
+            .collect(Collectors.joining("|", "(?<![\\w$])(?:", ")(?![\\w$])")));
+    }
+
+    static String simpleName(String binaryName) {
+        var simple = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+        return simple.contains("$") ? simple.substring(0, simple.indexOf('$')) : simple;
+    }
+
+    static String content(FileNode source) {
+        return source.content() == null ? "" : source.content();
+    }
+
+    static String hash(String content) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256")
+                .digest((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    String format(Diagnostic<? extends JavaFileObject> diagnostic) {
+        var kind = diagnostic.getKind() == Diagnostic.Kind.ERROR ? "error" : "warning";
+        var source = diagnostic.getSource();
+        if (source == null) {
+            return kind + ": " + diagnostic.getMessage(null);
+        }
+        var line = diagnostic.getLineNumber() == Diagnostic.NOPOS ? "" : ":" + diagnostic.getLineNumber();
+        return source.getName() + line + ": " + kind + ": " + diagnostic.getMessage(null);
+    }
+
+    void delete(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (var paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Could not delete " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.Engine;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Runs snippets in this JVM on JShell's "local" execution engine, which skips the remote
+ * JVM and the JDI round trip of every evaluation. Each shell loads snippets with a class
+ * loader of its own and is replaced after maxUses, so snippet classes do not accumulate.
+ * Without a process to kill, only the wall time and output limits hold, and a snippet can
+ * only be stopped. The heap limit does not apply: snippets allocate from the server's heap.
+ * So the engine admits loop-free code that stays off threads, processes, reflection, I/O and
+ * JVM-wide state, and does not allocate with huge literal sizes, MAX_VALUE, repetition or
+ * multi-dimensional arrays, read after translating Unicode escapes. Snippet classes are not
+ * isolated from the server's beyond their class loader. As a denylist cannot make snippets
+ * sharing the server's JVM safe, only benchmarks run here, and only if configured.
+ */
+@ApplicationScoped
+public class LocalEngine implements ExecutionEngine {
+
+    static final System.Logger LOGGER = System.getLogger(LocalEngine.class.getName());
+    static final Pattern RESTRICTED = Pattern.compile(
+        "\\b(while|for|do)\\b|\\b(iterate|generate|parallel\\w*)\\s*\\("
+            + "|Runtime|Thread|Process|Executor|ForkJoin|CompletableFuture|ClassLoader|reflect|MethodHandle|Unsafe"
+            + "|Class\\s*\\.\\s*forName|java\\s*\\.\\s*(io|nio|net)\\b|\\b(Files?|Paths?|Socket|URL|HttpClient)\\b"
+            + "|System\\s*\\.\\s*(?!(out|err|currentTimeMillis|nanoTime|lineSeparator)\\b)"
+            + "|\\d[\\d_]{6,}|<<|MAX_VALUE|\\brepeat\\s*\\(|nCopies|\\]\\s*\\[");
+
+    @ConfigProperty(name = "webos.compiler.engine.local.max-shells", defaultValue = "4")
+    int maxShells;
+
+    @ConfigProperty(name = "webos.compiler.engine.local.max-uses", defaultValue = "200")
+    int maxUses;
+
+    LinkedBlockingDeque<PooledShell> idle = new LinkedBlockingDeque<>();
+    AtomicInteger size = new AtomicInteger();
+
+    @PreDestroy
+    void shutdown() {
+        this.idle.forEach(PooledShell::close);
+        this.idle.clear();
+    }
+
+    @Override
+    public Engine kind() {
+        return Engine.LOCAL;
+    }
+
+    @Override
+    public boolean admits(String code) {
+        return !RESTRICTED.matcher(SourceText.unescape(code)).find();
+    }
+
+    /**
+     * Takes an idle shell, starts one, which takes milliseconds, or waits for one to be returned.
+     */
+    @Override
+    public PooledShell borrow(Duration timeout) throws InterruptedException {
+        var shell = this.idle.pollFirst();
+        if (shell == null && this.size.incrementAndGet() <= this.maxShells) {
+            try {
+                return new PooledShell(true);
+            } catch (RuntimeException e) {
+                this.size.decrementAndGet();
+                throw e;
+            }
+        }
+        if (shell == null) {
+            this.size.decrementAndGet();
+            shell = this.idle.pollFirst(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (shell == null) {
+            throw new IllegalStateException("No local JShell available");
+        }
+        return shell;
+    }
+
+    /**
+     * Resets the shell right away, as dropping snippets in this JVM is cheap, or replaces it.
+     */
+    @Override
+    public void release(PooledShell shell) {
+        if (shell.reusable(this.maxUses)) {
+            try {
+                shell.reset();
+                this.idle.offerFirst(shell);
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Resetting local JShell failed: " + e.getMessage());
+            }
+        }
+        this.size.decrementAndGet();
+        shell.close();
+    }
+
+    public int size() {
+        return this.size.get();
+    }
+}
@@ -0,0 +1,69 @@
+package io.webos.portfolio.compiler.control;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * Snippets of a local shell print to System.out and System.err of this JVM. Once installed,
+ * those route output written by a thread evaluating on a local shell, or by a thread it
+ * started, to that shell's output; all other output goes where it went before.
+ */
+class LocalOutput extends OutputStream {
+
+    static final InheritableThreadLocal<OutputStream[]> TARGET = new InheritableThreadLocal<>();
+    static boolean installed;
+
+    OutputStream fallback;
+    int index;
+
+    LocalOutput(OutputStream fallback, int index) {
+        this.fallback = fallback;
+        this.index = index;
+    }
+
+    static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        System.setOut(new PrintStream(new LocalOutput(System.out, 0), true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(new LocalOutput(System.err, 1), true, StandardCharsets.UTF_8));
+        installed = true;
+    }
+
+    /**
+     * Runs the evaluation with System.out and System.err of its threads going to out and err.
+     */
+    static <T> T redirect(OutputStream out, OutputStream err, Supplier<T> evaluation) {
+        install();
+        var previous = TARGET.get();
+        TARGET.set(new OutputStream[]{out, err});
+        try {
+            return evaluation.get();
+        } finally {
+            TARGET.set(previous);
+        }
+    }
+
+    OutputStream target() {
+        var streams = TARGET.get();
+        return streams == null ? this.fallback : streams[this.index];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        target().write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        target().write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target().flush();
+    }
+}
@@ -0,0 +1,266 @@
+package io.webos.portfolio.compiler.control;
+
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A JShell with its remote execution JVM kept alive across executions, or, for the
+ * {@link LocalEngine}, executing in this JVM.
+ * Output of all borrowers goes to one buffer which is cleared between them, unless
+ * a borrower listens to it while it is written.
+ * Resetting drops every snippet evaluated after warm-up, which only undoes state held by snippets;
+ * the shell is reused only after code naming nothing but {@link #CONFINED_TYPES}, and recycled
+ * after any other code, as it may have changed state of the JVM.
+ * The remote JVM is tagged with the shell's id, so it can be found among our child
+ * processes to measure its CPU time and to kill it.
+ */
+public class PooledShell implements AutoCloseable {
+
+    static final System.Logger LOGGER = System.getLogger(PooledShell.class.getName());
+    static final String WARM_UP_IMPORTS = "import java.time.*;";
+    static final String WARM_UP_SNIPPET = "java.util.stream.IntStream.range(0, 10).boxed().map(String::valueOf).toList()";
+    /**
+     * Our streams decode UTF-8, whatever the locale of the remote JVM.
+     */
+    static final String[] REMOTE_ENCODING = {"-Dstdout.encoding=UTF-8", "-Dstderr.encoding=UTF-8"};
+    static final String SHELL_ID_OPTION = "-Dwebos.shell=";
+    /**
+     * Types whose state belongs to their instances, so it goes with the snippets holding them.
+     * Code naming any other type may reach state of the JVM, like system properties, default
+     * handlers or threads, and the shell is recycled after it. Randomness, hash order and the clock
+     * keep a result from being cached, but not a shell from being reused.
+     */
+    static final Set<String> CONFINED_TYPES = Stream.concat(SourceText.VALUE_TYPES.stream(),
+        Stream.of("Random", "HashMap", "HashSet", "Duration", "LocalDate", "LocalTime", "LocalDateTime"))
+        .collect(Collectors.toUnmodifiableSet());
+    /**
+     * Names reaching past the types above: qualified names of other types, classes and their
+     * loaders, the common fork-join pool, and closing System.out through a print call.
+     */
+    static final Pattern UNCONFINED_NAMES = Pattern.compile(
+        "java|javax|jdk|sun|get\\w*Class\\w*|forName|parallel\\w*|close");
+    /**
+     * The members of System that leave its state alone.
+     */
+    static final Pattern CONFINED_SYSTEM = Pattern.compile(
+        "\\bSystem\\s*\\.\\s*(?:(?:out|err)\\s*(?:\\.|::)\\s*(?:println|print|printf|format)"
+            + "|currentTimeMillis|nanoTime|lineSeparator|arraycopy)\\b");
+
+    String id = UUID.randomUUID().toString();
+    boolean local;
+    JShell shell;
+    ProcessHandle remote;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ShellOutput out = new ShellOutput("stdout", this.output);
+    ShellOutput err = new ShellOutput("stderr", this.output);
+    Set<String> baseline;
+    int uses;
+    boolean polluted;
+    long idleSinceMillis;
+
+    PooledShell(String... remoteVMOptions) {
+        this(false, remoteVMOptions);
+    }
+
+    /**
+     * @param local whether snippets run in this JVM on the "local" execution engine, see {@link LocalEngine};
+     *              the remote VM options only apply otherwise
+     */
+    PooledShell(boolean local, String... remoteVMOptions) {
+        this.local = local;
+        var builder = JShell.builder()
+            .out(new PrintStream(this.out, true, StandardCharsets.UTF_8))
+            .err(new PrintStream(this.err, true, StandardCharsets.UTF_8));
+        if (local) {
+            builder.executionEngine("local");
+        } else {
+            builder.remoteVMOptions(Stream.of(REMOTE_ENCODING, remoteVMOptions, new String[]{SHELL_ID_OPTION + this.id})
+                .flatMap(Arrays::stream)
+                .toArray(String[]::new));
+        }
+        this.shell = builder.build();
+        warmUp();
+        this.remote = local ? null : findRemote();
+    }
+
+    /**
+     * The remote JVM started for this shell, or null if the platform does not reveal
+     * process arguments; then, as for local shells, CPU time is not measured and killing
+     * falls back to stopping.
+     */
+    ProcessHandle findRemote() {
+        var tag = SHELL_ID_OPTION + this.id;
+        return ProcessHandle.current().descendants()
+            .filter(process -> process.info().arguments().map(arguments -> Arrays.asList(arguments).contains(tag))
+                .or(() -> process.info().commandLine().map(line -> line.contains(tag)))
+                .orElse(false))
+            .findFirst()
+            .orElse(null);
+    }
+
+    /**
+     * Evaluates the common imports, which stay for all borrowers, and runs one throwaway
+     * snippet so the compiler and the remote agent are loaded before the first request.
+     */
+    void warmUp() {
+        this.shell.eval(WARM_UP_IMPORTS);
+        this.baseline = this.shell.snippets()
+            .map(Snippet::id)
+            .collect(Collectors.toUnmodifiableSet());
+        this.shell.eval(WARM_UP_SNIPPET);
+        reset();
+        this.uses = 0;
+    }
+
+    public JShell shell() {
+        return this.shell;
+    }
+
+    /**
+     * Snippets evaluated after the warm-up imports, including those dropped by resets.
+     */
+    Stream<Snippet> added() {
+        return this.shell.snippets().filter(snippet -> !this.baseline.contains(snippet.id()));
+    }
+
+    /**
+     * Evaluates one snippet; output a local snippet writes to System.out and System.err goes to this shell.
+     */
+    List<SnippetEvent> eval(String source) {
+        if (!this.local) {
+            return this.shell.eval(source);
+        }
+        return LocalOutput.redirect(this.out, this.err, () -> this.shell.eval(source));
+    }
+
+    /**
+     * Returns and clears the output written since the last call.
+     */
+    public String takeOutput() {
+        synchronized (this.output) {
+            var text = this.output.toString(StandardCharsets.UTF_8);
+            this.output.reset();
+            return text;
+        }
+    }
+
+    /**
+     * Hands stdout and stderr to the listener, with the stream name, while it is written;
+     * null collects output for {@link #takeOutput()} again.
+     */
+    public void listen(BiConsumer<String, String> listener) {
+        this.out.listen(listener);
+        this.err.listen(listener);
+    }
+
+    /**
+     * Makes the guard count and cap the output of the running execution; null stops counting.
+     */
+    void guard(ExecutionGuard guard) {
+        this.out.guard = guard;
+        this.err.guard = guard;
+    }
+
+    /**
+     * CPU time the remote JVM used so far, all its threads included.
+     */
+    Duration cpuTime() {
+        if (this.remote == null) {
+            return Duration.ZERO;
+        }
+        return this.remote.info().totalCpuDuration().orElse(Duration.ZERO);
+    }
+
+    /**
+     * Ends the running snippet for certain by killing the remote JVM; the shell is recycled afterwards.
+     */
+    void kill() {
+        this.polluted = true;
+        if (this.remote != null) {
+            this.remote.destroyForcibly();
+            return;
+        }
+        try {
+            this.shell.stop();
+        } catch (IllegalStateException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Stopping JShell failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the shell for recycling unless the code is {@link #confined(String)}.
+     */
+    public void inspect(String code) {
+        if (!confined(code)) {
+            this.polluted = true;
+        }
+    }
+
+    /**
+     * Whether all state the code may change is held by its snippets, judged by the names it uses
+     * as the compiler reads them.
+     */
+    static boolean confined(String code) {
+        var text = new SourceText(code).without(CONFINED_SYSTEM);
+        return !text.contains(SourceText.CLASS_LITERAL)
+            && text.names().stream().noneMatch(name -> UNCONFINED_NAMES.matcher(name).matches())
+            && CONFINED_TYPES.containsAll(text.typeNames());
+    }
+
+    public void markPolluted() {
+        this.polluted = true;
+    }
+
+    boolean reusable(int maxUses) {
+        return !this.polluted && this.uses < maxUses;
+    }
+
+    /**
+     * Drops all snippets evaluated since warm-up and counts the use.
+     */
+    void reset() {
+        var added = added().toList();
+        added.forEach(this.shell::drop);
+        listen(null);
+        guard(null);
+        takeOutput();
+        this.uses++;
+        this.idleSinceMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Evaluates a trivial expression; a shell whose remote JVM died fails this check.
+     */
+    boolean healthy() {
+        try {
+            var events = this.shell.eval("1 + 1");
+            events.forEach(event -> this.shell.drop(event.snippet()));
+            return events.size() == 1 && "2".equals(events.getFirst().value());
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    boolean idleSince(long cutoffMillis) {
+        return this.idleSinceMillis < cutoffMillis;
+    }
+
+    @Override
+    public void close() {
+        this.shell.close();
+    }
+}
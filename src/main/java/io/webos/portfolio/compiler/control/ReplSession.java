@@ -0,0 +1,181 @@
+package io.webos.portfolio.compiler.control;
+
+import jdk.jshell.Snippet;
+import jdk.jshell.VarSnippet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * A JShell Studio session: a shell held for one visitor whose snippets accumulate
+ * across executions, together with the log of the snippets it accepted.
+ * One execution runs at a time; the permit is returned by whichever thread finishes it.
+ * A session rebuilt from a spill, or answered from the result cache, carries the sources
+ * to replay before its next execution.
+ * The log is only touched while holding the permit, and keeps at most maxLogged snippets;
+ * beyond, a spill falls back to the active declarations. It keeps what replaying needs,
+ * declarations and the values they hold, and leaves statements out.
+ */
+public class ReplSession {
+
+    String id;
+    PooledShell shell;
+    List<String> log = new ArrayList<>();
+    int maxLogged;
+    boolean logOverflowed;
+    boolean statementDropped;
+    Semaphore busy = new Semaphore(1);
+    volatile long lastAccessMillis = System.currentTimeMillis();
+    volatile boolean closed;
+    volatile List<String> restore = List.of();
+    /**
+     * Whether the sources to replay lost values, reported by the next execution, see {@link #takeLossy()}.
+     */
+    volatile boolean lossy;
+
+    ReplSession(String id, PooledShell shell, int maxLogged) {
+        this.id = id;
+        this.shell = shell;
+        this.maxLogged = maxLogged;
+    }
+
+    public String id() {
+        return this.id;
+    }
+
+    public PooledShell shell() {
+        return this.shell;
+    }
+
+    /**
+     * Whether nothing has been evaluated in this session yet, so code runs as on a fresh shell.
+     */
+    boolean fresh() {
+        var shell = this.shell.shell();
+        return this.restore.isEmpty() && this.shell.added().noneMatch(snippet -> shell.status(snippet).isActive());
+    }
+
+    /**
+     * Has the code evaluated before the next execution; its result was served from the cache.
+     */
+    void defer(String code) {
+        this.restore = List.of(code);
+    }
+
+    /**
+     * The declarations active in the shell, or the sources still to be replayed: imports, then types and
+     * methods, then variables, each in evaluation order. Replayed, they rebuild every name later
+     * snippets can refer to; values left behind by statements and expressions are not kept.
+     */
+    List<String> declarations() {
+        if (!this.restore.isEmpty()) {
+            return this.restore;
+        }
+        var shell = this.shell.shell();
+        return this.shell.added()
+            .filter(snippet -> shell.status(snippet).isActive())
+            .filter(snippet -> snippet.kind().isPersistent())
+            .filter(snippet -> !(snippet instanceof VarSnippet variable)
+                || variable.subKind() != Snippet.SubKind.TEMP_VAR_EXPRESSION_SUBKIND)
+            .sorted(Comparator.comparingInt(ReplSession::replayOrder))
+            .map(Snippet::source)
+            .toList();
+    }
+
+    static int replayOrder(Snippet snippet) {
+        return switch (snippet.kind()) {
+            case IMPORT -> 0;
+            case VAR -> 2;
+            default -> 1;
+        };
+    }
+
+    /**
+     * The sources rebuilding the session when replayed in order: those still to be replayed, then
+     * the logged declarations and assignments, so values later snippets assigned come back as well.
+     * Once the log overflowed, only the declarations, see {@link #declarations()}.
+     */
+    List<String> replay() {
+        if (this.logOverflowed) {
+            return declarations();
+        }
+        return Stream.concat(this.restore.stream(), this.log.stream()).toList();
+    }
+
+    /**
+     * Whether {@link #replay()} leaves out values: the log overflowed or dropped a statement that
+     * may have changed them, or the sources still to be replayed came from a spill that had.
+     */
+    boolean replayLossy() {
+        return this.logOverflowed || this.statementDropped || this.lossy;
+    }
+
+    /**
+     * Whether the session was restored losing values, once, so only the execution restoring it reports it.
+     */
+    boolean takeLossy() {
+        var lossy = this.lossy;
+        this.lossy = false;
+        return lossy;
+    }
+
+    /**
+     * Hands out the sources to replay, once.
+     */
+    List<String> takeRestore() {
+        var declarations = this.restore;
+        this.restore = List.of();
+        return declarations;
+    }
+
+    /**
+     * Logs the snippet if replaying needs it: declarations, including the variables expressions leave
+     * their values in, and assignments. Reading a variable is left out; so are statements, which
+     * mostly print, though one that does not print may have changed values the replay then misses.
+     */
+    void record(Snippet snippet) {
+        if (snippet.kind().isPersistent() || snippet.subKind() == Snippet.SubKind.ASSIGNMENT_SUBKIND) {
+            record(snippet.source());
+        } else if (snippet.kind() == Snippet.Kind.STATEMENT && !prints(snippet.source())) {
+            this.statementDropped = true;
+        }
+    }
+
+    static boolean prints(String source) {
+        var statement = source.strip();
+        return statement.startsWith("System.out.print") || statement.startsWith("System.err.print");
+    }
+
+    void record(String source) {
+        if (this.log.size() < this.maxLogged) {
+            this.log.add(source);
+        } else {
+            this.logOverflowed = true;
+        }
+    }
+
+    /**
+     * Waits for the running execution, if any; returns false if the session was closed meanwhile.
+     */
+    boolean acquire() throws InterruptedException {
+        this.busy.acquire();
+        if (this.closed) {
+            this.busy.release();
+            return false;
+        }
+        this.lastAccessMillis = System.currentTimeMillis();
+        return true;
+    }
+
+    void release() {
+        this.lastAccessMillis = System.currentTimeMillis();
+        this.busy.release();
+    }
+
+    boolean idleSince(long cutoffMillis) {
+        return this.lastAccessMillis < cutoffMillis;
+    }
+}
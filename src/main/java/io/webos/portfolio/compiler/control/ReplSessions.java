@@ -0,0 +1,198 @@
+package io.webos.portfolio.compiler.control;
+
+import io.quarkus.runtime.StartupEvent;
+import io.webos.portfolio.compiler.entity.SpilledSession;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of JShell Studio sessions keyed by the client-provided session id.
+ * Each session holds a shell borrowed from the {@link JShellPool} until it has been idle
+ * for idleTimeout, or until it is the least recently used one not executing and a new session
+ * would exceed maxSessions; if all are executing, the new session is rejected. A session is
+ * spilled: the snippets it accepted are written to the {@link SessionSpill} and its shell goes
+ * back to the pool. The next request of the session takes a warm shell from the pool and replays
+ * the snippets onto it, so only sessions in use hold a shell and its JVM, while dormant ones cost
+ * a small file each.
+ */
+@ApplicationScoped
+public class ReplSessions {
+
+    static final System.Logger LOGGER = System.getLogger(ReplSessions.class.getName());
+    static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+
+    @ConfigProperty(name = "webos.compiler.repl.max-sessions", defaultValue = "6")
+    int maxSessions;
+
+    @ConfigProperty(name = "webos.compiler.repl.idle-timeout", defaultValue = "PT2M")
+    Duration idleTimeout;
+
+    @ConfigProperty(name = "webos.compiler.repl.max-logged-snippets", defaultValue = "1000")
+    int maxLoggedSnippets;
+
+    @Inject
+    JShellPool pool;
+
+    @Inject
+    SessionSpill spill;
+
+    ConcurrentHashMap<String, ReplSession> sessions = new ConcurrentHashMap<>();
+    ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().daemon().name("repl-session-sweeper").factory());
+
+    void onStart(@Observes StartupEvent event) {
+        var interval = SWEEP_INTERVAL.toMillis();
+        this.sweeper.scheduleWithFixedDelay(this::evictIdleSessions, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Spills the sessions that are not executing, so they outlive the server.
+     */
+    @PreDestroy
+    void shutdown() {
+        this.sweeper.shutdownNow();
+        this.sessions.values().forEach(this::spill);
+    }
+
+    /**
+     * Returns the session with the given id, starting it on a pooled shell on first use.
+     * A spilled session comes back with its snippets to replay, see {@link ReplSession#takeRestore()}.
+     * The shell is borrowed without holding the registry, so waiting for one blocks no other session.
+     *
+     * @throws IllegalStateException if no shell became available in time
+     * @throws TooManyRequestsException if maxSessions sessions are executing
+     */
+    public ReplSession session(String sessionId, Duration timeout) throws InterruptedException {
+        var existing = this.sessions.get(sessionId);
+        if (existing != null && !existing.closed) {
+            return existing;
+        }
+        synchronized (this) {
+            makeRoom();
+        }
+        var shell = this.pool.borrow(timeout);
+        synchronized (this) {
+            existing = this.sessions.get(sessionId);
+            if (existing != null && !existing.closed) {
+                this.pool.release(shell);
+                return existing;
+            }
+            try {
+                makeRoom();
+            } catch (TooManyRequestsException e) {
+                this.pool.release(shell);
+                throw e;
+            }
+            var session = new ReplSession(sessionId, shell, this.maxLoggedSnippets);
+            this.spill.take(sessionId).ifPresent(spilled -> {
+                LOGGER.log(System.Logger.Level.DEBUG, "Restoring JShell session " + sessionId);
+                session.restore = spilled.snippets();
+                session.lossy = spilled.lossy();
+            });
+            this.sessions.put(sessionId, session);
+            return session;
+        }
+    }
+
+    /**
+     * Spills the least recently used sessions not executing until there is room for one more.
+     *
+     * @throws TooManyRequestsException if every session is executing
+     */
+    void makeRoom() {
+        while (this.sessions.size() >= this.maxSessions) {
+            var leastRecentlyUsed = this.sessions.values().stream()
+                .sorted(Comparator.comparingLong(session -> session.lastAccessMillis))
+                .toList();
+            if (leastRecentlyUsed.stream().noneMatch(this::spill)) {
+                throw new TooManyRequestsException(1);
+            }
+        }
+    }
+
+    /**
+     * Ends the session, discarding its state, spilled or not. Returns false if there was none.
+     */
+    public boolean end(String sessionId) {
+        var spilled = this.spill.remove(sessionId);
+        var session = this.sessions.get(sessionId);
+        if (session == null) {
+            return spilled;
+        }
+        close(session);
+        return true;
+    }
+
+    /**
+     * Sessions holding a shell.
+     */
+    public int size() {
+        return this.sessions.size();
+    }
+
+    void evictIdleSessions() {
+        var cutoff = System.currentTimeMillis() - this.idleTimeout.toMillis();
+        this.sessions.values().stream()
+            .filter(session -> session.idleSince(cutoff))
+            .forEach(this::spill);
+        this.spill.sweep();
+    }
+
+    /**
+     * Writes the session to disk and hands its shell back to the pool, unless an execution is running.
+     * Holding the session's permit meanwhile, a request for it waits and then restores it from the spill.
+     * A session that cannot be written is closed instead.
+     *
+     * @return whether the session no longer holds a shell
+     */
+    synchronized boolean spill(ReplSession session) {
+        if (!session.busy.tryAcquire()) {
+            return false;
+        }
+        try {
+            if (session.closed || this.sessions.get(session.id()) != session) {
+                return false;
+            }
+            try {
+                this.spill.write(new SpilledSession(session.id(), session.replay(), session.replayLossy(),
+                    session.lastAccessMillis));
+                LOGGER.log(System.Logger.Level.DEBUG, "Spilled JShell session " + session.id());
+            } catch (UncheckedIOException | IllegalStateException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Spilling JShell session " + session.id() + " failed: " + e.getMessage());
+            }
+            this.sessions.remove(session.id(), session);
+            session.closed = true;
+        } finally {
+            session.busy.release();
+        }
+        this.pool.release(session.shell());
+        return true;
+    }
+
+    /**
+     * Removes the session at once; its shell goes back to the pool after a running execution ends.
+     */
+    void close(ReplSession session) {
+        if (!this.sessions.remove(session.id(), session)) {
+            return;
+        }
+        LOGGER.log(System.Logger.Level.DEBUG, "Closing JShell session " + session.id());
+        Thread.ofVirtual().start(() -> {
+            session.busy.acquireUninterruptibly();
+            session.closed = true;
+            session.busy.release();
+            this.pool.release(session.shell());
+        });
+    }
+}
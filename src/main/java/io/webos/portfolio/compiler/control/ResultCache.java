@@ -0,0 +1,190 @@
+package io.webos.portfolio.compiler.control;
+
+import io.opentelemetry.api.metrics.Meter;
+import io.webos.portfolio.compiler.entity.Engine;
+import io.webos.portfolio.compiler.entity.ExecutionEvent;
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Results of executions that run the same way every time, so a repeated demo returns at once.
+ * Code is cached by its normalized source, together with the engine and the limits it ran under,
+ * and only if it names nothing but {@link #DETERMINISTIC_TYPES}, read as the compiler reads it:
+ * no I/O or environment, no clock, no randomness, no threads or reflection, and no hash-ordered
+ * collections, whose iteration order may depend on identity hashes or a per-JVM seed. Only
+ * completed runs are cached, and not if their output shows an identity hash, as the default
+ * toString does. The least recently used entries are evicted.
+ * <p>
+ * A result is cached once as the output of a plain execution and once as the events of a
+ * streamed one, whichever ran; hits and misses are counted for both.
+ */
+@ApplicationScoped
+public class ResultCache {
+
+    /**
+     * Types whose methods answer the same for the same arguments, apart from the names in
+     * {@link #NONDETERMINISTIC_NAMES}. Code naming any other type is not cached.
+     */
+    static final Set<String> DETERMINISTIC_TYPES = SourceText.VALUE_TYPES;
+    /**
+     * A type import brings in a name checked where it is used; a static import hides the type of the
+     * members it brings in.
+     */
+    static final Pattern TYPE_IMPORT = Pattern.compile("\\bimport\\s+(?!static\\b)[\\w$.\\s]+(?:\\*\\s*)?;");
+    /**
+     * Names reaching past the types above, whatever they are called on: qualified names, static imports,
+     * identity hashes, randomness, reflection, parallelism, and collectors into hash-ordered collections.
+     */
+    static final Pattern NONDETERMINISTIC_NAMES = Pattern.compile(String.join("|",
+        "java|javax|jdk|sun|import",
+        "hashCode|identityHashCode|hash|random|shuffle",
+        "forName|get\\w*Class\\w*|parallel\\w*",
+        "toSet|toMap|toUnmodifiableSet|toUnmodifiableMap|toConcurrentMap|groupingBy\\w*"));
+    /**
+     * The factories of Set and Map whose iteration order is randomized per JVM.
+     */
+    static final Pattern UNORDERED_FACTORY = Pattern.compile("\\b(?:Set|Map)\\s*(?:\\.|::)\\s*(?:of|ofEntries|copyOf)\\b");
+    /**
+     * The members of System that answer the same every time.
+     */
+    static final Pattern DETERMINISTIC_SYSTEM = Pattern.compile(
+        "\\bSystem\\s*\\.\\s*(?:(?:out|err)\\s*(?:\\.|::)\\s*(?:println|print|printf|format)|lineSeparator|arraycopy)\\b");
+    /**
+     * The identity hash printed by Object.toString, as in Point@1b6d3586.
+     */
+    static final Pattern IDENTITY_HASH = Pattern.compile("@[0-9a-f]{5,8}\\b");
+
+    @ConfigProperty(name = "webos.compiler.cache.max-entries", defaultValue = "256")
+    int maxEntries;
+
+    @Inject
+    Meter meter;
+
+    @Inject
+    ExecutionLimits limits;
+
+    AtomicLong hits = new AtomicLong();
+    AtomicLong misses = new AtomicLong();
+
+    /**
+     * The cached result of one source, as output, as events, or both.
+     */
+    record Entry(ExecutionResult result, List<ExecutionEvent> events) {
+    }
+
+    Map<String, Entry> entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > ResultCache.this.maxEntries;
+        }
+    });
+
+    @PostConstruct
+    void registerMetrics() {
+        this.meter.counterBuilder("webos.compiler.cache.hits")
+            .setDescription("Executions answered from the result cache")
+            .buildWithCallback(measurement -> measurement.record(this.hits.get()));
+        this.meter.counterBuilder("webos.compiler.cache.misses")
+            .setDescription("Cacheable executions that had to run")
+            .buildWithCallback(measurement -> measurement.record(this.misses.get()));
+        this.meter.upDownCounterBuilder("webos.compiler.cache.size")
+            .setDescription("Sources with a cached result")
+            .buildWithCallback(measurement -> measurement.record(this.entries.size()));
+        this.meter.gaugeBuilder("webos.compiler.cache.hit.ratio")
+            .setDescription("Share of cacheable executions answered from the cache")
+            .buildWithCallback(measurement -> measurement.record(hitRatio()));
+    }
+
+    /**
+     * The key the code is cached by when run on the engine, or null if it might not run the same way every time.
+     */
+    public String key(Engine engine, String code) {
+        return code == null || !deterministic(code) ? null : scope(engine) + normalize(code);
+    }
+
+    /**
+     * Whether the code names nothing that could make two runs differ, after translating Unicode escapes
+     * and skipping comments and literals, so neither spelling nor aliasing a type gets past the check.
+     */
+    public static boolean deterministic(String code) {
+        var text = new SourceText(code).without(TYPE_IMPORT).without(DETERMINISTIC_SYSTEM);
+        return !text.contains(SourceText.CLASS_LITERAL)
+            && !text.contains(UNORDERED_FACTORY)
+            && text.names().stream().noneMatch(name -> NONDETERMINISTIC_NAMES.matcher(name).matches())
+            && DETERMINISTIC_TYPES.containsAll(text.typeNames());
+    }
+
+    /**
+     * The start of every key of a run on the engine: the engine and the limits, which decide
+     * where a run stops and so what it prints.
+     */
+    public String scope(Engine engine) {
+        return String.join(" ", engine.label(), this.limits.wallTime().toString(), this.limits.cpuTime().toString(),
+            this.limits.maxHeap(), String.valueOf(this.limits.maxOutputBytes())) + "\n";
+    }
+
+    /**
+     * Line endings and trailing whitespace do not change what code does; the lines themselves
+     * are kept, as blank lines may be part of a text block.
+     */
+    static String normalize(String code) {
+        return code.lines()
+            .map(String::stripTrailing)
+            .collect(Collectors.joining("\n"))
+            .strip();
+    }
+
+    public Optional<ExecutionResult> result(String key) {
+        return count(Optional.ofNullable(this.entries.get(key)).map(Entry::result));
+    }
+
+    public Optional<List<ExecutionEvent>> events(String key) {
+        return count(Optional.ofNullable(this.entries.get(key)).map(Entry::events));
+    }
+
+    /**
+     * Caches the result of a completed execution that showed no identity hash.
+     */
+    public void put(String key, ExecutionResult result) {
+        if (!result.success() || result.limit() != null || IDENTITY_HASH.matcher(result.output()).find()) {
+            return;
+        }
+        this.entries.merge(key, new Entry(result, null), (cached, added) -> new Entry(result, cached.events()));
+    }
+
+    /**
+     * Caches the events of a completed streamed execution, without its "done" event,
+     * unless one of them showed an identity hash.
+     */
+    public void putEvents(String key, List<ExecutionEvent> events) {
+        if (events.stream().anyMatch(event -> IDENTITY_HASH.matcher(event.data()).find())) {
+            return;
+        }
+        var cached = List.copyOf(events);
+        this.entries.merge(key, new Entry(null, cached), (entry, added) -> new Entry(entry.result(), cached));
+    }
+
+    <T> Optional<T> count(Optional<T> cached) {
+        (cached.isPresent() ? this.hits : this.misses).incrementAndGet();
+        return cached;
+    }
+
+    double hitRatio() {
+        var hits = this.hits.get();
+        var total = hits + this.misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,150 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.SpilledSession;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.json.Json;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk storage of idle JShell Studio sessions, one gzipped JSON file per session named by
+ * the hash of its id, so ids chosen by clients never end up in paths. Files are kept for
+ * the retention period, and at most maxSpilled of them, dropping the least recently used.
+ * Spilled sessions survive a restart of the server.
+ */
+@ApplicationScoped
+public class SessionSpill {
+
+    static final System.Logger LOGGER = System.getLogger(SessionSpill.class.getName());
+    static final String SUFFIX = ".json.gz";
+
+    @ConfigProperty(name = "webos.compiler.repl.spill-directory", defaultValue = "${java.io.tmpdir}/webos-repl")
+    Path directory;
+
+    @ConfigProperty(name = "webos.compiler.repl.retention", defaultValue = "P1D")
+    Duration retention;
+
+    @ConfigProperty(name = "webos.compiler.repl.max-spilled", defaultValue = "10000")
+    int maxSpilled;
+
+    /**
+     * Writes the session, replacing an earlier spill of it; the file appears atomically.
+     */
+    public void write(SpilledSession session) {
+        var file = file(session.id());
+        try {
+            Files.createDirectories(this.directory);
+            var written = Files.createTempFile(this.directory, "spill", ".tmp");
+            try (var out = new GZIPOutputStream(Files.newOutputStream(written))) {
+                out.write(session.toJSON().toString().getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads and removes the spilled session; an unreadable file is removed as if it was not there.
+     */
+    public Optional<SpilledSession> take(String sessionId) {
+        var file = file(sessionId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (var in = new GZIPInputStream(Files.newInputStream(file));
+             var reader = Json.createReader(in)) {
+            var session = SpilledSession.fromJSON(reader.readObject());
+            return session.id().equals(sessionId) ? Optional.of(session) : Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Dropping unreadable session spill " + file + ": " + e.getMessage());
+            return Optional.empty();
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Removes the spilled session; returns false if there was none.
+     */
+    public boolean remove(String sessionId) {
+        return delete(file(sessionId));
+    }
+
+    /**
+     * Removes the spills past their retention, then the least recently used ones beyond maxSpilled.
+     */
+    public void sweep() {
+        var cutoff = System.currentTimeMillis() - this.retention.toMillis();
+        var kept = new ArrayList<Path>();
+        for (var file : files()) {
+            if (lastModified(file) < cutoff) {
+                delete(file);
+            } else {
+                kept.add(file);
+            }
+        }
+        kept.sort(Comparator.comparingLong(SessionSpill::lastModified).reversed());
+        kept.stream()
+            .skip(this.maxSpilled)
+            .forEach(SessionSpill::delete);
+    }
+
+    public int size() {
+        return files().size();
+    }
+
+    List<Path> files() {
+        if (!Files.isDirectory(this.directory)) {
+            return List.of();
+        }
+        try (var files = Files.list(this.directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Listing session spills failed: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    Path file(String sessionId) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(sessionId.getBytes(StandardCharsets.UTF_8));
+            return this.directory.resolve(HexFormat.of().formatHex(digest) + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Deleting " + file + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+}
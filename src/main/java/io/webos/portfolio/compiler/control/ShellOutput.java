@@ -0,0 +1,81 @@
+package io.webos.portfolio.compiler.control;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Stdout or stderr of a pooled shell. Output is collected in the buffer shared by both streams,
+ * unless a listener is attached: then it is decoded and handed on as written. The listener may
+ * block, which stalls the remote JVM writing the output instead of piling it up here.
+ * Output beyond the limit of a guarded execution is dropped.
+ */
+class ShellOutput extends OutputStream {
+
+    String stream;
+    ByteArrayOutputStream buffer;
+    volatile BiConsumer<String, String> listener;
+    volatile ExecutionGuard guard;
+    byte[] pending = new byte[0];
+
+    ShellOutput(String stream, ByteArrayOutputStream buffer) {
+        this.stream = stream;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Hands further output to the listener, or collects it again in the buffer when null.
+     */
+    synchronized void listen(BiConsumer<String, String> listener) {
+        this.listener = listener;
+        this.pending = new byte[0];
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        var limit = this.guard;
+        if (limit != null && !limit.admitOutput(length)) {
+            return;
+        }
+        var current = this.listener;
+        if (current == null) {
+            synchronized (this.buffer) {
+                this.buffer.write(bytes, offset, length);
+            }
+            return;
+        }
+        var joined = Arrays.copyOf(this.pending, this.pending.length + length);
+        System.arraycopy(bytes, offset, joined, this.pending.length, length);
+        var complete = completeLength(joined);
+        this.pending = Arrays.copyOfRange(joined, complete, joined.length);
+        if (complete > 0) {
+            current.accept(this.stream, new String(joined, 0, complete, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Length of the bytes up to the last complete UTF-8 character; a character split
+     * across writes is held back until its remaining bytes arrive.
+     */
+    static int completeLength(byte[] bytes) {
+        var length = bytes.length;
+        for (var i = length - 1; i >= Math.max(0, length - 3); i--) {
+            var b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                return length;
+            }
+            if (b >= 0xC0) {
+                var needed = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+                return length - i >= needed ? length : i;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,134 @@
+package io.webos.portfolio.compiler.control;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Code as the compiler reads it, for deciding by the names it uses what it may do.
+ * Unicode escapes are translated first, as javac does, so they cannot spell a name past a check;
+ * comments and literals are blanked, as names inside them do nothing.
+ */
+class SourceText {
+
+    /**
+     * An escape needs an odd number of backslashes; with an even number, the last one is escaped itself.
+     */
+    static final Pattern UNICODE_ESCAPE = Pattern.compile("(\\\\+)u+(\\p{XDigit}{4})");
+    static final Pattern COMMENT_OR_LITERAL = Pattern.compile(String.join("|",
+        "//[^\\n]*",
+        "/\\*[\\s\\S]*?\\*/",
+        "\"\"\"(?:\\\\[\\s\\S]|[^\\\\])*?\"\"\"",
+        "\"(?:\\\\.|[^\"\\\\\\n])*\"",
+        "'(?:\\\\.|[^'\\\\\\n])*'"));
+    static final String NAME = "\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*";
+    static final Pattern IDENTIFIER = Pattern.compile(NAME);
+    static final Pattern TYPE_DECLARATION = Pattern.compile("\\b(?:class|interface|enum|record)\\s+(" + NAME + ")");
+    static final Pattern CONSTANT = Pattern.compile("[A-Z][A-Z0-9_]*");
+    /**
+     * What follows a type, not a constant: a member access, a constructor call or a method reference.
+     */
+    static final Pattern TYPE_USE = Pattern.compile("\\s*(?:\\.|\\(|::)");
+    static final Pattern MEMBER_ACCESS = Pattern.compile("\\s*\\.\\s*");
+    static final Pattern CLASS_LITERAL = Pattern.compile("\\.\\s*class\\b");
+    /**
+     * Types of the base modules whose state belongs to their instances and whose methods answer
+     * the same for the same arguments, for checks to extend with what they allow besides.
+     */
+    static final Set<String> VALUE_TYPES = Set.of(
+        "Object", "String", "StringBuilder", "CharSequence", "Character", "Boolean", "Byte", "Short",
+        "Integer", "Long", "Float", "Double", "Number", "Math", "BigInteger", "BigDecimal",
+        "Comparable", "Comparator", "Iterable", "Iterator", "Collection", "List", "ArrayList", "LinkedList",
+        "Map", "LinkedHashMap", "TreeMap", "Set", "LinkedHashSet", "TreeSet",
+        "Queue", "Deque", "ArrayDeque", "PriorityQueue", "Arrays", "Collections", "Objects",
+        "Optional", "OptionalInt", "OptionalLong", "OptionalDouble",
+        "Stream", "IntStream", "LongStream", "DoubleStream", "Collectors",
+        "Runnable", "Function", "BiFunction", "Supplier", "Consumer", "BiConsumer", "Predicate", "BiPredicate",
+        "UnaryOperator", "BinaryOperator", "Record", "Enum", "Override", "FunctionalInterface", "SafeVarargs",
+        "Throwable", "Exception", "RuntimeException", "IllegalArgumentException", "IllegalStateException",
+        "ArithmeticException", "NullPointerException", "IndexOutOfBoundsException",
+        "UnsupportedOperationException");
+
+    String code;
+
+    SourceText(String source) {
+        this.code = COMMENT_OR_LITERAL.matcher(unescape(source)).replaceAll(" ");
+    }
+
+    static String unescape(String source) {
+        return UNICODE_ESCAPE.matcher(source).replaceAll(escape -> {
+            var backslashes = escape.group(1);
+            if (backslashes.length() % 2 == 0) {
+                return Matcher.quoteReplacement(escape.group());
+            }
+            var character = (char) Integer.parseInt(escape.group(2), 16);
+            return Matcher.quoteReplacement(backslashes.substring(1) + character);
+        });
+    }
+
+    /**
+     * The code without the matches of the pattern, for names that are harmless in one phrase only.
+     */
+    SourceText without(Pattern phrase) {
+        var text = new SourceText("");
+        text.code = phrase.matcher(this.code).replaceAll(" ");
+        return text;
+    }
+
+    boolean contains(Pattern pattern) {
+        return pattern.matcher(this.code).find();
+    }
+
+    /**
+     * Every identifier in the code, keywords included.
+     */
+    Set<String> names() {
+        var names = new LinkedHashSet<String>();
+        var matcher = IDENTIFIER.matcher(this.code);
+        while (matcher.find()) {
+            names.add(matcher.group());
+        }
+        return names;
+    }
+
+    /**
+     * Names of the classes, interfaces, enums and records the code declares itself.
+     */
+    Set<String> declaredTypes() {
+        var types = new LinkedHashSet<String>();
+        var matcher = TYPE_DECLARATION.matcher(this.code);
+        while (matcher.find()) {
+            types.add(matcher.group(1));
+        }
+        return types;
+    }
+
+    /**
+     * Names that may refer to a type the code does not declare: all but those starting in lower case,
+     * type variables, constants, which nothing is called on, and members of the declared types.
+     * By convention every JDK type is named starting in upper case.
+     */
+    Set<String> typeNames() {
+        var declared = declaredTypes();
+        var types = new LinkedHashSet<String>();
+        var matcher = IDENTIFIER.matcher(this.code);
+        var qualifier = "";
+        var qualifierEnd = 0;
+        while (matcher.find()) {
+            var name = matcher.group();
+            var lowerCase = Character.isLowerCase(name.charAt(0));
+            var typeVariable = name.length() == 1 && Character.isUpperCase(name.charAt(0));
+            var constant = CONSTANT.matcher(name).matches()
+                && !TYPE_USE.matcher(this.code).region(matcher.end(), this.code.length()).lookingAt();
+            var member = declared.contains(qualifier)
+                && MEMBER_ACCESS.matcher(this.code).region(qualifierEnd, matcher.start()).matches();
+            if (!lowerCase && !typeVariable && !constant && !member && !declared.contains(name)) {
+                types.add(name);
+            }
+            qualifier = name;
+            qualifierEnd = matcher.end();
+        }
+        return types;
+    }
+}
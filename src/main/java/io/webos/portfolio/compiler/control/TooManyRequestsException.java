@@ -0,0 +1,26 @@
+package io.webos.portfolio.compiler.control;
+
+import jakarta.json.Json;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Exception thrown when the execution queue is full.
+ * Results in HTTP 429 Too Many Requests with a Retry-After header and JSON error body.
+ */
+public class TooManyRequestsException extends WebApplicationException {
+
+    public TooManyRequestsException(long retryAfterSeconds) {
+        super("Execution queue is full", Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(Json.createObjectBuilder()
+                        .add("error", "429 Too Many Requests")
+                        .add("retryAfter", retryAfterSeconds)
+                        .build()
+                        .toString())
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+}
@@ -0,0 +1,146 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.filesystem.entity.FileNode;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lets javac compile without touching the disk: sources are read from VFS {@link FileNode}s,
+ * class files are written into memory, and the class path holds nothing but the classes
+ * of earlier builds, so unchanged files are linked against instead of compiled again.
+ * The platform classes still come from the standard file manager.
+ */
+class VfsFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    final Map<String, byte[]> classPath;
+    /**
+     * Class files written by the compilation, grouped by the source they were compiled from.
+     */
+    final Map<FileNode, List<ClassOutput>> outputs = new LinkedHashMap<>();
+
+    /**
+     * @param classPath bytecode of the classes compiled earlier, by binary name
+     */
+    VfsFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classPath) throws IOException {
+        super(fileManager);
+        this.classPath = classPath;
+        fileManager.setLocation(StandardLocation.CLASS_PATH, List.of());
+    }
+
+    static JavaFileObject source(FileNode node) {
+        return new Source(node);
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                                         boolean recurse) throws IOException {
+        var listed = super.list(location, packageName, kinds, recurse);
+        if (location != StandardLocation.CLASS_PATH || !kinds.contains(JavaFileObject.Kind.CLASS)) {
+            return listed;
+        }
+        var files = new ArrayList<JavaFileObject>();
+        listed.forEach(files::add);
+        this.classPath.forEach((name, bytecode) -> {
+            var classPackage = name.lastIndexOf('.') < 0 ? "" : name.substring(0, name.lastIndexOf('.'));
+            if (classPackage.equals(packageName) || recurse && classPackage.startsWith(packageName + ".")) {
+                files.add(new ClassInput(name, bytecode));
+            }
+        });
+        return files;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof ClassInput input) {
+            return input.binaryName;
+        }
+        return super.inferBinaryName(location, file);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                               FileObject sibling) throws IOException {
+        if (kind != JavaFileObject.Kind.CLASS || !(sibling instanceof Source source)) {
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+        var output = new ClassOutput(className);
+        this.outputs.computeIfAbsent(source.node, node -> new ArrayList<>()).add(output);
+        return output;
+    }
+
+    static URI uri(String path) {
+        return URI.create("vfs:///" + path);
+    }
+
+    static class Source extends SimpleJavaFileObject {
+
+        final FileNode node;
+
+        Source(FileNode node) {
+            super(uri(node.id() + "/" + node.name()), Kind.SOURCE);
+            this.node = node;
+        }
+
+        /**
+         * Diagnostics name the file as the terminal shows it.
+         */
+        @Override
+        public String getName() {
+            return this.node.name();
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return this.node.content() == null ? "" : this.node.content();
+        }
+    }
+
+    static class ClassInput extends SimpleJavaFileObject {
+
+        final String binaryName;
+        final byte[] bytecode;
+
+        ClassInput(String binaryName, byte[] bytecode) {
+            super(uri(binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.binaryName = binaryName;
+            this.bytecode = bytecode;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(this.bytecode);
+        }
+    }
+
+    static class ClassOutput extends SimpleJavaFileObject {
+
+        final String binaryName;
+        final ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+
+        ClassOutput(String binaryName) {
+            super(uri(binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.binaryName = binaryName;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return this.bytecode;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Outcome of analyzing code without executing it: whether the last snippet is complete,
+ * as JShell's completeness check sees it, and the compiler diagnostics of the whole code.
+ */
+public record Analysis(String completeness, List<Diagnostic> diagnostics) {
+
+    public JsonObject toJSON() {
+        var array = Json.createArrayBuilder();
+        this.diagnostics.forEach(diagnostic -> array.add(diagnostic.toJSON()));
+        return Json.createObjectBuilder()
+            .add("completeness", this.completeness)
+            .add("diagnostics", array)
+            .build();
+    }
+}
@@ -0,0 +1,7 @@
+package io.webos.portfolio.compiler.entity;
+
+/**
+ * One execution of a batch, identified within it by its id.
+ */
+public record BatchItem(String id, String code) {
+}
@@ -0,0 +1,39 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request payload for a batch of executions, each on a fresh shell: either independent
+ * "snippets", or one "code" run once per input case in "cases", where a case is code
+ * evaluated after it, such as a call of a method the code declares.
+ */
+public record BatchRequest(List<BatchItem> items) {
+
+    /**
+     * Deserializes a BatchRequest from a JSON-P JsonObject. Snippets are identified by
+     * their index, cases by their own source.
+     *
+     * @throws IllegalArgumentException if neither snippets nor cases are given
+     */
+    public static BatchRequest fromJSON(JsonObject json) {
+        var items = new ArrayList<BatchItem>();
+        if (json.containsKey("snippets")) {
+            var snippets = json.getJsonArray("snippets").getValuesAs(JsonString.class);
+            for (var i = 0; i < snippets.size(); i++) {
+                items.add(new BatchItem(String.valueOf(i), snippets.get(i).getString()));
+            }
+        } else if (json.containsKey("cases")) {
+            var code = json.getString("code", "");
+            json.getJsonArray("cases").getValuesAs(JsonString.class)
+                .forEach(testCase -> items.add(new BatchItem(testCase.getString(), code + "\n" + testCase.getString())));
+        }
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Either snippets or code with cases are required");
+        }
+        return new BatchRequest(List.copyOf(items));
+    }
+}
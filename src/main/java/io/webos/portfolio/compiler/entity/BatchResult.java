@@ -0,0 +1,20 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+/**
+ * Result of one batch item, with the time it waited for an execution slot
+ * and the time it then took to execute.
+ */
+public record BatchResult(String id, ExecutionResult result, long waitedMillis, long elapsedMillis) {
+
+    public JsonObject toJSON() {
+        var json = this.result.toJSON();
+        return Json.createObjectBuilder(json)
+            .add("id", this.id)
+            .add("waitedMillis", this.waitedMillis)
+            .add("elapsedMillis", this.elapsedMillis)
+            .build();
+    }
+}
@@ -0,0 +1,25 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.JsonObject;
+
+/**
+ * Request payload for benchmarking a snippet: "setup" code evaluated once, such as the
+ * methods under test, and the "code" measured, with the number of warm-up and measured iterations.
+ */
+public record BenchmarkRequest(String setup, String code, int warmups, int iterations) {
+
+    public static final int DEFAULT_WARMUPS = 5;
+    public static final int DEFAULT_ITERATIONS = 10;
+    public static final int MAX_ITERATIONS = 50;
+
+    /**
+     * Deserializes a BenchmarkRequest from a JSON-P JsonObject, with defaults for absent fields.
+     */
+    public static BenchmarkRequest fromJSON(JsonObject json) {
+        return new BenchmarkRequest(
+            json.getString("setup", ""),
+            json.getString("code", ""),
+            json.getInt("warmups", DEFAULT_WARMUPS),
+            json.getInt("iterations", DEFAULT_ITERATIONS));
+    }
+}
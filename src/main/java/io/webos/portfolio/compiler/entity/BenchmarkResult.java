@@ -0,0 +1,19 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+/**
+ * Result of a benchmark: the output of the execution, and its statistics unless
+ * the code failed to compile or run, or a limit ended it.
+ */
+public record BenchmarkResult(ExecutionResult execution, BenchmarkStatistics statistics) {
+
+    public JsonObject toJSON() {
+        var builder = Json.createObjectBuilder(this.execution.toJSON());
+        if (this.statistics != null) {
+            builder.add("statistics", this.statistics.toJSON());
+        }
+        return builder.build();
+    }
+}
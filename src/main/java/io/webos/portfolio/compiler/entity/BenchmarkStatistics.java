@@ -0,0 +1,66 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of the measured iterations of a benchmark, all in nanoseconds per operation.
+ * The error is the half-width of the 95% confidence interval of the mean.
+ */
+public record BenchmarkStatistics(long opsPerIteration, int iterations, double mean, double error, double stdDev,
+                                  double min, double p50, double p90, double p99, double max) {
+
+    /**
+     * Two-sided 95% quantiles of Student's t distribution for 1 to 30 degrees of freedom.
+     */
+    static final double[] T_95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+    static final double Z_95 = 1.960;
+
+    /**
+     * @param iterationNanos the duration of each measured iteration of opsPerIteration operations
+     */
+    public static BenchmarkStatistics of(long opsPerIteration, long[] iterationNanos) {
+        var perOp = Arrays.stream(iterationNanos)
+            .mapToDouble(nanos -> (double) nanos / opsPerIteration)
+            .sorted()
+            .toArray();
+        var n = perOp.length;
+        var mean = Arrays.stream(perOp).average().orElse(0);
+        var variance = n < 2 ? 0 : Arrays.stream(perOp).map(value -> (value - mean) * (value - mean)).sum() / (n - 1);
+        var stdDev = Math.sqrt(variance);
+        var degrees = n - 1;
+        var t = degrees < 1 ? 0 : degrees <= T_95.length ? T_95[degrees - 1] : Z_95;
+        var error = t * stdDev / Math.sqrt(n);
+        return new BenchmarkStatistics(opsPerIteration, n, mean, error, stdDev,
+            perOp[0], percentile(perOp, 0.5), percentile(perOp, 0.9), percentile(perOp, 0.99), perOp[n - 1]);
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values.
+     */
+    static double percentile(double[] sorted, double fraction) {
+        var rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    public JsonObject toJSON() {
+        return Json.createObjectBuilder()
+            .add("unit", "ns/op")
+            .add("opsPerIteration", this.opsPerIteration)
+            .add("iterations", this.iterations)
+            .add("mean", this.mean)
+            .add("error", this.error)
+            .add("stdDev", this.stdDev)
+            .add("min", this.min)
+            .add("p50", this.p50)
+            .add("p90", this.p90)
+            .add("p99", this.p99)
+            .add("max", this.max)
+            .build();
+    }
+}
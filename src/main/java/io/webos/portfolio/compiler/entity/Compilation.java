@@ -0,0 +1,32 @@
+package io.webos.portfolio.compiler.entity;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of compiling the Java files of a project: the diagnostics as javac prints them and,
+ * if it succeeded, the class files of the whole project, including those reused from earlier builds.
+ *
+ * @param classes bytecode by binary class name
+ * @param sourceClasses binary names of the classes compiled from each file, by file id
+ * @param recompiled files compiled by this build
+ * @param reused files whose classes were taken from an earlier build
+ * @param fingerprint identifies the sources if all of them run the same way every time, so their runs
+ *                    can be cached, else null
+ */
+public record Compilation(boolean success, List<String> diagnostics, Map<String, byte[]> classes,
+                          Map<String, List<String>> sourceClasses, int recompiled, int reused, String fingerprint) {
+
+    public static Compilation failure(List<String> diagnostics, int recompiled) {
+        return new Compilation(false, diagnostics, Map.of(), Map.of(), recompiled, 0, null);
+    }
+
+    /**
+     * The top-level classes compiled from the file, in the order javac wrote them.
+     */
+    public List<String> topLevelClasses(String fileId) {
+        return this.sourceClasses.getOrDefault(fileId, List.of()).stream()
+            .filter(name -> !name.contains("$"))
+            .toList();
+    }
+}
@@ -0,0 +1,21 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Completion suggestions for a cursor position. Each suggestion replaces the code
+ * from anchor up to the cursor; signatures document the method call around the cursor.
+ */
+public record Completion(int anchor, List<String> suggestions, List<String> signatures) {
+
+    public JsonObject toJSON() {
+        return Json.createObjectBuilder()
+            .add("anchor", this.anchor)
+            .add("suggestions", Json.createArrayBuilder(this.suggestions))
+            .add("signatures", Json.createArrayBuilder(this.signatures))
+            .build();
+    }
+}
@@ -0,0 +1,37 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+/**
+ * A compiler error or warning located in the analyzed code.
+ * start and end are character offsets into the code; line and column are 1-based.
+ */
+public record Diagnostic(boolean error, String message, int start, int end, int line, int column) {
+
+    /**
+     * Creates a diagnostic spanning start to end of the code, deriving line and column from start.
+     */
+    public static Diagnostic at(String code, boolean error, String message, int start, int end) {
+        var line = 1;
+        var lineStart = 0;
+        for (var i = 0; i < start; i++) {
+            if (code.charAt(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return new Diagnostic(error, message, start, end, line, start - lineStart + 1);
+    }
+
+    public JsonObject toJSON() {
+        return Json.createObjectBuilder()
+            .add("severity", this.error ? "error" : "warning")
+            .add("message", this.message)
+            .add("start", this.start)
+            .add("end", this.end)
+            .add("line", this.line)
+            .add("column", this.column)
+            .build();
+    }
+}
@@ -0,0 +1,32 @@
+package io.webos.portfolio.compiler.entity;
+
+/**
+ * Where snippets run: "remote" in a JVM of their own, isolated from the server,
+ * or "local" inside the server's JVM, without a process boundary to cross.
+ * Only the server's configuration picks the engine, as local snippets run with the server's privileges.
+ */
+public enum Engine {
+    REMOTE,
+    LOCAL;
+
+    /**
+     * Parses an engine name such as "local"; null stays null.
+     *
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public static Engine of(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (var engine : values()) {
+            if (engine.label().equals(name)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine: " + name);
+    }
+
+    public String label() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,84 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+
+import java.io.StringReader;
+
+/**
+ * One server-sent event of a streamed execution: a chunk of "stdout" or "stderr",
+ * a "snippet" result, or a batch item's "result", and finally "done" with the outcome
+ * of the whole execution or batch.
+ */
+public record ExecutionEvent(String name, String data) {
+
+    public static ExecutionEvent output(String stream, String text) {
+        return new ExecutionEvent(stream, text);
+    }
+
+    public static ExecutionEvent snippet(SnippetResult result) {
+        return new ExecutionEvent("snippet", result.toJSON().toString());
+    }
+
+    /**
+     * A "result" of a batch, sent as soon as its item completed.
+     */
+    public static ExecutionEvent result(BatchResult result) {
+        return new ExecutionEvent("result", result.toJSON().toString());
+    }
+
+    /**
+     * @param status "completed" or "error"
+     */
+    public static ExecutionEvent done(String status, String message, long elapsedMillis) {
+        var data = Json.createObjectBuilder()
+            .add("status", status)
+            .add("message", message)
+            .add("elapsedMillis", elapsedMillis)
+            .build();
+        return new ExecutionEvent("done", data.toString());
+    }
+
+    /**
+     * The "done" event of an execution terminated by a limit: status "timeout" for
+     * the wall time, as before limits existed, "limit" for the others.
+     */
+    public static ExecutionEvent limitExceeded(Limit limit, String message, long elapsedMillis) {
+        var data = Json.createObjectBuilder()
+            .add("status", limit == Limit.WALL_TIME ? "timeout" : "limit")
+            .add("limit", limit.label())
+            .add("message", message)
+            .add("elapsedMillis", elapsedMillis)
+            .build();
+        return new ExecutionEvent("done", data.toString());
+    }
+
+    /**
+     * This "done" event with "lossy" set, reported by the execution that restored a session losing values,
+     * see {@link ExecutionResult#lossy()}.
+     */
+    public ExecutionEvent asLossy() {
+        try (var reader = Json.createReader(new StringReader(this.data))) {
+            var data = Json.createObjectBuilder(reader.readObject()).add("lossy", true).build();
+            return new ExecutionEvent(this.name, data.toString());
+        }
+    }
+
+    /**
+     * Whether this is the "done" event of an execution that completed.
+     */
+    public boolean completed() {
+        if (!"done".equals(this.name)) {
+            return false;
+        }
+        try (var reader = Json.createReader(new StringReader(this.data))) {
+            return "completed".equals(reader.readObject().getString("status"));
+        }
+    }
+
+    /**
+     * Output of the same stream can be sent as one event.
+     */
+    public boolean output() {
+        return "stdout".equals(this.name) || "stderr".equals(this.name);
+    }
+}
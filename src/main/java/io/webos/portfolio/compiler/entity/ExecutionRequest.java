@@ -4,16 +4,23 @@ import jakarta.json.JsonObject;
 
 /**
  * Request payload for code execution.
- * Contains the Java code snippet to be executed by JShell.
+ * Contains the Java code snippet to be executed by JShell and, for JShell Studio,
+ * the id of the session whose state the code continues. Clients do not choose the engine;
+ * the server's configuration does, see {@link Engine}.
  */
-public record ExecutionRequest(String code) {
+public record ExecutionRequest(String code, String sessionId) {
 
     /**
      * Deserializes an ExecutionRequest from a JSON-P JsonObject.
-     * Returns empty code if the "code" field is missing.
+     * Returns empty code if the "code" field is missing, and no session id if "sessionId" is.
      */
     public static ExecutionRequest fromJSON(JsonObject json) {
         var code = json.getString("code", "");
-        return new ExecutionRequest(code);
+        var sessionId = json.getString("sessionId", null);
+        return new ExecutionRequest(code, sessionId);
+    }
+
+    public boolean stateful() {
+        return this.sessionId != null && !this.sessionId.isBlank();
     }
 }
@@ -5,37 +5,55 @@ import jakarta.json.JsonObject;
 
 /**
  * Result of code execution containing the output string.
- * Includes factory methods for common result types: success, error, and timeout.
+ * Includes factory methods for common result types: success, error, and a breached limit.
+ *
+ * @param lossy the JShell Studio session was restored from a spill that kept only its declarations,
+ *              so values its earlier statements assigned are lost
  */
-public record ExecutionResult(String output, boolean success) {
+public record ExecutionResult(String output, boolean success, Limit limit, boolean lossy) {
 
     /**
      * Serializes this ExecutionResult to a JSON-P JsonObject.
+     * The "limit" field is only present when a limit terminated the execution,
+     * the "lossy" field only when the session lost values on being restored.
      */
     public JsonObject toJSON() {
-        return Json.createObjectBuilder()
-            .add("output", this.output)
-            .build();
+        var builder = Json.createObjectBuilder()
+            .add("output", this.output);
+        if (this.limit != null) {
+            builder.add("limit", this.limit.label());
+        }
+        if (this.lossy) {
+            builder.add("lossy", true);
+        }
+        return builder.build();
     }
 
     /**
      * Factory method for successful execution.
      */
     public static ExecutionResult success(String output) {
-        return new ExecutionResult(output, true);
+        return new ExecutionResult(output, true, null, false);
     }
 
     /**
      * Factory method for execution errors.
      */
     public static ExecutionResult error(String message) {
-        return new ExecutionResult(message, false);
+        return new ExecutionResult(message, false, null, false);
     }
 
     /**
-     * Factory method for timeout errors.
+     * Factory method for executions terminated by a limit.
      */
-    public static ExecutionResult timeout() {
-        return new ExecutionResult("Timeout Error: Execution exceeded 500ms", false);
+    public static ExecutionResult limitExceeded(Limit limit, String message) {
+        return new ExecutionResult(message, false, limit, false);
+    }
+
+    /**
+     * This result, reported by the execution that restored a session losing values.
+     */
+    public ExecutionResult asLossy() {
+        return new ExecutionResult(this.output, this.success, this.limit, true);
     }
 }
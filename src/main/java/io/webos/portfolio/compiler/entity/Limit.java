@@ -0,0 +1,18 @@
+package io.webos.portfolio.compiler.entity;
+
+/**
+ * A per-execution limit whose breach terminated a snippet.
+ */
+public enum Limit {
+    WALL_TIME,
+    CPU_TIME,
+    MEMORY,
+    OUTPUT;
+
+    /**
+     * Name used in JSON, such as "cpu-time".
+     */
+    public String label() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
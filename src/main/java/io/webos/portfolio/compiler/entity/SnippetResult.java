@@ -0,0 +1,33 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Outcome of evaluating one snippet: its JShell status, the value of a variable or
+ * expression, the compiler diagnostics of a rejected snippet, or the exception it threw.
+ * Absent parts are null.
+ */
+public record SnippetResult(String source, String kind, String status, String name, String value,
+                            List<String> diagnostics, String exception) {
+
+    public JsonObject toJSON() {
+        var builder = Json.createObjectBuilder()
+            .add("source", this.source)
+            .add("kind", this.kind)
+            .add("status", this.status)
+            .add("diagnostics", Json.createArrayBuilder(this.diagnostics));
+        if (this.name != null) {
+            builder.add("name", this.name);
+        }
+        if (this.value != null) {
+            builder.add("value", this.value);
+        }
+        if (this.exception != null) {
+            builder.add("exception", this.exception);
+        }
+        return builder.build();
+    }
+}
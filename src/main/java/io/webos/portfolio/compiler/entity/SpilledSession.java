@@ -0,0 +1,37 @@
+package io.webos.portfolio.compiler.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+
+import java.util.List;
+
+/**
+ * A JShell Studio session written to disk while idle: the snippets its shell accepted,
+ * which rebuild the session when replayed in order, and when it was last used.
+ * Spills written before the snippets were logged hold the active declarations instead.
+ *
+ * @param lossy the snippets are only the active declarations, as the log of the session overflowed,
+ *              so values its statements assigned are not restored
+ */
+public record SpilledSession(String id, List<String> snippets, boolean lossy, long lastAccessMillis) {
+
+    public JsonObject toJSON() {
+        return Json.createObjectBuilder()
+            .add("id", this.id)
+            .add("snippets", Json.createArrayBuilder(this.snippets))
+            .add("lossy", this.lossy)
+            .add("lastAccessMillis", this.lastAccessMillis)
+            .build();
+    }
+
+    public static SpilledSession fromJSON(JsonObject json) {
+        var logged = json.containsKey("snippets");
+        var snippets = json.getJsonArray(logged ? "snippets" : "declarations")
+            .getValuesAs(JsonString.class).stream()
+            .map(JsonString::getString)
+            .toList();
+        return new SpilledSession(json.getString("id"), snippets, json.getBoolean("lossy", !logged),
+            json.getJsonNumber("lastAccessMillis").longValue());
+    }
+}
@@ -5,13 +5,23 @@ import io.webos.portfolio.filesystem.entity.FileType;
 import jakarta.enterprise.context.ApplicationScoped;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Manages the Virtual File System with an in-memory Master File Table.
  * Provides file lookup and mutable operations for the portfolio content.
+ * The MFT and its children and name indexes change together under the write lock and are
+ * read under the read lock, so no lookup sees an entry that only some of them know yet.
  */
 @ApplicationScoped
 public class FileSystemService {
@@ -21,9 +31,10 @@ public class FileSystemService {
 
     /**
      * Master File Table containing all file system entries.
-     * Mutable ArrayList pre-populated with portfolio content.
+     * Copy-on-write list pre-populated with portfolio content: reads vastly outnumber writes
+     * and concurrent terminal sessions traverse it while others mutate it.
      */
-    List<FileNode> mft = new ArrayList<>(List.of(
+    List<FileNode> mft = new CopyOnWriteArrayList<>(List.of(
         new FileNode("desktop", null, "Desktop", FileType.DIRECTORY, null),
         new FileNode("cv", "desktop", "My CV", FileType.SHORTCUT, "app:cvviewer"),
         new FileNode("github", "desktop", "GitHub", FileType.SHORTCUT, "https://github.com/webos-portfolio"),
@@ -45,24 +56,60 @@ public class FileSystemService {
             "High-performance JAX-RS framework with reactive streams support.")
     ));
 
+    /**
+     * Children of each directory in MFT order, maintained alongside the MFT
+     * so that tree walks and directory listings do not rescan the whole table.
+     */
+    Map<String, List<FileNode>> children = indexChildren(this.mft);
+
+    /**
+     * Case-insensitive name index of each directory, updated on every mutation
+     * so that completion never scans or lowercases directory listings.
+     */
+    Map<String, NameTrie> names = indexNames(this.mft);
+
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    static Map<String, List<FileNode>> indexChildren(List<FileNode> nodes) {
+        var index = new ConcurrentHashMap<String, List<FileNode>>();
+        nodes.stream()
+            .filter(node -> node.parentId() != null)
+            .forEach(node -> childrenOf(index, node.parentId()).add(node));
+        return index;
+    }
+
+    static List<FileNode> childrenOf(Map<String, List<FileNode>> index, String parentId) {
+        return index.computeIfAbsent(parentId, id -> new CopyOnWriteArrayList<>());
+    }
+
+    static Map<String, NameTrie> indexNames(List<FileNode> nodes) {
+        var index = new ConcurrentHashMap<String, NameTrie>();
+        nodes.stream()
+            .filter(node -> node.parentId() != null)
+            .forEach(node -> namesOf(index, node.parentId()).add(node.name()));
+        return index;
+    }
+
+    static NameTrie namesOf(Map<String, NameTrie> index, String parentId) {
+        return index.computeIfAbsent(parentId, id -> new NameTrie());
+    }
+
     /**
      * Finds all FileNodes with the specified parentId.
      * Defaults to "desktop" when parentId is null.
      */
     public List<FileNode> findByParentId(String parentId) {
         var effectiveParentId = parentId == null ? DEFAULT_PARENT_ID : parentId;
-        return this.mft.stream()
-            .filter(node -> effectiveParentId.equals(node.parentId()))
-            .toList();
+        return read(() -> List.copyOf(this.children.getOrDefault(effectiveParentId, List.of())));
     }
 
     /**
      * Finds a single FileNode by its id.
      */
     public Optional<FileNode> findById(String id) {
-        return this.mft.stream()
+        return read(() -> this.mft.stream()
             .filter(node -> node.id().equals(id))
-            .findFirst();
+            .findFirst());
     }
 
     /**
@@ -71,10 +118,50 @@ public class FileSystemService {
      */
     public Optional<FileNode> findByNameInParent(String parentId, String name) {
         var effectiveParentId = parentId == null ? DEFAULT_PARENT_ID : parentId;
-        return this.mft.stream()
-            .filter(node -> effectiveParentId.equals(node.parentId()))
+        return read(() -> this.children.getOrDefault(effectiveParentId, List.of()).stream()
             .filter(node -> name.equals(node.name()))
-            .findFirst();
+            .findFirst());
+    }
+
+    /**
+     * Returns the names within the directory starting with the prefix, ignoring case.
+     */
+    public List<String> completeName(String parentId, String prefix) {
+        var effectiveParentId = parentId == null ? DEFAULT_PARENT_ID : parentId;
+        return read(() -> Optional.ofNullable(this.names.get(effectiveParentId))
+            .map(trie -> trie.withPrefix(prefix))
+            .orElse(List.of()));
+    }
+
+    /**
+     * Resolves a slash-separated path relative to the given directory.
+     * Absolute paths start at the root and may name it (e.g., /Desktop/Projects);
+     * "." and ".." are supported, and ".." at the root stays at the root.
+     */
+    public Optional<FileNode> resolvePath(String fromId, String path) {
+        this.lock.readLock().lock();
+        try {
+            return resolve(fromId, path);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    Optional<FileNode> resolve(String fromId, String path) {
+        var current = path.startsWith("/") ? findById(ROOT_ID) : findById(fromId);
+        var segments = path.split("/");
+        for (var i = 0; i < segments.length && current.isPresent(); i++) {
+            var segment = segments[i];
+            var node = current.get();
+            current = switch (segment) {
+                case "", "." -> current;
+                case ".." -> node.parentId() == null ? current : findById(node.parentId());
+                default -> i == 1 && path.startsWith("/") && segment.equals(node.name()) && node.parentId() == null
+                    ? current
+                    : findByNameInParent(node.id(), segment);
+            };
+        }
+        return current;
     }
 
     /**
@@ -84,7 +171,16 @@ public class FileSystemService {
     public FileNode createNode(String parentId, String name, FileType type, String content) {
         var id = UUID.randomUUID().toString();
         var node = new FileNode(id, parentId, name, type, content);
-        this.mft.add(node);
+        this.lock.writeLock().lock();
+        try {
+            this.mft.add(node);
+            if (parentId != null) {
+                childrenOf(this.children, parentId).add(node);
+                namesOf(this.names, parentId).add(name);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
         return node;
     }
 
@@ -93,7 +189,64 @@ public class FileSystemService {
      * Returns true if the node was found and removed.
      */
     public boolean deleteNode(String id) {
-        return this.mft.removeIf(node -> node.id().equals(id));
+        this.lock.writeLock().lock();
+        try {
+            var node = findById(id);
+            if (node.isEmpty()) {
+                return false;
+            }
+            unindex(node.get());
+            return this.mft.remove(node.get());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the given nodes together with all their descendants in a single pass over the MFT,
+     * instead of copying the table once per node.
+     * Returns the number of removed nodes.
+     */
+    public int deleteNodes(Collection<String> ids) {
+        this.lock.writeLock().lock();
+        try {
+            var doomed = ids.stream()
+                .flatMap(id -> Stream.concat(Stream.of(id), collectChildIds(id).stream()))
+                .collect(Collectors.toSet());
+            var removed = this.mft.stream()
+                .filter(node -> doomed.contains(node.id()))
+                .toList();
+
+            removed.forEach(this::unindex);
+            this.mft.removeIf(node -> doomed.contains(node.id()));
+            return removed.size();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the node's own entries and its entry in its parent's, if the parent is still indexed;
+     * a parent unindexed earlier in the same deletion is left alone rather than indexed again.
+     */
+    void unindex(FileNode node) {
+        this.children.remove(node.id());
+        this.names.remove(node.id());
+        var parentId = node.parentId();
+        if (parentId != null) {
+            this.children.computeIfPresent(parentId, (id, siblings) -> without(siblings, node));
+            this.names.computeIfPresent(parentId, (id, siblingNames) -> without(siblingNames, node.name()));
+        }
+    }
+
+    static List<FileNode> without(List<FileNode> siblings, FileNode node) {
+        siblings.remove(node);
+        return siblings;
+    }
+
+    static NameTrie without(NameTrie siblingNames, String name) {
+        siblingNames.remove(name);
+        return siblingNames;
     }
 
     /**
@@ -101,13 +254,18 @@ public class FileSystemService {
      * Returns true if the node was found and removed.
      */
     public boolean deleteNodeRecursive(String id) {
-        var nodeExists = findById(id).isPresent();
-        if (!nodeExists) {
-            return false;
+        this.lock.writeLock().lock();
+        try {
+            var nodeExists = findById(id).isPresent();
+            if (!nodeExists) {
+                return false;
+            }
+
+            collectChildIds(id).forEach(this::deleteNode);
+            return deleteNode(id);
+        } finally {
+            this.lock.writeLock().unlock();
         }
-        
-        collectChildIds(id).forEach(this::deleteNode);
-        return deleteNode(id);
     }
 
     /**
@@ -130,6 +288,10 @@ public class FileSystemService {
      * Returns path formatted with forward slashes (e.g., /desktop/projects).
      */
     public String buildPath(String nodeId) {
+        return read(() -> path(nodeId));
+    }
+
+    String path(String nodeId) {
         var pathParts = new ArrayList<String>();
         var currentId = nodeId;
         
@@ -163,6 +325,15 @@ public class FileSystemService {
      * Returns the updated node or empty if not found.
      */
     public Optional<FileNode> updateContent(String id, String content) {
+        this.lock.writeLock().lock();
+        try {
+            return replaceContent(id, content);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    Optional<FileNode> replaceContent(String id, String content) {
         var index = findIndexById(id);
         if (index < 0) {
             return Optional.empty();
@@ -177,6 +348,10 @@ public class FileSystemService {
             content
         );
         this.mft.set(index, updated);
+        if (existing.parentId() != null) {
+            var siblings = childrenOf(this.children, existing.parentId());
+            siblings.replaceAll(node -> node.id().equals(id) ? updated : node);
+        }
         return Optional.of(updated);
     }
 
@@ -186,10 +361,28 @@ public class FileSystemService {
      */
     public FileNode saveFile(String parentId, String name, String content) {
         var effectiveParentId = parentId == null ? DEFAULT_PARENT_ID : parentId;
-        var existing = findByNameInParent(effectiveParentId, name);
-        if (existing.isPresent()) {
-            return updateContent(existing.get().id(), content).orElseThrow();
+        this.lock.writeLock().lock();
+        try {
+            var existing = findByNameInParent(effectiveParentId, name);
+            if (existing.isPresent()) {
+                return updateContent(existing.get().id(), content).orElseThrow();
+            }
+            return createNode(effectiveParentId, name, FileType.FILE, content);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the query under the read lock, so all its lookups see the same version of the tree,
+     * e.g. a glob listing names through the index and then resolving them to nodes.
+     */
+    public <T> T read(Supplier<T> query) {
+        this.lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return createNode(effectiveParentId, name, FileType.FILE, content);
     }
 }
@@ -0,0 +1,140 @@
+package io.webos.portfolio.filesystem.control;
+
+import io.webos.portfolio.filesystem.entity.FileNode;
+import io.webos.portfolio.filesystem.entity.FileType;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Visits a subtree of the VFS in parallel on the common fork-join pool.
+ * Every directory becomes its own task, and results are handed to the caller
+ * through a queue as soon as a worker produces them, so the first matches of
+ * a recursive search are available before the walk has finished.
+ * Closing the returned stream cancels the remaining work.
+ */
+public class FileTreeWalk<T> {
+
+    static final Object END = new Object();
+
+    FileSystemService fileSystemService;
+    BiFunction<FileNode, String, Stream<T>> visitor;
+    BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+    AtomicBoolean cancelled = new AtomicBoolean();
+
+    FileTreeWalk(FileSystemService fileSystemService, BiFunction<FileNode, String, Stream<T>> visitor) {
+        this.fileSystemService = fileSystemService;
+        this.visitor = visitor;
+    }
+
+    /**
+     * Applies the visitor to the root and all its descendants, passing each node's path
+     * relative to rootPath. Results arrive in completion order, not tree order.
+     */
+    public static <T> Stream<T> parallel(FileSystemService fileSystemService, FileNode root, String rootPath,
+            BiFunction<FileNode, String, Stream<T>> visitor) {
+        var walk = new FileTreeWalk<>(fileSystemService, visitor);
+        ForkJoinPool.commonPool().execute(() -> walk.run(root, rootPath));
+        var spliterator = Spliterators.spliteratorUnknownSize(walk.iterator(), Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false)
+            .onClose(() -> walk.cancelled.set(true));
+    }
+
+    void run(FileNode root, String rootPath) {
+        try {
+            visit(root, rootPath);
+            if (root.type() == FileType.DIRECTORY) {
+                new DirectoryTask(root.id(), rootPath).invoke();
+            }
+        } catch (RuntimeException e) {
+            this.results.add(e);
+        } finally {
+            this.results.add(END);
+        }
+    }
+
+    void visit(FileNode node, String path) {
+        if (this.cancelled.get()) {
+            return;
+        }
+        this.visitor.apply(node, path).forEach(this.results::add);
+    }
+
+    class DirectoryTask extends RecursiveAction {
+
+        String directoryId;
+        String path;
+
+        DirectoryTask(String directoryId, String path) {
+            this.directoryId = directoryId;
+            this.path = path;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.get()) {
+                return;
+            }
+            var subdirectories = new ArrayList<DirectoryTask>();
+            for (var child : fileSystemService.findByParentId(this.directoryId)) {
+                var separator = this.path.endsWith("/") ? "" : "/";
+                var childPath = this.path + separator + child.name();
+                visit(child, childPath);
+                if (child.type() == FileType.DIRECTORY) {
+                    subdirectories.add(new DirectoryTask(child.id(), childPath));
+                }
+            }
+            invokeAll(subdirectories);
+        }
+    }
+
+    Iterator<T> iterator() {
+        return new Iterator<>() {
+
+            Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (this.next == null) {
+                    this.next = take();
+                }
+                if (this.next instanceof RuntimeException failure) {
+                    throw failure;
+                }
+                return this.next != END;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var result = (T) this.next;
+                this.next = null;
+                return result;
+            }
+        };
+    }
+
+    Object take() {
+        try {
+            return this.results.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.cancelled.set(true);
+            return END;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.webos.portfolio.filesystem.control;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive prefix tree over the names of one directory.
+ * A lookup costs the length of the prefix plus the number of matches,
+ * independent of how many entries the directory holds.
+ * Names are counted, so duplicates created through different APIs
+ * survive the removal of one of them.
+ */
+public class NameTrie {
+
+    Node root = new Node();
+
+    static class Node {
+        Map<Character, Node> children = new TreeMap<>();
+        Map<String, Integer> names = new TreeMap<>();
+    }
+
+    public synchronized void add(String name) {
+        var node = this.root;
+        for (var c : key(name).toCharArray()) {
+            node = node.children.computeIfAbsent(c, key -> new Node());
+        }
+        node.names.merge(name, 1, Integer::sum);
+    }
+
+    public synchronized void remove(String name) {
+        var node = find(key(name));
+        if (node != null) {
+            node.names.computeIfPresent(name, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Returns all names starting with the prefix, ignoring case, in alphabetical order.
+     */
+    public synchronized List<String> withPrefix(String prefix) {
+        var result = new ArrayList<String>();
+        var node = find(key(prefix));
+        if (node != null) {
+            collect(node, result);
+        }
+        return result;
+    }
+
+    Node find(String key) {
+        var node = this.root;
+        for (var c : key.toCharArray()) {
+            node = node.children.get(c);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    void collect(Node node, List<String> result) {
+        result.addAll(node.names.keySet());
+        node.children.values().forEach(child -> collect(child, result));
+    }
+
+    static String key(String name) {
+        return name.toLowerCase();
+    }
+}
@@ -0,0 +1,52 @@
+package io.webos.portfolio.terminal.boundary;
+
+import java.util.Optional;
+
+/**
+ * Compact text frame of the terminal WebSocket: one opcode character, a client-chosen
+ * request id correlating replies with requests, a tab and the payload.
+ * For example "x7\tls -l" executes a command and "o7\t..." carries its output.
+ */
+record TerminalFrame(Opcode opcode, String id, String payload) {
+
+    enum Opcode {
+        EXECUTE('x'),
+        CONTEXT('c'),
+        AUTOCOMPLETE('a'),
+        OUTPUT('o'),
+        EXIT('e'),
+        ERROR('!');
+
+        char code;
+
+        Opcode(char code) {
+            this.code = code;
+        }
+
+        static Optional<Opcode> of(char code) {
+            for (var opcode : values()) {
+                if (opcode.code == code) {
+                    return Optional.of(opcode);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Decodes a frame; a frame without tab carries only an id.
+     */
+    static Optional<TerminalFrame> parse(String text) {
+        if (text.isEmpty()) {
+            return Optional.empty();
+        }
+        var separator = text.indexOf('\t');
+        var id = separator < 0 ? text.substring(1) : text.substring(1, separator);
+        var payload = separator < 0 ? "" : text.substring(separator + 1);
+        return Opcode.of(text.charAt(0)).map(opcode -> new TerminalFrame(opcode, id, payload));
+    }
+
+    String encode() {
+        return this.opcode.code + this.id + "\t" + this.payload;
+    }
+}
@@ -1,21 +1,30 @@
 package io.webos.portfolio.terminal.boundary;
 
+import io.webos.portfolio.terminal.control.CommandFailedException;
 import io.webos.portfolio.terminal.control.CommandService;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.concurrent.CompletionException;
 
 /**
  * JAX-RS resource for terminal command execution.
  * Accepts commands via POST and returns execution results.
+ * Each request is routed to the terminal session identified by the optional sessionId.
  */
 @Path("/terminal")
 @Consumes(MediaType.APPLICATION_JSON)
@@ -31,18 +40,76 @@ public class TerminalResource {
     @POST
     @Path("/exec")
     public Response execute(JsonObject request) {
+        var sessionId = request.getString("sessionId", null);
         var command = request.getString("command", "");
-        var result = this.commandService.execute(command);
+        var result = this.commandService.execute(sessionId, command);
         return Response.ok(result.toJSON()).build();
     }
 
+    /**
+     * Runs a multi-line script in one round trip and returns one result per executed line.
+     * Lines may chain commands with &amp;&amp;, || and ;. With stopOnError the script ends
+     * at the first failing line.
+     */
+    @POST
+    @Path("/script")
+    public Response script(JsonObject request) {
+        var sessionId = request.getString("sessionId", null);
+        var script = request.getString("script", "");
+        var stopOnError = request.getBoolean("stopOnError", false);
+        var lines = this.commandService.runScript(sessionId, script, stopOnError);
+
+        var results = Json.createArrayBuilder();
+        lines.forEach(line -> results.add(line.toJSON()));
+        var exitStatus = lines.isEmpty() ? 0 : lines.getLast().exitStatus();
+        return Response.ok(Json.createObjectBuilder()
+            .add("results", results)
+            .add("exitStatus", exitStatus)
+            .build()).build();
+    }
+
+    /**
+     * Executes a terminal command and streams its output as "output" events while it is produced,
+     * followed by one "exit" event with the result and exit status.
+     * Each chunk is handed to the client before the next one is produced, so a slow client
+     * slows the command down instead of piling up output on the server.
+     */
+    @POST
+    @Path("/exec/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void executeStreaming(JsonObject request, @Context SseEventSink eventSink, @Context Sse sse) {
+        var sessionId = request.getString("sessionId", null);
+        var command = request.getString("command", "");
+        try (eventSink) {
+            var result = this.commandService.stream(sessionId, command,
+                chunk -> send(eventSink, sse.newEvent("output", chunk)));
+            if (!eventSink.isClosed()) {
+                var exit = Json.createObjectBuilder(result.toJSON())
+                    .add("exitStatus", result.success() ? 0 : 1)
+                    .build();
+                send(eventSink, sse.newEvent("exit", exit.toString()));
+            }
+        }
+    }
+
+    static void send(SseEventSink eventSink, OutboundSseEvent event) {
+        if (eventSink.isClosed()) {
+            throw new CommandFailedException("Client disconnected");
+        }
+        try {
+            eventSink.send(event).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw new CommandFailedException("Client disconnected");
+        }
+    }
+
     /**
      * Returns current terminal context including working directory.
      */
     @GET
     @Path("/context")
-    public Response context() {
-        var context = this.commandService.getContext();
+    public Response context(@QueryParam("sessionId") String sessionId) {
+        var context = this.commandService.context(sessionId);
         return Response.ok(context).build();
     }
 
@@ -51,10 +118,35 @@ public class TerminalResource {
      */
     @GET
     @Path("/autocomplete")
-    public Response autocomplete(@QueryParam("input") String input) {
-        var suggestions = this.commandService.autocomplete(input);
+    public Response autocomplete(@QueryParam("sessionId") String sessionId, @QueryParam("input") String input) {
+        var suggestions = this.commandService.autocomplete(sessionId, input);
         var array = Json.createArrayBuilder();
         suggestions.forEach(array::add);
         return Response.ok(Json.createObjectBuilder().add("suggestions", array).build()).build();
     }
+
+    /**
+     * Returns the retained command history of the session, oldest first.
+     */
+    @GET
+    @Path("/history")
+    public Response history(@QueryParam("sessionId") String sessionId) {
+        var entries = Json.createArrayBuilder();
+        this.commandService.history(sessionId).forEach(entry -> entries.add(entry.toJSON()));
+        return Response.ok(Json.createObjectBuilder().add("entries", entries).build()).build();
+    }
+
+    /**
+     * Ctrl-R style reverse search: returns the most recent command containing the query.
+     * Passing the previous match's number as before continues the search further back.
+     */
+    @GET
+    @Path("/history/search")
+    public Response searchHistory(@QueryParam("sessionId") String sessionId,
+                                  @QueryParam("query") @DefaultValue("") String query,
+                                  @QueryParam("before") @DefaultValue("9223372036854775807") long before) {
+        return this.commandService.searchHistory(sessionId, query, before)
+            .map(entry -> Response.ok(entry.toJSON()).build())
+            .orElse(Response.status(Response.Status.NOT_FOUND).build());
+    }
 }
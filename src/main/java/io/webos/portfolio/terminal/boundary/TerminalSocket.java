@@ -0,0 +1,142 @@
+package io.webos.portfolio.terminal.boundary;
+
+import io.webos.portfolio.terminal.boundary.TerminalFrame.Opcode;
+import io.webos.portfolio.terminal.control.CommandService;
+import jakarta.inject.Inject;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent terminal channel multiplexing command execution, streamed output,
+ * context updates and autocomplete over one connection per terminal session.
+ * Every interaction is a single {@link TerminalFrame}; after each command the new
+ * context is pushed, so the client needs no separate refresh.
+ */
+@ServerEndpoint("/terminal/ws/{sessionId}")
+public class TerminalSocket {
+
+    static final System.Logger LOGGER = System.getLogger(TerminalSocket.class.getName());
+    static final String FRAMES = "webos.terminal.frames";
+    static final String SENDING = "webos.terminal.sending";
+
+    @Inject
+    CommandService commandService;
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("sessionId") String sessionId) {
+        attach(session, sessionId);
+        enqueue(session, () -> send(session, context(sessionId, "")));
+    }
+
+    /**
+     * Handles the connection's frames one after another on a virtual thread of its own, keeping the
+     * I/O thread free while commands run without letting one client run commands concurrently.
+     * Replies carry the request id, so the client can tell which request they answer.
+     */
+    @OnMessage
+    public void onMessage(String message, Session session, @PathParam("sessionId") String sessionId) {
+        enqueue(session, () -> handle(message, session, sessionId));
+    }
+
+    /**
+     * Interrupts the command running for the connection and drops the frames still queued.
+     */
+    @OnClose
+    public void onClose(Session session) {
+        frames(session).shutdownNow();
+    }
+
+    /**
+     * Gives the connection its frame queue and the lock its replies are sent under.
+     */
+    static void attach(Session session, String sessionId) {
+        var frames = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("terminal-" + sessionId).factory());
+        session.getUserProperties().put(FRAMES, frames);
+        session.getUserProperties().put(SENDING, new ReentrantLock());
+    }
+
+    static void enqueue(Session session, Runnable replier) {
+        frames(session).execute(() -> reply(session, replier));
+    }
+
+    static ExecutorService frames(Session session) {
+        return (ExecutorService) session.getUserProperties().get(FRAMES);
+    }
+
+    /**
+     * A client going away mid-reply aborts the reply, including a running command's pipeline.
+     */
+    static void reply(Session session, Runnable replier) {
+        try {
+            replier.run();
+        } catch (UncheckedIOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Terminal socket " + session.getId() + " closed: " + e.getMessage());
+        }
+    }
+
+    void handle(String message, Session session, String sessionId) {
+        var frame = TerminalFrame.parse(message);
+        if (frame.isEmpty()) {
+            send(session, new TerminalFrame(Opcode.ERROR, "", "unknown frame"));
+            return;
+        }
+        var id = frame.get().id();
+        var payload = frame.get().payload();
+        switch (frame.get().opcode()) {
+            case EXECUTE -> {
+                var result = this.commandService.stream(sessionId, payload,
+                    chunk -> send(session, new TerminalFrame(Opcode.OUTPUT, id, chunk)));
+                var exit = result.success() ? "0" : "1\t" + result.error();
+                send(session, new TerminalFrame(Opcode.EXIT, id, exit));
+                send(session, context(sessionId, id));
+            }
+            case CONTEXT -> send(session, context(sessionId, id));
+            case AUTOCOMPLETE -> {
+                var suggestions = String.join("\n", this.commandService.autocomplete(sessionId, payload));
+                send(session, new TerminalFrame(Opcode.AUTOCOMPLETE, id, suggestions));
+            }
+            default -> send(session, new TerminalFrame(Opcode.ERROR, id, "not a request"));
+        }
+    }
+
+    /**
+     * Encodes the context as tab-separated directory id, path, directory name and last exit status.
+     */
+    TerminalFrame context(String sessionId, String id) {
+        var context = this.commandService.context(sessionId);
+        var payload = String.join("\t",
+            context.getString("currentDirectory"),
+            context.getString("currentPath"),
+            context.getString("currentDirName"),
+            String.valueOf(context.getInt("lastExitStatus")));
+        return new TerminalFrame(Opcode.CONTEXT, id, payload);
+    }
+
+    /**
+     * Sends synchronously, so a slow client slows the command down instead of queueing output.
+     * The basic remote is not thread-safe and output may be flushed from another thread, hence
+     * the connection's lock; a ReentrantLock, so a virtual thread blocked in the send unmounts.
+     */
+    static void send(Session session, TerminalFrame frame) {
+        var sending = (Lock) session.getUserProperties().get(SENDING);
+        sending.lock();
+        try {
+            session.getBasicRemote().sendText(frame.encode());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            sending.unlock();
+        }
+    }
+}
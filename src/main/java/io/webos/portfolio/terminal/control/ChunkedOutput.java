@@ -0,0 +1,98 @@
+package io.webos.portfolio.terminal.control;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Collects newline-terminated records into chunks of up to chunkSize characters for a consumer.
+ * A chunk goes out as soon as it is full; until then a virtual thread flushes what was collected
+ * every interval, so the output of a producer that is waiting still appears while it waits.
+ * The consumer is called by one thread at a time, and its failure, as when the client went away,
+ * is rethrown to the producer.
+ */
+class ChunkedOutput implements AutoCloseable {
+
+    Consumer<String> chunks;
+    int chunkSize;
+    StringBuilder chunk = new StringBuilder();
+    ReentrantLock lock = new ReentrantLock();
+    CountDownLatch closed = new CountDownLatch(1);
+    RuntimeException failure;
+    Thread flusher;
+
+    ChunkedOutput(Consumer<String> chunks, int chunkSize, long intervalMillis) {
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.flusher = Thread.ofVirtual().name("chunked-output").start(() -> flushEvery(intervalMillis));
+    }
+
+    void append(String record) {
+        this.lock.lock();
+        try {
+            this.chunk.append(record).append('\n');
+            if (this.chunk.length() >= this.chunkSize) {
+                flush();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void flushEvery(long intervalMillis) {
+        try {
+            while (!this.closed.await(intervalMillis, TimeUnit.MILLISECONDS)) {
+                this.lock.lock();
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    return;
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the collected records to the consumer; called holding the lock.
+     */
+    void flush() {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        if (this.chunk.isEmpty()) {
+            return;
+        }
+        var text = this.chunk.toString();
+        this.chunk.setLength(0);
+        try {
+            this.chunks.accept(text);
+        } catch (RuntimeException e) {
+            this.failure = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the flushing thread and hands out what is left.
+     */
+    @Override
+    public void close() {
+        this.closed.countDown();
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.lock.lock();
+        try {
+            flush();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
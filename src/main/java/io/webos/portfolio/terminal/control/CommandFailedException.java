@@ -0,0 +1,13 @@
+package io.webos.portfolio.terminal.control;
+
+/**
+ * Signals a failing command inside a pipeline.
+ * Pipelines are evaluated lazily, so a failure may surface while records are consumed;
+ * the exception carries the message reported to the terminal.
+ */
+public class CommandFailedException extends RuntimeException {
+
+    public CommandFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,318 @@
+package io.webos.portfolio.terminal.control;
+
+import io.webos.portfolio.terminal.entity.Pipeline;
+import io.webos.portfolio.terminal.entity.Stage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Splits a command line into a list joined by &amp;&amp;, ||, ; and &amp; and turns each command into a {@link Pipeline}.
+ * Understands single and double quotes, backslash escapes, variable expansion
+ * ($NAME, ${NAME}, $?), unquoted wildcards and the operators |, &gt;, &gt;&gt; and &lt;.
+ */
+public interface CommandLineParser {
+
+    enum TokenType {
+        WORD, PIPE, WRITE, APPEND, READ
+    }
+
+    record Token(TokenType type, String text) {
+
+        static Token word(String text) {
+            return new Token(TokenType.WORD, text);
+        }
+
+        static Token operator(TokenType type) {
+            return new Token(type, null);
+        }
+    }
+
+    enum Connector {
+        ALWAYS, AND, OR
+    }
+
+    /**
+     * One command of a list together with the operator joining it to its predecessor.
+     * A command terminated by &amp; runs as a background job.
+     */
+    record ListCommand(Connector connector, String command, boolean background) {
+
+        /**
+         * Whether the command runs after a predecessor that ended with the given outcome.
+         */
+        boolean runsAfter(boolean success) {
+            return switch (this.connector) {
+                case ALWAYS -> true;
+                case AND -> success;
+                case OR -> !success;
+            };
+        }
+    }
+
+    /**
+     * Splits the line at unquoted &amp;&amp;, ||, ; and &amp; without parsing the commands yet,
+     * so variables in later commands see the effects of earlier ones.
+     */
+    static List<ListCommand> commandList(String line) {
+        var commands = new ArrayList<ListCommand>();
+        var connector = Connector.ALWAYS;
+        var start = 0;
+        char quote = 0;
+        var i = 0;
+        while (i < line.length()) {
+            var c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote == '"') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                i++;
+                continue;
+            }
+            var operator = listOperator(line, i);
+            if (operator.isEmpty()) {
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '\\') {
+                    i++;
+                }
+                i++;
+                continue;
+            }
+            var command = line.substring(start, i).strip();
+            if (command.isEmpty() && (connector != Connector.ALWAYS || !";".equals(operator))) {
+                throw new CommandFailedException("syntax error near unexpected token `" + operator + "'");
+            }
+            if (!command.isEmpty()) {
+                commands.add(new ListCommand(connector, command, "&".equals(operator)));
+            }
+            connector = switch (operator) {
+                case "&&" -> Connector.AND;
+                case "||" -> Connector.OR;
+                default -> Connector.ALWAYS;
+            };
+            i += operator.length();
+            start = i;
+        }
+        if (quote != 0) {
+            throw new CommandFailedException("syntax error: unterminated quote");
+        }
+        var last = line.substring(start).strip();
+        if (last.isEmpty() && connector != Connector.ALWAYS) {
+            throw new CommandFailedException("syntax error: missing command after operator");
+        }
+        if (!last.isEmpty()) {
+            commands.add(new ListCommand(connector, last, false));
+        }
+        return commands;
+    }
+
+    static String listOperator(String line, int position) {
+        if (line.startsWith("&&", position) || line.startsWith("||", position)) {
+            return line.substring(position, position + 2);
+        }
+        var c = line.charAt(position);
+        return c == ';' || c == '&' ? String.valueOf(c) : "";
+    }
+
+    /**
+     * Parses the command line without wildcard expansion.
+     */
+    static Pipeline parse(String input, UnaryOperator<String> variables) {
+        return parse(input, variables, List::of);
+    }
+
+    /**
+     * Parses the command line, resolving variables with the given lookup and
+     * expanding words with unquoted wildcards through globs.
+     * Unknown variables expand to the empty string, as in POSIX shells.
+     */
+    static Pipeline parse(String input, UnaryOperator<String> variables, Function<String, List<String>> globs) {
+        var tokens = tokenize(input, variables, globs);
+        var stages = new ArrayList<Stage>();
+        var words = new ArrayList<String>();
+        String inputFile = null;
+        String outputFile = null;
+        var append = false;
+
+        for (var i = 0; i < tokens.size(); i++) {
+            var token = tokens.get(i);
+            switch (token.type()) {
+                case WORD -> words.add(token.text());
+                case PIPE -> {
+                    stages.add(stage(words));
+                    words = new ArrayList<>();
+                }
+                case READ -> inputFile = redirectTarget(tokens, ++i);
+                case WRITE, APPEND -> {
+                    outputFile = redirectTarget(tokens, ++i);
+                    append = token.type() == TokenType.APPEND;
+                }
+            }
+        }
+        stages.add(stage(words));
+        return new Pipeline(stages, inputFile, outputFile, append);
+    }
+
+    static Stage stage(List<String> words) {
+        if (words.isEmpty()) {
+            throw new CommandFailedException("syntax error near unexpected token `|'");
+        }
+        return new Stage(words.getFirst(), words.subList(1, words.size()));
+    }
+
+    static String redirectTarget(List<Token> tokens, int index) {
+        if (index >= tokens.size() || tokens.get(index).type() != TokenType.WORD) {
+            throw new CommandFailedException("syntax error: missing redirection target");
+        }
+        return tokens.get(index).text();
+    }
+
+    /**
+     * Splits the input into words and operators in a single left-to-right pass.
+     * A word is glob-expanded only if a wildcard appeared outside quotes and escapes, and then
+     * matched with the quoted parts taken literally; a pattern without matches is kept literally.
+     */
+    static List<Token> tokenize(String input, UnaryOperator<String> variables, Function<String, List<String>> globs) {
+        var tokens = new ArrayList<Token>();
+        var word = new StringBuilder();
+        var pattern = new StringBuilder();
+        var inWord = false;
+        var globbing = false;
+        var i = 0;
+
+        while (i < input.length()) {
+            var c = input.charAt(i);
+            if (Character.isWhitespace(c) || c == '|' || c == '<' || c == '>') {
+                if (inWord) {
+                    addWord(tokens, word.toString(), pattern.toString(), globbing, globs);
+                    word.setLength(0);
+                    pattern.setLength(0);
+                    inWord = false;
+                    globbing = false;
+                }
+                i = operator(input, i, tokens);
+                continue;
+            }
+            inWord = true;
+            globbing |= c == '*' || c == '?' || c == '[';
+            var start = word.length();
+            i = switch (c) {
+                case '\'' -> singleQuoted(input, i + 1, word);
+                case '"' -> doubleQuoted(input, i + 1, word, variables);
+                case '\\' -> escaped(input, i + 1, word);
+                case '$' -> variable(input, i + 1, word, variables);
+                default -> {
+                    word.append(c);
+                    yield i + 1;
+                }
+            };
+            var text = word.substring(start);
+            pattern.append("'\"\\$".indexOf(c) >= 0 ? Glob.quote(text) : text);
+        }
+        if (inWord) {
+            addWord(tokens, word.toString(), pattern.toString(), globbing, globs);
+        }
+        return tokens;
+    }
+
+    static void addWord(List<Token> tokens, String word, String pattern, boolean globbing,
+                        Function<String, List<String>> globs) {
+        var expanded = globbing ? globs.apply(pattern) : List.<String>of();
+        if (expanded.isEmpty()) {
+            tokens.add(Token.word(word));
+            return;
+        }
+        expanded.stream()
+            .map(Token::word)
+            .forEach(tokens::add);
+    }
+
+    /**
+     * Emits the operator starting at the given position, if any,
+     * and returns the position after it.
+     */
+    static int operator(String input, int position, List<Token> tokens) {
+        var c = input.charAt(position);
+        if (c == '|') {
+            tokens.add(Token.operator(TokenType.PIPE));
+        } else if (c == '<') {
+            tokens.add(Token.operator(TokenType.READ));
+        } else if (c == '>' && input.startsWith(">>", position)) {
+            tokens.add(Token.operator(TokenType.APPEND));
+            return position + 2;
+        } else if (c == '>') {
+            tokens.add(Token.operator(TokenType.WRITE));
+        }
+        return position + 1;
+    }
+
+    static int singleQuoted(String input, int start, StringBuilder word) {
+        var end = input.indexOf('\'', start);
+        if (end < 0) {
+            throw new CommandFailedException("syntax error: unterminated quote");
+        }
+        word.append(input, start, end);
+        return end + 1;
+    }
+
+    static int doubleQuoted(String input, int start, StringBuilder word, UnaryOperator<String> variables) {
+        var i = start;
+        while (i < input.length()) {
+            var c = input.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\' && i + 1 < input.length() && "\"\\$".indexOf(input.charAt(i + 1)) >= 0) {
+                word.append(input.charAt(i + 1));
+                i += 2;
+            } else if (c == '$') {
+                i = variable(input, i + 1, word, variables);
+            } else {
+                word.append(c);
+                i++;
+            }
+        }
+        throw new CommandFailedException("syntax error: unterminated quote");
+    }
+
+    static int escaped(String input, int position, StringBuilder word) {
+        if (position < input.length()) {
+            word.append(input.charAt(position));
+        }
+        return position + 1;
+    }
+
+    /**
+     * Expands $NAME, ${NAME} or $? starting right after the dollar sign.
+     * A dollar sign not followed by a name is kept literally.
+     */
+    static int variable(String input, int start, StringBuilder word, UnaryOperator<String> variables) {
+        if (start < input.length() && input.charAt(start) == '?') {
+            word.append(variables.apply("?"));
+            return start + 1;
+        }
+        if (start < input.length() && input.charAt(start) == '{') {
+            var end = input.indexOf('}', start);
+            if (end < 0) {
+                throw new CommandFailedException("syntax error: bad substitution");
+            }
+            word.append(variables.apply(input.substring(start + 1, end)));
+            return end + 1;
+        }
+        var end = start;
+        while (end < input.length() && (Character.isLetterOrDigit(input.charAt(end)) || input.charAt(end) == '_')) {
+            end++;
+        }
+        if (end == start) {
+            word.append('$');
+            return start;
+        }
+        word.append(variables.apply(input.substring(start, end)));
+        return end;
+    }
+}
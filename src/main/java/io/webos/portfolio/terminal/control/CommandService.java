@@ -1,70 +1,641 @@
 package io.webos.portfolio.terminal.control;
 
+import io.webos.portfolio.compiler.control.JavacService;
+import io.webos.portfolio.compiler.entity.Compilation;
 import io.webos.portfolio.filesystem.control.FileSystemService;
+import io.webos.portfolio.filesystem.control.FileTreeWalk;
+import io.webos.portfolio.filesystem.control.NameTrie;
 import io.webos.portfolio.filesystem.entity.FileNode;
 import io.webos.portfolio.filesystem.entity.FileType;
+import io.webos.portfolio.terminal.entity.CommandHistory;
 import io.webos.portfolio.terminal.entity.CommandResult;
+import io.webos.portfolio.terminal.entity.HistoryEntry;
+import io.webos.portfolio.terminal.entity.Job;
+import io.webos.portfolio.terminal.entity.Pipeline;
+import io.webos.portfolio.terminal.entity.ScriptLine;
+import io.webos.portfolio.terminal.entity.Stage;
+import io.webos.portfolio.terminal.entity.TerminalSession;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Parses and executes terminal commands using pattern matching.
+ * Parses and executes terminal commands as lazily evaluated pipelines.
  * Delegates file operations to FileSystemService.
  */
 @ApplicationScoped
 public class CommandService {
 
     static final List<String> COMMANDS = List.of(
-        "ls", "cat", "cd", "mkdir", "touch", "rm", "pwd", "uname", "whoami", "java", "echo", "help", "clear"
+        "ls", "cat", "cd", "mkdir", "touch", "rm", "pwd", "uname", "whoami", "java", "javac", "echo", "env", "export",
+        "grep", "head", "tail", "wc", "sort", "uniq", "find", "history", "jobs", "fg", "kill", "wait", "sleep", "help", "clear"
     );
 
+    static final Pattern ASSIGNMENT = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*=.*", Pattern.DOTALL);
+    static final int CHUNK_SIZE = 8 * 1024;
+    static final long FLUSH_INTERVAL_MS = 50;
+
+    static final NameTrie COMMAND_NAMES = commandNames();
+
+    static final Map<String, List<String>> FLAGS = Map.of(
+        "rm", List.of("-r"),
+        "grep", List.of("-i", "-l", "-n", "-r", "-v"),
+        "head", List.of("-n"),
+        "tail", List.of("-n"),
+        "wc", List.of("-c", "-l", "-w"),
+        "sort", List.of("-n", "-r"),
+        "find", List.of("-name", "-type"),
+        "history", List.of("-c"),
+        "java", List.of("--version", "-version")
+    );
+
+    static NameTrie commandNames() {
+        var trie = new NameTrie();
+        COMMANDS.forEach(trie::add);
+        return trie;
+    }
+
     @Inject
     FileSystemService fileSystemService;
 
+    @Inject
+    JavacService javacService;
+
     /**
-     * Current directory context for terminal operations.
-     * Initialized to desktop (home directory).
+     * Per-visitor terminal state, replacing the former single shared working directory.
      */
-    String currentDirectory = "desktop";
+    TerminalSessions sessions = new TerminalSessions();
 
     /**
-     * Executes a command string and returns the result.
-     * Uses pattern matching for switch to dispatch commands.
+     * Executes a command in the default session.
      */
     public CommandResult execute(String input) {
+        return execute(TerminalSessions.DEFAULT_SESSION_ID, input);
+    }
+
+    /**
+     * Executes a command string within the given session and records its exit status.
+     */
+    public CommandResult execute(String sessionId, String input) {
+        return execute(sessionId, input, this::run);
+    }
+
+    /**
+     * Executes like {@link #execute(String, String)}, but hands the output to the consumer in chunks
+     * while the pipeline produces it instead of buffering it. The returned result carries no output.
+     */
+    public CommandResult stream(String sessionId, String input, Consumer<String> chunks) {
+        return execute(sessionId, input, (session, pipeline) -> stream(session, pipeline, chunks));
+    }
+
+    CommandResult execute(String sessionId, String input, BiFunction<TerminalSession, Pipeline, CommandResult> runner) {
+        var session = this.sessions.session(sessionId);
+        var result = execute(session, input, runner);
+        session.recordExitStatus(result.success() ? 0 : 1);
+        return result;
+    }
+
+    CommandResult execute(TerminalSession session, String input) {
+        return execute(session, input, this::run);
+    }
+
+    /**
+     * Expands history designators, records the line and runs it.
+     */
+    CommandResult execute(TerminalSession session, String input, BiFunction<TerminalSession, Pipeline, CommandResult> runner) {
         if (input == null || input.isBlank()) {
             return CommandResult.failure("No command provided");
         }
 
-        var parts = input.trim().split("\\s+");
-        var command = parts[0];
+        try {
+            var line = HistoryExpansion.expand(input.trim(), session.history());
+            session.history().add(line);
+            return runList(session, line, runner);
+        } catch (CommandFailedException e) {
+            return CommandResult.failure(e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the commands of a list joined by &amp;&amp;, || and ;, skipping those whose condition
+     * does not hold for the status of the last command run.
+     * The outputs of all commands run are combined; success and error are the last command's.
+     */
+    CommandResult runList(TerminalSession session, String line, BiFunction<TerminalSession, Pipeline, CommandResult> runner) {
+        var outputs = new ArrayList<String>();
+        CommandResult last = null;
+        for (var command : CommandLineParser.commandList(line)) {
+            if (last != null && !command.runsAfter(last.success())) {
+                continue;
+            }
+            last = command.background()
+                ? startJob(session, command.command())
+                : runPipeline(session, command.command(), runner);
+            session.recordExitStatus(last.success() ? 0 : 1);
+            if (last.output() != null && !last.output().isEmpty()) {
+                outputs.add(last.output());
+            }
+        }
+        if (last == null) {
+            return CommandResult.success("");
+        }
+        if (!last.success() && outputs.isEmpty()) {
+            return last;
+        }
+        return new CommandResult(last.success(), String.join("\n", outputs), last.error());
+    }
+
+    /**
+     * Parses a single command into a pipeline and runs it.
+     * Failures of any stage, including those surfacing while records are streamed, end the pipeline.
+     */
+    CommandResult runPipeline(TerminalSession session, String command, BiFunction<TerminalSession, Pipeline, CommandResult> runner) {
+        try {
+            var pipeline = CommandLineParser.parse(command,
+                name -> variable(session, name),
+                pattern -> expandGlob(session, pattern));
+            recordUse(session, pipeline);
+            return runner.apply(session, pipeline);
+        } catch (CommandFailedException e) {
+            return CommandResult.failure(e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the command as a background job on its own virtual thread, so it holds no request thread
+     * while it runs. Its output is streamed into the job's bounded buffer.
+     */
+    CommandResult startJob(TerminalSession session, String command) {
+        var job = session.addJob(command);
+        if (job.isEmpty()) {
+            return CommandResult.failure("Too many background jobs");
+        }
+        Thread.ofVirtual()
+            .name("terminal-job-" + job.get().number())
+            .start(() -> job.get().run(() -> runPipeline(session, command,
+                (jobSession, pipeline) -> stream(jobSession, pipeline, job.get()::append))));
+        return CommandResult.success("[" + job.get().number() + "] " + command);
+    }
+
+    /**
+     * Lists all jobs; finished ones are reported once and then forgotten, as in bash.
+     */
+    CommandResult listJobs(TerminalSession session) {
+        var jobs = session.jobs();
+        var finished = jobs.stream().filter(Job::finished).toList();
+        var output = jobs.stream()
+            .map(job -> "[%d]  %-8s %s".formatted(job.number(), jobState(job), job.command()))
+            .collect(Collectors.joining("\n"));
+        finished.forEach(session::removeJob);
+        return CommandResult.success(output);
+    }
+
+    static String jobState(Job job) {
+        return switch (job.state()) {
+            case RUNNING -> "Running";
+            case DONE -> "Done";
+            case FAILED -> "Exit 1";
+            case KILLED -> "Killed";
+        };
+    }
+
+    /**
+     * Waits for the job and returns its buffered output and result, as if it had run in the foreground.
+     */
+    CommandResult foreground(TerminalSession session, String[] parts) {
+        var job = jobArgument(session, parts, "fg");
+        var result = awaitJob(job);
+        session.removeJob(job);
+        var output = job.output();
+        if (!result.success() && output.isEmpty()) {
+            return result;
+        }
+        return new CommandResult(result.success(), output, result.error());
+    }
+
+    CommandResult killJob(TerminalSession session, String[] parts) {
+        if (parts.length < 2 || !parts[1].startsWith("%")) {
+            return CommandResult.failure("Usage: kill %<job>");
+        }
+        var job = jobArgument(session, parts, "kill");
+        job.kill();
+        session.removeJob(job);
+        return CommandResult.success("");
+    }
+
+    /**
+     * Waits for the given job or for all jobs; the status is that of the last job waited for.
+     * Output stays in the jobs' buffers for fg.
+     */
+    CommandResult waitForJobs(TerminalSession session, String[] parts) {
+        var jobs = parts.length > 1 ? List.of(jobArgument(session, parts, "wait")) : session.jobs();
+        var result = CommandResult.success("");
+        for (var job : jobs) {
+            result = awaitJob(job);
+        }
+        return result.success() ? CommandResult.success("") : result;
+    }
+
+    /**
+     * Resolves %n or n, defaulting to the most recent job.
+     */
+    Job jobArgument(TerminalSession session, String[] parts, String command) {
+        if (parts.length < 2) {
+            return session.currentJob()
+                .orElseThrow(() -> new CommandFailedException(command + ": no current job"));
+        }
+        var reference = parts[1].startsWith("%") ? parts[1].substring(1) : parts[1];
+        try {
+            return session.job(Integer.parseInt(reference))
+                .orElseThrow(() -> new CommandFailedException(command + ": " + parts[1] + ": no such job"));
+        } catch (NumberFormatException e) {
+            throw new CommandFailedException(command + ": " + parts[1] + ": no such job");
+        }
+    }
+
+    CommandResult awaitJob(Job job) {
+        try {
+            return job.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandFailedException("Interrupted");
+        }
+    }
+
+    CommandResult sleep(String[] parts) {
+        if (parts.length < 2) {
+            return CommandResult.failure("Usage: sleep <seconds>");
+        }
+        try {
+            var millis = (long) (Double.parseDouble(parts[1]) * 1000);
+            Thread.sleep(Duration.ofMillis(Math.max(0, millis)));
+            return CommandResult.success("");
+        } catch (NumberFormatException e) {
+            return CommandResult.failure("sleep: invalid time interval: " + parts[1]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Killed");
+        }
+    }
+
+    /**
+     * Runs a multi-line script in one session, line by line and without history expansion,
+     * as shells do for scripts. Blank lines and # comments are skipped.
+     * With stopOnError, the first line ending in a failure ends the script.
+     */
+    public List<ScriptLine> runScript(String sessionId, String script, boolean stopOnError) {
+        var session = this.sessions.session(sessionId);
+        var results = new ArrayList<ScriptLine>();
+        var lines = script.lines().toList();
+        for (var number = 1; number <= lines.size(); number++) {
+            var line = lines.get(number - 1).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            var result = runScriptLine(session, line);
+            results.add(new ScriptLine(number, line, result));
+            if (stopOnError && !result.success()) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    CommandResult runScriptLine(TerminalSession session, String line) {
+        try {
+            return runList(session, line, this::run);
+        } catch (CommandFailedException e) {
+            session.recordExitStatus(1);
+            return CommandResult.failure(e.getMessage());
+        }
+    }
+
+    /**
+     * Remembers commands and arguments for ranking completions.
+     */
+    void recordUse(TerminalSession session, Pipeline pipeline) {
+        pipeline.stages().stream()
+            .flatMap(stage -> Stream.concat(Stream.of(stage.command()), stage.arguments().stream()))
+            .forEach(session::recordUse);
+    }
+
+    CommandResult run(TerminalSession session, Pipeline pipeline) {
+        try (var records = records(session, pipeline)) {
+            if (pipeline.redirectsOutput()) {
+                writeRecords(session, pipeline, records);
+                return CommandResult.success("");
+            }
+            return CommandResult.success(records.collect(Collectors.joining("\n")));
+        }
+    }
+
+    /**
+     * Emits newline-terminated records in chunks of up to CHUNK_SIZE characters, see {@link ChunkedOutput}.
+     * What a slow producer has produced is flushed every FLUSH_INTERVAL_MS, even while it waits for its
+     * next record, so output appears as it is produced while only one chunk is ever held in memory.
+     */
+    CommandResult stream(TerminalSession session, Pipeline pipeline, Consumer<String> chunks) {
+        if (pipeline.redirectsOutput()) {
+            return run(session, pipeline);
+        }
+        try (var records = records(session, pipeline);
+             var output = new ChunkedOutput(chunks, CHUNK_SIZE, FLUSH_INTERVAL_MS)) {
+            records.forEach(output::append);
+            return CommandResult.success("");
+        }
+    }
+
+    /**
+     * Wires the stages together without pulling any records;
+     * records only flow once the returned stream is consumed.
+     */
+    Stream<String> records(TerminalSession session, Pipeline pipeline) {
+        var records = pipeline.redirectsInput()
+            ? readFile(session, pipeline.inputFile())
+            : Stream.<String>empty();
+        for (var stage : pipeline.stages()) {
+            records = apply(session, stage, records);
+        }
+        return records;
+    }
+
+    Stream<String> apply(TerminalSession session, Stage stage, Stream<String> input) {
+        var arguments = stage.arguments();
+        Function<String, Stream<String>> files = name -> readFile(session, name);
+
+        return switch (stage.command()) {
+            case "cat" -> TextOperators.source(arguments, input, files);
+            case "grep" -> TextOperators.hasFlag(arguments, 'r')
+                ? recursiveGrep(session, arguments)
+                : TextOperators.grep(arguments, input, files);
+            case "find" -> find(session, arguments);
+            case "head" -> TextOperators.head(arguments, input, files);
+            case "tail" -> TextOperators.tail(arguments, input, files);
+            case "wc" -> TextOperators.wc(arguments, input, files);
+            case "sort" -> TextOperators.sort(arguments, input, files);
+            case "uniq" -> TextOperators.uniq(arguments, input, files);
+            default -> lines(builtin(session, stage));
+        };
+    }
+
+    /**
+     * Uses pattern matching for switch to dispatch commands which ignore piped input.
+     */
+    CommandResult builtin(TerminalSession session, Stage stage) {
+        var command = stage.command();
+        var parts = Stream.concat(Stream.of(command), stage.arguments().stream())
+            .toArray(String[]::new);
 
         return switch (command) {
-            case "ls" -> listDirectory(parts);
-            case "cat" -> catFile(parts);
-            case "cd" -> changeDirectory(parts);
-            case "mkdir" -> makeDirectory(parts);
-            case "touch" -> touchFile(parts);
-            case "rm" -> removeFile(parts);
-            case "pwd" -> printWorkingDirectory();
+            case "ls" -> listDirectory(session, parts);
+            case "cd" -> changeDirectory(session, parts);
+            case "mkdir" -> makeDirectory(session, parts);
+            case "touch" -> touchFile(session, parts);
+            case "rm" -> removeFile(session, parts);
+            case "pwd" -> printWorkingDirectory(session);
             case "uname" -> systemInfo();
-            case "whoami" -> currentUser();
-            case "java" -> javaCommand(parts);
-            case "echo" -> echo(input);
-            default -> CommandResult.failure("Unknown command: " + command);
+            case "whoami" -> currentUser(session);
+            case "java" -> javaCommand(session, parts);
+            case "javac" -> javacCommand(session, parts);
+            case "echo" -> CommandResult.success(String.join(" ", stage.arguments()));
+            case "env" -> printEnvironment(session);
+            case "export" -> exportVariable(session, parts);
+            case "history" -> showHistory(session, parts);
+            case "jobs" -> listJobs(session);
+            case "fg" -> foreground(session, parts);
+            case "kill" -> killJob(session, parts);
+            case "wait" -> waitForJobs(session, parts);
+            case "sleep" -> sleep(parts);
+            default -> ASSIGNMENT.matcher(command).matches() && parts.length == 1
+                ? exportVariable(session, new String[]{"export", command})
+                : CommandResult.failure("Unknown command: " + command);
+        };
+    }
+
+    Stream<String> lines(CommandResult result) {
+        if (!result.success()) {
+            throw new CommandFailedException(result.error());
+        }
+        return result.output().lines();
+    }
+
+    /**
+     * Usage: find [path] [-name glob] [-type f|d]
+     * The glob is compiled once; matching runs in parallel across the subtree.
+     */
+    Stream<String> find(TerminalSession session, List<String> arguments) {
+        var path = arguments.isEmpty() || arguments.getFirst().startsWith("-") ? "." : arguments.getFirst();
+        var root = searchRoot(session, path);
+        var name = option(arguments, "-name").map(Glob::compile);
+        var type = option(arguments, "-type").map(this::fileType);
+
+        Predicate<FileNode> matches = node -> name.map(glob -> glob.matcher(node.name()).matches()).orElse(true)
+            && type.map(node.type()::equals).orElse(true);
+        return FileTreeWalk.parallel(this.fileSystemService, root, path,
+            (node, nodePath) -> matches.test(node) ? Stream.of(nodePath) : Stream.empty());
+    }
+
+    /**
+     * Usage: grep -r [-i] [-v] [-n] [-l] pattern [path]
+     * Every file of the subtree is scanned on the fork-join pool; matches are streamed as path:line.
+     */
+    Stream<String> recursiveGrep(TerminalSession session, List<String> arguments) {
+        var operands = TextOperators.operands(arguments);
+        if (operands.isEmpty()) {
+            throw new CommandFailedException("Usage: grep -r [-i] [-v] [-n] [-l] <pattern> [path]");
+        }
+        var matches = TextOperators.matcher(arguments, operands.getFirst());
+        var path = operands.size() > 1 ? operands.get(1) : ".";
+        var root = searchRoot(session, path);
+        var filesOnly = TextOperators.hasFlag(arguments, 'l');
+
+        return FileTreeWalk.parallel(this.fileSystemService, root, path,
+            (node, nodePath) -> grepFile(node, nodePath, arguments, matches, filesOnly));
+    }
+
+    Stream<String> grepFile(FileNode node, String path, List<String> arguments, Predicate<String> matches,
+            boolean filesOnly) {
+        if (node.type() != FileType.FILE || node.content() == null) {
+            return Stream.empty();
+        }
+        if (filesOnly) {
+            return node.content().lines().anyMatch(matches) ? Stream.of(path) : Stream.empty();
+        }
+        return TextOperators.matchingLines(arguments, node.content().lines(), matches)
+            .map(line -> path + ":" + line);
+    }
+
+    FileNode searchRoot(TerminalSession session, String path) {
+        var rootId = ".".equals(path) ? session.currentDirectory() : resolvePathToId(session, path);
+        return Optional.ofNullable(rootId)
+            .flatMap(this.fileSystemService::findById)
+            .orElseThrow(() -> new CommandFailedException(path + ": No such file or directory"));
+    }
+
+    Optional<String> option(List<String> arguments, String name) {
+        var index = arguments.indexOf(name);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        if (index + 1 >= arguments.size()) {
+            throw new CommandFailedException("find: missing argument to " + name);
+        }
+        return Optional.of(arguments.get(index + 1));
+    }
+
+    FileType fileType(String type) {
+        return switch (type) {
+            case "f" -> FileType.FILE;
+            case "d" -> FileType.DIRECTORY;
+            case "l" -> FileType.SHORTCUT;
+            default -> throw new CommandFailedException("find: unknown type: " + type);
         };
     }
 
-    CommandResult listDirectory(String[] parts) {
+    /**
+     * Streams the lines of a file without copying its content.
+     */
+    Stream<String> readFile(TerminalSession session, String fileName) {
+        var node = resolve(session, fileName)
+            .orElseThrow(() -> new CommandFailedException("File not found: " + fileName));
+
+        if (node.type() == FileType.DIRECTORY) {
+            throw new CommandFailedException("cat: " + fileName + ": Is a directory");
+        }
+        if (node.content() == null) {
+            throw new CommandFailedException("File has no content: " + fileName);
+        }
+        return node.content().lines();
+    }
+
+    /**
+     * Handles > (overwrite) and >> (append) redirection of the pipeline output.
+     */
+    void writeRecords(TerminalSession session, Pipeline pipeline, Stream<String> records) {
+        var fileName = pipeline.outputFile();
+        var existing = this.fileSystemService.findByNameInParent(session.currentDirectory(), fileName);
+        if (existing.isPresent() && existing.get().type() == FileType.DIRECTORY) {
+            throw new CommandFailedException(fileName + ": Is a directory");
+        }
+
+        var content = records.collect(Collectors.joining("\n"));
+        var newContent = pipeline.append()
+            ? existing.map(f -> f.content() != null ? f.content() + "\n" + content : content).orElse(content)
+            : content;
+
+        this.fileSystemService.saveFile(session.currentDirectory(), fileName, newContent);
+    }
+
+    record GlobMatch(FileNode node, String path) {
+
+        GlobMatch child(FileNode child) {
+            if (this.path.isEmpty()) {
+                return new GlobMatch(child, child.name());
+            }
+            var separator = this.path.endsWith("/") ? "" : "/";
+            return new GlobMatch(child, this.path + separator + child.name());
+        }
+    }
+
+    /**
+     * Expands a wildcard pattern segment by segment against the directory name indexes:
+     * the literal prefix of each segment narrows candidates through the trie before the glob is matched.
+     * Returns the matching paths in sorted order, or nothing if no node matches.
+     */
+    List<String> expandGlob(TerminalSession session, String pattern) {
+        return this.fileSystemService.read(() -> expand(session, pattern));
+    }
+
+    List<String> expand(TerminalSession session, String pattern) {
+        var absolute = pattern.startsWith("/");
+        var startId = absolute ? TerminalSession.HOME_DIRECTORY : session.currentDirectory();
+        var start = this.fileSystemService.findById(startId);
+        if (start.isEmpty()) {
+            return List.of();
+        }
+
+        var segments = Stream.of(pattern.split("/"))
+            .filter(segment -> !segment.isEmpty())
+            .toList();
+        var rootNamed = absolute && !segments.isEmpty() && segments.getFirst().equals(start.get().name());
+        List<GlobMatch> matches = List.of(new GlobMatch(start.get(), absolute ? "/" : ""));
+        if (rootNamed) {
+            matches = List.of(new GlobMatch(start.get(), "/" + start.get().name()));
+            segments = segments.subList(1, segments.size());
+        }
+
+        for (var segment : segments) {
+            matches = matches.stream()
+                .flatMap(match -> expandSegment(match, segment))
+                .toList();
+        }
+        return matches.stream()
+            .map(GlobMatch::path)
+            .filter(path -> !path.isEmpty())
+            .sorted()
+            .toList();
+    }
+
+    Stream<GlobMatch> expandSegment(GlobMatch match, String segment) {
+        var directoryId = match.node().id();
+        if ("**".equals(segment)) {
+            return directories(match);
+        }
+        if (".".equals(segment) || "..".equals(segment) || !Glob.isGlob(segment)) {
+            return this.fileSystemService.resolvePath(directoryId, segment).stream()
+                .map(node -> new GlobMatch(node, match.path().isEmpty() ? segment : match.path() + "/" + segment));
+        }
+
+        var literalPrefix = segment.split("[*?\\[]", 2)[0];
+        var glob = Glob.compile(segment);
+        return this.fileSystemService.completeName(directoryId, literalPrefix).stream()
+            .filter(name -> glob.matcher(name).matches())
+            .flatMap(name -> this.fileSystemService.findByNameInParent(directoryId, name).stream())
+            .map(match::child);
+    }
+
+    /**
+     * The directory itself and all directories below it, for the ** wildcard.
+     */
+    Stream<GlobMatch> directories(GlobMatch match) {
+        var subdirectories = this.fileSystemService.findByParentId(match.node().id()).stream()
+            .filter(node -> node.type() == FileType.DIRECTORY)
+            .map(match::child)
+            .flatMap(this::directories);
+        return Stream.concat(Stream.of(match), subdirectories);
+    }
+
+    String variable(TerminalSession session, String name) {
+        if ("?".equals(name)) {
+            return String.valueOf(session.lastExitStatus());
+        }
+        return session.variable(name).orElse("");
+    }
+
+    CommandResult listDirectory(TerminalSession session, String[] parts) {
+        if (parts.length > 2) {
+            return listAll(session, List.of(parts).subList(1, parts.length));
+        }
+
         var targetId = parts.length > 1 
-            ? resolvePathToId(parts[1]) 
-            : this.currentDirectory;
+            ? resolvePathToId(session, parts[1]) 
+            : session.currentDirectory();
         
         if (targetId == null) {
             return CommandResult.failure("Directory not found: " + parts[1]);
@@ -72,7 +643,7 @@ public class CommandService {
         
         var targetNode = this.fileSystemService.findById(targetId);
         if (targetNode.isPresent() && targetNode.get().type() != FileType.DIRECTORY) {
-            return CommandResult.failure("ls: " + parts[1] + ": Not a directory");
+            return CommandResult.success(parts[1]);
         }
 
         var nodes = this.fileSystemService.findByParentId(targetId);
@@ -87,51 +658,37 @@ public class CommandService {
         return CommandResult.success(output);
     }
 
-    CommandResult catFile(String[] parts) {
-        if (parts.length < 2) {
-            return CommandResult.failure("Usage: cat <filename>");
-        }
-
-        var fileName = parts[1];
-        var node = this.fileSystemService.findByNameInParent(this.currentDirectory, fileName);
-        
-        if (node.isEmpty()) {
-            node = this.fileSystemService.findById(fileName);
-        }
-
-        if (node.isEmpty()) {
-            return CommandResult.failure("File not found: " + fileName);
-        }
-        
-        if (node.get().type() == FileType.DIRECTORY) {
-            return CommandResult.failure("cat: " + fileName + ": Is a directory");
+    /**
+     * Lists several operands at once: files by name, directories with a header line.
+     */
+    CommandResult listAll(TerminalSession session, List<String> paths) {
+        var sections = new ArrayList<String>();
+        for (var path : paths) {
+            var node = resolve(session, path);
+            if (node.isEmpty()) {
+                return CommandResult.failure("Directory not found: " + path);
+            }
+            sections.add(node.get().type() == FileType.DIRECTORY
+                ? path + ":\n" + childNames(node.get().id())
+                : path);
         }
+        return CommandResult.success(String.join("\n", sections));
+    }
 
-        return node.get().content() != null 
-            ? CommandResult.success(node.get().content())
-            : CommandResult.failure("File has no content: " + fileName);
+    String childNames(String directoryId) {
+        return this.fileSystemService.findByParentId(directoryId).stream()
+            .map(FileNode::name)
+            .collect(Collectors.joining("\n"));
     }
 
-    CommandResult changeDirectory(String[] parts) {
+    CommandResult changeDirectory(TerminalSession session, String[] parts) {
         if (parts.length < 2) {
-            this.currentDirectory = "desktop";
+            session.changeDirectory(TerminalSession.HOME_DIRECTORY);
             return CommandResult.success("");
         }
 
         var target = parts[1];
-        
-        if ("..".equals(target)) {
-            var currentNode = this.fileSystemService.findById(this.currentDirectory);
-            if (currentNode.isPresent() && currentNode.get().parentId() != null) {
-                this.currentDirectory = currentNode.get().parentId();
-            }
-            return CommandResult.success("");
-        }
-
-        var targetNode = this.fileSystemService.findByNameInParent(this.currentDirectory, target);
-        if (targetNode.isEmpty()) {
-            targetNode = this.fileSystemService.findById(target);
-        }
+        var targetNode = resolve(session, target);
 
         if (targetNode.isEmpty()) {
             return CommandResult.failure("Directory not found: " + target);
@@ -141,98 +698,101 @@ public class CommandService {
             return CommandResult.failure("cd: " + target + ": Not a directory");
         }
 
-        this.currentDirectory = targetNode.get().id();
+        session.changeDirectory(targetNode.get().id());
         return CommandResult.success("");
     }
 
-    CommandResult makeDirectory(String[] parts) {
+    CommandResult makeDirectory(TerminalSession session, String[] parts) {
         if (parts.length < 2) {
             return CommandResult.failure("Usage: mkdir <dirname>");
         }
 
         var dirName = parts[1];
-        var existing = this.fileSystemService.findByNameInParent(this.currentDirectory, dirName);
+        var existing = this.fileSystemService.findByNameInParent(session.currentDirectory(), dirName);
         
         if (existing.isPresent()) {
             return CommandResult.failure("Directory already exists: " + dirName);
         }
 
-        this.fileSystemService.createNode(this.currentDirectory, dirName, FileType.DIRECTORY, null);
+        this.fileSystemService.createNode(session.currentDirectory(), dirName, FileType.DIRECTORY, null);
         return CommandResult.success("Directory created: " + dirName);
     }
 
-    CommandResult touchFile(String[] parts) {
+    CommandResult touchFile(TerminalSession session, String[] parts) {
         if (parts.length < 2) {
             return CommandResult.failure("Usage: touch <filename>");
         }
 
         var fileName = parts[1];
-        var existing = this.fileSystemService.findByNameInParent(this.currentDirectory, fileName);
+        var existing = this.fileSystemService.findByNameInParent(session.currentDirectory(), fileName);
         
         if (existing.isPresent()) {
             return CommandResult.success("");
         }
 
-        this.fileSystemService.createNode(this.currentDirectory, fileName, FileType.FILE, "");
+        this.fileSystemService.createNode(session.currentDirectory(), fileName, FileType.FILE, "");
         return CommandResult.success("");
     }
 
-    CommandResult removeFile(String[] parts) {
-        if (parts.length < 2) {
-            return CommandResult.failure("Usage: rm [-r] <name>");
-        }
-
-        var recursive = "-r".equals(parts[1]);
-        var targetName = recursive ? (parts.length > 2 ? parts[2] : null) : parts[1];
-        
-        if (targetName == null) {
-            return CommandResult.failure("Usage: rm [-r] <name>");
-        }
-
-        var targetNode = this.fileSystemService.findByNameInParent(this.currentDirectory, targetName);
-        if (targetNode.isEmpty()) {
-            targetNode = this.fileSystemService.findById(targetName);
-        }
-
-        if (targetNode.isEmpty()) {
-            return CommandResult.failure("File not found: " + targetName);
-        }
+    /**
+     * Removes all operands (typically the expansion of a glob) with one bulk deletion.
+     * Every operand is validated first, so a bad one leaves the file system untouched.
+     */
+    CommandResult removeFile(TerminalSession session, String[] parts) {
+        var arguments = List.of(parts).subList(1, parts.length);
+        var recursive = arguments.contains("-r");
+        var targetNames = arguments.stream()
+            .filter(argument -> !"-r".equals(argument))
+            .toList();
 
-        if (targetNode.get().type() == FileType.DIRECTORY && !recursive) {
-            return CommandResult.failure("rm: " + targetName + ": Is a directory (use -r)");
+        if (targetNames.isEmpty()) {
+            return CommandResult.failure("Usage: rm [-r] <name>...");
         }
 
-        if (recursive) {
-            this.fileSystemService.deleteNodeRecursive(targetNode.get().id());
-        } else {
-            this.fileSystemService.deleteNode(targetNode.get().id());
+        var targetIds = new ArrayList<String>();
+        for (var targetName : targetNames) {
+            if (".".equals(targetName) || "..".equals(targetName)) {
+                return CommandResult.failure("rm: refusing to remove '.' or '..'");
+            }
+            var targetNode = resolve(session, targetName);
+            if (targetNode.isEmpty()) {
+                return CommandResult.failure("File not found: " + targetName);
+            }
+            if (targetNode.get().parentId() == null) {
+                return CommandResult.failure("rm: cannot remove root directory");
+            }
+            if (targetNode.get().type() == FileType.DIRECTORY && !recursive) {
+                return CommandResult.failure("rm: " + targetName + ": Is a directory (use -r)");
+            }
+            targetIds.add(targetNode.get().id());
         }
 
+        this.fileSystemService.deleteNodes(targetIds);
         return CommandResult.success("");
     }
 
-    CommandResult printWorkingDirectory() {
-        var path = this.fileSystemService.buildPath(this.currentDirectory);
+    CommandResult printWorkingDirectory(TerminalSession session) {
+        var path = this.fileSystemService.buildPath(session.currentDirectory());
         return CommandResult.success(path);
     }
 
     /**
      * Resolves a path string to a node id.
-     * Supports relative paths from current directory.
+     * Supports relative and absolute paths as well as node ids.
      */
-    String resolvePathToId(String path) {
-        if ("..".equals(path)) {
-            var currentNode = this.fileSystemService.findById(this.currentDirectory);
-            return currentNode.map(FileNode::parentId).orElse(null);
-        }
-        
-        var byName = this.fileSystemService.findByNameInParent(this.currentDirectory, path);
-        if (byName.isPresent()) {
-            return byName.get().id();
+    String resolvePathToId(TerminalSession session, String path) {
+        return resolve(session, path).map(FileNode::id).orElse(null);
+    }
+
+    /**
+     * Looks up a node by path relative to the current directory, falling back to its id.
+     */
+    Optional<FileNode> resolve(TerminalSession session, String path) {
+        var byPath = this.fileSystemService.resolvePath(session.currentDirectory(), path);
+        if (byPath.isPresent()) {
+            return byPath;
         }
-        
-        var byId = this.fileSystemService.findById(path);
-        return byId.map(FileNode::id).orElse(null);
+        return this.fileSystemService.findById(path);
     }
 
     CommandResult systemInfo() {
@@ -247,89 +807,64 @@ public class CommandService {
         return CommandResult.success(info);
     }
 
+    CommandResult currentUser(TerminalSession session) {
+        return CommandResult.success(session.variable("USER").orElse("Visitor"));
+    }
+
+    CommandResult printEnvironment(TerminalSession session) {
+        var output = session.environment().entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(entry -> entry.getKey() + "=" + entry.getValue())
+            .collect(Collectors.joining("\n"));
+        return CommandResult.success(output);
+    }
+
     /**
-     * Handles echo command with redirection.
-     * Supports: echo "content" > file (overwrite)
-     *           echo "content" >> file (append)
-     *           echo content (output to terminal)
+     * Lists the retained history, optionally only the last n entries; -c clears it.
      */
-    CommandResult echo(String input) {
-        var afterEcho = input.length() > 4 ? input.substring(5).trim() : "";
-        
-        if (afterEcho.isEmpty()) {
+    CommandResult showHistory(TerminalSession session, String[] parts) {
+        var history = session.history();
+        if (parts.length > 1 && "-c".equals(parts[1])) {
+            history.clear();
             return CommandResult.success("");
         }
-        
-        if (afterEcho.contains(">>")) {
-            return handleAppend(afterEcho);
-        } else if (afterEcho.contains(">")) {
-            return handleOverwrite(afterEcho);
-        }
-        
-        return CommandResult.success(extractContent(afterEcho));
+        var limit = parts.length > 1 ? (int) TextOperators.parseCount(parts[1]) : Integer.MAX_VALUE;
+        var output = history.entries(limit).stream()
+            .map(HistoryEntry::toString)
+            .collect(Collectors.joining("\n"));
+        return CommandResult.success(output);
     }
 
-    CommandResult handleOverwrite(String input) {
-        var redirectIndex = input.indexOf(">");
-        if (redirectIndex < 0) {
-            return CommandResult.failure("Invalid redirection syntax");
-        }
-        
-        var contentPart = input.substring(0, redirectIndex).trim();
-        var filename = input.substring(redirectIndex + 1).trim();
-        
-        if (filename.isEmpty()) {
-            return CommandResult.failure("No filename specified");
-        }
-        
-        var content = extractContent(contentPart);
-        this.fileSystemService.saveFile(this.currentDirectory, filename, content);
-        return CommandResult.success("");
+    /**
+     * Reverse incremental search through the session's history, see {@link CommandHistory#search}.
+     */
+    public Optional<HistoryEntry> searchHistory(String sessionId, String query, long before) {
+        return this.sessions.session(sessionId).history().search(query, before);
     }
 
-    CommandResult handleAppend(String input) {
-        var redirectIndex = input.indexOf(">>");
-        if (redirectIndex < 0) {
-            return CommandResult.failure("Invalid redirection syntax");
-        }
-        
-        var contentPart = input.substring(0, redirectIndex).trim();
-        var filename = input.substring(redirectIndex + 2).trim();
-        
-        if (filename.isEmpty()) {
-            return CommandResult.failure("No filename specified");
-        }
-        
-        var content = extractContent(contentPart);
-        var existing = this.fileSystemService.findByNameInParent(this.currentDirectory, filename);
-        var newContent = existing
-            .map(f -> f.content() != null ? f.content() + "\n" + content : content)
-            .orElse(content);
-        
-        this.fileSystemService.saveFile(this.currentDirectory, filename, newContent);
-        return CommandResult.success("");
+    public List<HistoryEntry> history(String sessionId) {
+        return this.sessions.session(sessionId).history().entries(Integer.MAX_VALUE);
     }
 
-    String extractContent(String quoted) {
-        if (quoted == null || quoted.isEmpty()) {
-            return "";
-        }
-        if (quoted.startsWith("\"") && quoted.endsWith("\"") && quoted.length() >= 2) {
-            return quoted.substring(1, quoted.length() - 1);
+    CommandResult exportVariable(TerminalSession session, String[] parts) {
+        if (parts.length < 2 || !parts[1].contains("=")) {
+            return CommandResult.failure("Usage: export NAME=value");
         }
-        if (quoted.startsWith("'") && quoted.endsWith("'") && quoted.length() >= 2) {
-            return quoted.substring(1, quoted.length() - 1);
+
+        var assignment = parts[1];
+        var separator = assignment.indexOf('=');
+        var name = assignment.substring(0, separator);
+        if (name.isEmpty()) {
+            return CommandResult.failure("export: invalid variable name");
         }
-        return quoted;
-    }
 
-    CommandResult currentUser() {
-        return CommandResult.success("Visitor");
+        session.export(name, assignment.substring(separator + 1));
+        return CommandResult.success("");
     }
 
-    CommandResult javaCommand(String[] parts) {
+    CommandResult javaCommand(TerminalSession session, String[] parts) {
         if (parts.length < 2) {
-            return CommandResult.failure("Usage: java --version");
+            return CommandResult.failure("Usage: java --version | java <File.java|Class> [args...]");
         }
 
         return switch (parts[1]) {
@@ -342,52 +877,180 @@ public class CommandService {
                     );
                 yield CommandResult.success(version);
             }
-            default -> CommandResult.failure("Unknown java option: " + parts[1]);
+            default -> parts[1].startsWith("-")
+                ? CommandResult.failure("Unknown java option: " + parts[1])
+                : launch(session, parts[1], List.of(parts).subList(2, parts.length));
         };
     }
 
     /**
-     * Returns current terminal context as JSON.
+     * Usage: java File.java [args...] compiles the Java files of the file's directory and runs it,
+     * like the source launcher; java Class [args...] runs a class of the current directory's Java files.
+     * Either way only the files changed since the last build are compiled again.
+     */
+    CommandResult launch(TerminalSession session, String target, List<String> arguments) {
+        try {
+            if (target.endsWith(".java")) {
+                var file = resolve(session, target).filter(node -> node.type() == FileType.FILE);
+                if (file.isEmpty()) {
+                    return CommandResult.failure("java: file not found: " + target);
+                }
+                var compilation = this.javacService.compile(file.get().parentId(), javaFiles(file.get().parentId()));
+                if (!compilation.success()) {
+                    return CommandResult.failure(String.join("\n", compilation.diagnostics()));
+                }
+                return this.javacService.mainClass(compilation, file.get())
+                    .map(mainClass -> run(session, compilation, mainClass, arguments))
+                    .orElseGet(() -> CommandResult.failure("error: no class declared in source file"));
+            }
+            var directory = session.currentDirectory();
+            var compilation = this.javacService.compile(directory, javaFiles(directory));
+            if (!compilation.success()) {
+                return CommandResult.failure(String.join("\n", compilation.diagnostics()));
+            }
+            return this.javacService.mainClass(compilation, target)
+                .map(mainClass -> run(session, compilation, mainClass, arguments))
+                .orElseGet(() -> CommandResult.failure("Error: Could not find or load main class " + target));
+        } catch (IllegalStateException e) {
+            return CommandResult.failure("java: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the class, taking turns in the scheduler with other visitors by terminal session.
+     */
+    CommandResult run(TerminalSession session, Compilation compilation, String mainClass, List<String> arguments) {
+        var result = this.javacService.run("terminal:" + session.id(), compilation, mainClass, arguments);
+        return result.success() ? CommandResult.success(result.output()) : CommandResult.failure(result.output());
+    }
+
+    /**
+     * Usage: javac [File.java...]
+     * Compiles the given files, or all Java files below the current directory, in memory.
+     * Files unchanged since the last build of the directory are not compiled again; like javac,
+     * only diagnostics are printed.
+     */
+    CommandResult javacCommand(TerminalSession session, String[] parts) {
+        var directory = session.currentDirectory();
+        var sources = new ArrayList<FileNode>();
+        if (parts.length == 1) {
+            sources.addAll(javaFiles(directory));
+        }
+        for (var name : List.of(parts).subList(1, parts.length)) {
+            if (!name.endsWith(".java")) {
+                return CommandResult.failure("javac: invalid flag: " + name);
+            }
+            var file = resolve(session, name).filter(node -> node.type() == FileType.FILE);
+            if (file.isEmpty()) {
+                return CommandResult.failure("javac: file not found: " + name);
+            }
+            sources.add(file.get());
+        }
+        if (sources.isEmpty()) {
+            return CommandResult.failure("javac: no source files");
+        }
+
+        try {
+            var compilation = this.javacService.compile(directory, sources);
+            var diagnostics = String.join("\n", compilation.diagnostics());
+            return compilation.success() ? CommandResult.success(diagnostics) : CommandResult.failure(diagnostics);
+        } catch (IllegalStateException e) {
+            return CommandResult.failure("javac: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The Java files of the directory's subtree, in name order so diagnostics come out stable.
+     */
+    List<FileNode> javaFiles(String directoryId) {
+        var directory = this.fileSystemService.findById(directoryId);
+        if (directory.isEmpty()) {
+            return List.of();
+        }
+        try (var files = FileTreeWalk.parallel(this.fileSystemService, directory.get(), ".",
+                (node, path) -> node.type() == FileType.FILE && node.name().endsWith(".java") ? Stream.of(node) : Stream.<FileNode>empty())) {
+            return files.sorted(Comparator.comparing(FileNode::name)).toList();
+        }
+    }
+
+    /**
+     * Returns the terminal context of the given session as JSON.
      * Includes current directory path and name.
      */
-    public JsonObject getContext() {
-        var path = this.fileSystemService.buildPath(this.currentDirectory);
-        var currentNode = this.fileSystemService.findById(this.currentDirectory);
+    public JsonObject context(String sessionId) {
+        var session = this.sessions.session(sessionId);
+        var path = this.fileSystemService.buildPath(session.currentDirectory());
+        var currentNode = this.fileSystemService.findById(session.currentDirectory());
         var dirName = currentNode.map(FileNode::name).orElse("desktop");
         
         return Json.createObjectBuilder()
-            .add("currentDirectory", this.currentDirectory)
+            .add("sessionId", session.id())
+            .add("currentDirectory", session.currentDirectory())
             .add("currentPath", path)
             .add("currentDirName", dirName)
+            .add("lastExitStatus", session.lastExitStatus())
             .build();
     }
 
     /**
      * Returns autocomplete suggestions for the given input.
-     * Completes commands and file/directory names.
+     * Completes commands, flags and (nested) paths relative to the session's directory,
+     * ranking what the session used most recently first.
      */
-    public List<String> autocomplete(String input) {
+    public List<String> autocomplete(String sessionId, String input) {
         if (input == null || input.isBlank()) {
             return COMMANDS;
         }
 
+        var session = this.sessions.session(sessionId);
         var parts = input.trim().split("\\s+");
-        
-        // Complete command name if only one word
+
         if (parts.length == 1 && !input.endsWith(" ")) {
-            var prefix = parts[0].toLowerCase();
-            return COMMANDS.stream()
-                .filter(cmd -> cmd.startsWith(prefix))
-                .toList();
+            return ranked(session, COMMAND_NAMES.withPrefix(parts[0]));
         }
 
-        // Complete file/directory names for second argument
-        var prefix = parts.length > 1 ? parts[parts.length - 1] : "";
-        var nodes = this.fileSystemService.findByParentId(this.currentDirectory);
-        
-        return nodes.stream()
-            .map(FileNode::name)
-            .filter(name -> name.toLowerCase().startsWith(prefix.toLowerCase()))
+        var prefix = input.endsWith(" ") ? "" : parts[parts.length - 1];
+        if (prefix.startsWith("-")) {
+            return ranked(session, completeFlag(parts[0], prefix));
+        }
+        return ranked(session, completePath(session, prefix));
+    }
+
+    List<String> completeFlag(String command, String prefix) {
+        return FLAGS.getOrDefault(command, List.of()).stream()
+            .filter(flag -> flag.startsWith(prefix))
+            .toList();
+    }
+
+    /**
+     * Completes the last path segment within the directory named by the preceding segments.
+     */
+    List<String> completePath(TerminalSession session, String prefix) {
+        return this.fileSystemService.read(() -> completeIn(session, prefix));
+    }
+
+    List<String> completeIn(TerminalSession session, String prefix) {
+        var separator = prefix.lastIndexOf('/');
+        var directoryPath = prefix.substring(0, separator + 1);
+        var namePrefix = prefix.substring(separator + 1);
+        var directory = directoryPath.isEmpty()
+            ? this.fileSystemService.findById(session.currentDirectory())
+            : this.fileSystemService.resolvePath(session.currentDirectory(), directoryPath);
+
+        return directory
+            .map(node -> this.fileSystemService.completeName(node.id(), namePrefix))
+            .orElse(List.of())
+            .stream()
+            .map(name -> directoryPath + name)
+            .toList();
+    }
+
+    /**
+     * Stable sort: candidates used recently come first, the rest keep alphabetical order.
+     */
+    List<String> ranked(TerminalSession session, List<String> candidates) {
+        return candidates.stream()
+            .sorted(Comparator.comparingLong(session::lastUse).reversed())
             .toList();
     }
 }
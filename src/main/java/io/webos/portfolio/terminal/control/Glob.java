@@ -0,0 +1,79 @@
+package io.webos.portfolio.terminal.control;
+
+import java.util.regex.Pattern;
+
+/**
+ * Translates shell wildcards into regular expressions, so a glob is compiled once
+ * and then matched against any number of names.
+ * Supports *, ?, character classes like [a-z] or [!0-9], and ** spanning directories.
+ */
+public interface Glob {
+
+    static boolean isGlob(String text) {
+        return text.indexOf('*') >= 0 || text.indexOf('?') >= 0 || text.indexOf('[') >= 0;
+    }
+
+    /**
+     * The text as a glob matching only itself: each wildcard becomes a class of that one character.
+     */
+    static String quote(String text) {
+        return text.replaceAll("[*?\\[]", "[$0]");
+    }
+
+    static Pattern compile(String glob) {
+        var regex = new StringBuilder();
+        var i = 0;
+        while (i < glob.length()) {
+            var c = glob.charAt(i);
+            if (c == '*' && glob.startsWith("**", i)) {
+                regex.append(".*");
+                i += 2;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else if (c == '[' && glob.indexOf(']', i + 1) > i + 1) {
+                i = characterClass(glob, i, regex);
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                i++;
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Translates a bracket expression, the shell negation [!...] into [^...], with every other
+     * character escaped, so no glob can inject regex syntax. A class with a reversed range like
+     * [z-a] is not a class: like shells, its '[' then stands for itself.
+     */
+    static int characterClass(String glob, int start, StringBuilder regex) {
+        var end = glob.indexOf(']', start + 1);
+        var body = glob.substring(start + 1, end);
+        var negated = body.startsWith("!") || body.startsWith("^");
+        var members = negated ? body.substring(1) : body;
+        if (members.isEmpty() || !validRanges(members)) {
+            regex.append(Pattern.quote("["));
+            return start + 1;
+        }
+        regex.append(negated ? "[^" : "[");
+        for (var i = 0; i < members.length(); i++) {
+            var c = members.charAt(i);
+            var range = c == '-' && i > 0 && i < members.length() - 1;
+            regex.append(range || Character.isLetterOrDigit(c) ? String.valueOf(c) : "\\" + c);
+        }
+        regex.append(']');
+        return end + 1;
+    }
+
+    static boolean validRanges(String members) {
+        for (var i = 1; i < members.length() - 1; i++) {
+            if (members.charAt(i) == '-' && members.charAt(i - 1) > members.charAt(i + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
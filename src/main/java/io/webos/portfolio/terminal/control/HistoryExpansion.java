@@ -0,0 +1,85 @@
+package io.webos.portfolio.terminal.control;
+
+import io.webos.portfolio.terminal.entity.CommandHistory;
+
+import java.util.Optional;
+
+/**
+ * Replaces the history designators !!, !n and !-n with the recorded command lines.
+ * Runs before parsing, like bash history expansion; single quotes and a backslash
+ * protect an exclamation mark, as does a following blank. Double quotes do not, but a
+ * single quote inside them is an ordinary character.
+ */
+public interface HistoryExpansion {
+
+    static String expand(String input, CommandHistory history) {
+        if (input.indexOf('!') < 0) {
+            return input;
+        }
+        var expanded = new StringBuilder(input.length());
+        var singleQuoted = false;
+        var doubleQuoted = false;
+        var i = 0;
+        while (i < input.length()) {
+            var c = input.charAt(i);
+            if (c == '\'' && !doubleQuoted) {
+                singleQuoted = !singleQuoted;
+            } else if (c == '"' && !singleQuoted) {
+                doubleQuoted = !doubleQuoted;
+            } else if (c == '\\' && !singleQuoted && i + 1 < input.length()) {
+                expanded.append(c).append(input.charAt(i + 1));
+                i += 2;
+                continue;
+            } else if (c == '!' && !singleQuoted) {
+                var end = designatorEnd(input, i + 1);
+                if (end > i + 1) {
+                    expanded.append(event(input.substring(i + 1, end), history));
+                    i = end;
+                    continue;
+                }
+            }
+            expanded.append(c);
+            i++;
+        }
+        return expanded.toString();
+    }
+
+    /**
+     * Returns the position after the designator following an exclamation mark,
+     * or the start position if none follows.
+     */
+    static int designatorEnd(String input, int start) {
+        if (start >= input.length()) {
+            return start;
+        }
+        if (input.charAt(start) == '!') {
+            return start + 1;
+        }
+        var end = input.charAt(start) == '-' ? start + 1 : start;
+        var digits = end;
+        while (end < input.length() && Character.isDigit(input.charAt(end))) {
+            end++;
+        }
+        return end > digits ? end : start;
+    }
+
+    static String event(String designator, CommandHistory history) {
+        var event = switch (designator) {
+            case "!" -> history.last();
+            default -> number(designator)
+                .flatMap(number -> history.entry(number < 0 ? history.lastNumber() + number + 1 : number));
+        };
+        return event.orElseThrow(() -> new CommandFailedException("!" + designator + ": event not found"));
+    }
+
+    /**
+     * The event number, empty if it does not fit a long and so names no event.
+     */
+    static Optional<Long> number(String designator) {
+        try {
+            return Optional.of(Long.parseLong(designator));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
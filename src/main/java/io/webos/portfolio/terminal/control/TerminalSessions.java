@@ -0,0 +1,83 @@
+package io.webos.portfolio.terminal.control;
+
+import io.webos.portfolio.terminal.entity.TerminalSession;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of terminal sessions keyed by the client-provided session id.
+ * Idle sessions are evicted lazily while looking up sessions, so no
+ * background scheduler is required. Session ids are chosen by clients, so at most
+ * maxSessions are kept: creating one more evicts the least recently used.
+ */
+public class TerminalSessions {
+
+    static final String DEFAULT_SESSION_ID = "default";
+    static final Duration IDLE_TIMEOUT = Duration.ofMinutes(30);
+    static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+    static final int MAX_SESSIONS = 1000;
+
+    int maxSessions = MAX_SESSIONS;
+
+    ConcurrentHashMap<String, TerminalSession> sessions = new ConcurrentHashMap<>();
+    AtomicLong nextSweepMillis = new AtomicLong();
+
+    /**
+     * Returns the session for the given id, creating it on first use.
+     * Requests without a session id share the default session.
+     */
+    public TerminalSession session(String sessionId) {
+        evictIdleSessions();
+        var effectiveId = sessionId == null || sessionId.isBlank() ? DEFAULT_SESSION_ID : sessionId;
+        var session = this.sessions.get(effectiveId);
+        if (session == null) {
+            session = create(effectiveId);
+        }
+        session.touch();
+        return session;
+    }
+
+    synchronized TerminalSession create(String sessionId) {
+        var existing = this.sessions.get(sessionId);
+        if (existing != null) {
+            return existing;
+        }
+        while (this.sessions.size() >= this.maxSessions) {
+            evictLeastRecentlyUsed();
+        }
+        var session = new TerminalSession(sessionId);
+        this.sessions.put(sessionId, session);
+        return session;
+    }
+
+    void evictLeastRecentlyUsed() {
+        this.sessions.values().stream()
+            .min(Comparator.comparingLong(TerminalSession::lastAccessMillis))
+            .ifPresent(this::evict);
+    }
+
+    void evict(TerminalSession session) {
+        if (this.sessions.remove(session.id(), session)) {
+            session.killJobs();
+        }
+    }
+
+    public int size() {
+        return this.sessions.size();
+    }
+
+    void evictIdleSessions() {
+        var now = System.currentTimeMillis();
+        var nextSweep = this.nextSweepMillis.get();
+        if (now < nextSweep || !this.nextSweepMillis.compareAndSet(nextSweep, now + SWEEP_INTERVAL.toMillis())) {
+            return;
+        }
+        var cutoff = now - IDLE_TIMEOUT.toMillis();
+        this.sessions.values().stream()
+            .filter(session -> session.idleSince(cutoff))
+            .forEach(this::evict);
+    }
+}
@@ -0,0 +1,237 @@
+package io.webos.portfolio.terminal.control;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Line-oriented text filters for terminal pipelines.
+ * Each operator consumes records lazily from its input, so short-circuiting stages
+ * such as head stop pulling records from upstream as soon as they are satisfied.
+ * File operands replace the piped input, mirroring their Unix counterparts.
+ */
+public interface TextOperators {
+
+    int DEFAULT_LINE_COUNT = 10;
+    Pattern NUMERIC_PREFIX = Pattern.compile("^\\s*-?\\d+(\\.\\d+)?");
+
+    static Stream<String> grep(List<String> arguments, Stream<String> input, Function<String, Stream<String>> files) {
+        var operands = operands(arguments);
+        if (operands.isEmpty()) {
+            throw new CommandFailedException("Usage: grep [-r] [-i] [-v] [-n] [-l] <pattern> [file...]");
+        }
+        var matches = matcher(arguments, operands.getFirst());
+        var source = source(operands.subList(1, operands.size()), input, files);
+        return matchingLines(arguments, source, matches);
+    }
+
+    /**
+     * Compiles the grep pattern once, honouring -i (ignore case) and -v (invert).
+     */
+    static Predicate<String> matcher(List<String> arguments, String regex) {
+        var pattern = compile(regex, hasFlag(arguments, 'i'));
+        Predicate<String> matches = pattern.asPredicate();
+        return hasFlag(arguments, 'v') ? matches.negate() : matches;
+    }
+
+    /**
+     * Filters the lines, prefixing them with their line number when -n is given.
+     */
+    static Stream<String> matchingLines(List<String> arguments, Stream<String> lines, Predicate<String> matches) {
+        if (!hasFlag(arguments, 'n')) {
+            return lines.filter(matches);
+        }
+        var lineNumber = new AtomicLong();
+        return lines
+            .map(line -> new NumberedLine(lineNumber.incrementAndGet(), line))
+            .filter(line -> matches.test(line.text()))
+            .map(NumberedLine::toString);
+    }
+
+    static Stream<String> head(List<String> arguments, Stream<String> input, Function<String, Stream<String>> files) {
+        var count = lineCount(arguments);
+        return source(countOperands(arguments), input, files).limit(count);
+    }
+
+    /**
+     * Keeps only a ring of the last n records, so memory stays bounded by n
+     * regardless of the input size.
+     */
+    static Stream<String> tail(List<String> arguments, Stream<String> input, Function<String, Stream<String>> files) {
+        var count = lineCount(arguments);
+        var source = source(countOperands(arguments), input, files);
+        return Stream.of(source).flatMap(records -> lastRecords(records, count));
+    }
+
+    static Stream<String> lastRecords(Stream<String> records, long count) {
+        var last = new ArrayDeque<String>();
+        for (var iterator = records.iterator(); iterator.hasNext(); ) {
+            last.addLast(iterator.next());
+            if (last.size() > count) {
+                last.removeFirst();
+            }
+        }
+        return last.stream();
+    }
+
+    static Stream<String> wc(List<String> arguments, Stream<String> input, Function<String, Stream<String>> files) {
+        var source = source(operands(arguments), input, files);
+        var lines = hasFlag(arguments, 'l');
+        var words = hasFlag(arguments, 'w');
+        var characters = hasFlag(arguments, 'c');
+        var all = !lines && !words && !characters;
+        return Stream.of(source)
+            .map(records -> records.map(WordCount::of).reduce(WordCount.ZERO, WordCount::plus))
+            .map(count -> count.format(all || lines, all || words, all || characters));
+    }
+
+    static Stream<String> sort(List<String> arguments, Stream<String> input, Function<String, Stream<String>> files) {
+        var source = source(operands(arguments), input, files);
+        Comparator<String> order = hasFlag(arguments, 'n')
+            ? Comparator.comparingDouble(TextOperators::numericPrefix)
+            : Comparator.naturalOrder();
+        if (hasFlag(arguments, 'r')) {
+            order = order.reversed();
+        }
+        return source.sorted(order);
+    }
+
+    static Stream<String> uniq(List<String> arguments, Stream<String> input, Function<String, Stream<String>> files) {
+        var source = source(operands(arguments), input, files);
+        return source.filter(new AdjacentDistinct());
+    }
+
+    static Pattern compile(String regex, boolean ignoreCase) {
+        try {
+            return Pattern.compile(regex, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        } catch (PatternSyntaxException e) {
+            throw new CommandFailedException("grep: invalid pattern: " + regex);
+        }
+    }
+
+    static Stream<String> source(List<String> operands, Stream<String> input, Function<String, Stream<String>> files) {
+        if (operands.isEmpty()) {
+            return input;
+        }
+        return operands.stream().flatMap(files);
+    }
+
+    static boolean isOption(String argument) {
+        return argument.length() > 1 && argument.startsWith("-");
+    }
+
+    static boolean hasFlag(List<String> arguments, char flag) {
+        return arguments.stream()
+            .filter(TextOperators::isOption)
+            .anyMatch(argument -> argument.indexOf(flag, 1) > 0);
+    }
+
+    static List<String> operands(List<String> arguments) {
+        return arguments.stream()
+            .filter(argument -> !isOption(argument))
+            .toList();
+    }
+
+    /**
+     * Operands of head and tail, skipping the value following -n.
+     */
+    static List<String> countOperands(List<String> arguments) {
+        var countIndex = arguments.indexOf("-n") + 1;
+        return IntStream.range(0, arguments.size())
+            .filter(index -> countIndex == 0 || index != countIndex)
+            .mapToObj(arguments::get)
+            .filter(argument -> !isOption(argument))
+            .toList();
+    }
+
+    /**
+     * Accepts both -n N and the traditional -N form.
+     */
+    static long lineCount(List<String> arguments) {
+        var index = arguments.indexOf("-n");
+        if (index >= 0 && index + 1 < arguments.size()) {
+            return parseCount(arguments.get(index + 1));
+        }
+        return arguments.stream()
+            .filter(argument -> argument.matches("-\\d+"))
+            .map(argument -> parseCount(argument.substring(1)))
+            .findFirst()
+            .orElse((long) DEFAULT_LINE_COUNT);
+    }
+
+    static long parseCount(String value) {
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            throw new CommandFailedException("invalid line count: " + value);
+        }
+    }
+
+    static double numericPrefix(String line) {
+        var matcher = NUMERIC_PREFIX.matcher(line);
+        return matcher.find() ? Double.parseDouble(matcher.group().trim()) : 0;
+    }
+
+    record NumberedLine(long number, String text) {
+
+        @Override
+        public String toString() {
+            return this.number + ":" + this.text;
+        }
+    }
+
+    record WordCount(long lines, long words, long characters) {
+
+        static final WordCount ZERO = new WordCount(0, 0, 0);
+
+        static WordCount of(String line) {
+            var words = line.isBlank() ? 0 : line.trim().split("\\s+").length;
+            return new WordCount(1, words, line.length() + 1);
+        }
+
+        WordCount plus(WordCount other) {
+            return new WordCount(
+                this.lines + other.lines,
+                this.words + other.words,
+                this.characters + other.characters);
+        }
+
+        String format(boolean withLines, boolean withWords, boolean withCharacters) {
+            var columns = new StringJoiner(" ");
+            if (withLines) {
+                columns.add(String.valueOf(this.lines));
+            }
+            if (withWords) {
+                columns.add(String.valueOf(this.words));
+            }
+            if (withCharacters) {
+                columns.add(String.valueOf(this.characters));
+            }
+            return columns.toString();
+        }
+    }
+
+    /**
+     * Stateful filter dropping records equal to their predecessor, which is what
+     * uniq does without buffering the whole input.
+     */
+    class AdjacentDistinct implements Predicate<String> {
+
+        String previous;
+
+        @Override
+        public boolean test(String record) {
+            var distinct = !record.equals(this.previous);
+            this.previous = record;
+            return distinct;
+        }
+    }
+}
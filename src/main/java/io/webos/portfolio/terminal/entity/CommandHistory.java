@@ -0,0 +1,136 @@
+package io.webos.portfolio.terminal.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bounded command history of one terminal session.
+ * Commands live in a fixed ring, so the oldest entries are overwritten once it is full
+ * while event numbers keep increasing, as in bash.
+ * Reverse search is incremental: while the user extends the query keystroke by keystroke,
+ * only the previous hits are re-checked, compacted in place in a preallocated array.
+ */
+public class CommandHistory {
+
+    String[] commands;
+    long count;
+
+    long[] hits;
+    int hitCount;
+    String searchQuery;
+    long searchCount = -1;
+
+    public CommandHistory(int capacity) {
+        this.commands = new String[capacity];
+        this.hits = new long[capacity];
+    }
+
+    public synchronized void add(String command) {
+        this.commands[index(this.count)] = command;
+        this.count++;
+    }
+
+    public synchronized void clear() {
+        this.count = 0;
+        this.searchQuery = null;
+        Arrays.fill(this.commands, null);
+    }
+
+    /**
+     * Returns the command with the given event number, if it is still retained.
+     */
+    public synchronized Optional<String> entry(long number) {
+        if (number < oldest() || number > this.count) {
+            return Optional.empty();
+        }
+        return Optional.of(this.commands[index(number - 1)]);
+    }
+
+    /**
+     * Event number of the most recent command, 0 if none was recorded.
+     */
+    public synchronized long lastNumber() {
+        return this.count;
+    }
+
+    public synchronized Optional<String> last() {
+        return entry(this.count);
+    }
+
+    /**
+     * Returns the last limit retained entries, oldest first.
+     */
+    public synchronized List<HistoryEntry> entries(int limit) {
+        var first = Math.max(oldest(), this.count - limit + 1);
+        var entries = new ArrayList<HistoryEntry>();
+        for (var number = first; number <= this.count; number++) {
+            entries.add(new HistoryEntry(number, this.commands[index(number - 1)]));
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the most recent command containing the query with an event number below before,
+     * like Ctrl-R in readline. Passing the number of the previous match continues the search backwards.
+     */
+    public synchronized Optional<HistoryEntry> search(String query, long before) {
+        if (query.isEmpty()) {
+            return Optional.empty();
+        }
+        if (refines(query)) {
+            narrowHits(query);
+        } else {
+            scanHits(query);
+        }
+        this.searchQuery = query;
+        this.searchCount = this.count;
+
+        for (var i = 0; i < this.hitCount; i++) {
+            if (this.hits[i] < before) {
+                var number = this.hits[i];
+                return Optional.of(new HistoryEntry(number, this.commands[index(number - 1)]));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The previous hits are a superset of the new ones as long as the query only grew
+     * and no command was added in between.
+     */
+    boolean refines(String query) {
+        return this.searchQuery != null
+            && this.searchCount == this.count
+            && query.contains(this.searchQuery);
+    }
+
+    void scanHits(String query) {
+        this.hitCount = 0;
+        for (var number = this.count; number >= oldest(); number--) {
+            if (this.commands[index(number - 1)].contains(query)) {
+                this.hits[this.hitCount++] = number;
+            }
+        }
+    }
+
+    void narrowHits(String query) {
+        var kept = 0;
+        for (var i = 0; i < this.hitCount; i++) {
+            var number = this.hits[i];
+            if (this.commands[index(number - 1)].contains(query)) {
+                this.hits[kept++] = number;
+            }
+        }
+        this.hitCount = kept;
+    }
+
+    long oldest() {
+        return Math.max(1, this.count - this.commands.length + 1);
+    }
+
+    int index(long position) {
+        return (int) (position % this.commands.length);
+    }
+}
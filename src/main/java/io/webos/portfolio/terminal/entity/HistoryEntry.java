@@ -0,0 +1,22 @@
+package io.webos.portfolio.terminal.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+/**
+ * A command line as recorded in the history, with its event number for !n.
+ */
+public record HistoryEntry(long number, String command) {
+
+    public JsonObject toJSON() {
+        return Json.createObjectBuilder()
+            .add("number", this.number)
+            .add("command", this.command)
+            .build();
+    }
+
+    @Override
+    public String toString() {
+        return "%5d  %s".formatted(this.number, this.command);
+    }
+}
@@ -0,0 +1,132 @@
+package io.webos.portfolio.terminal.entity;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * A command started with &amp; that runs on its own virtual thread.
+ * Output is kept in a bounded buffer: once OUTPUT_LIMIT characters are exceeded,
+ * the oldest chunks are dropped, so a chatty job cannot exhaust the heap.
+ */
+public class Job {
+
+    public enum State {
+        RUNNING, DONE, FAILED, KILLED
+    }
+
+    static final int OUTPUT_LIMIT = 64 * 1024;
+
+    int number;
+    String command;
+    volatile State state = State.RUNNING;
+    volatile Thread thread;
+    ArrayDeque<String> output = new ArrayDeque<>();
+    int bufferedCharacters;
+    long droppedCharacters;
+    CompletableFuture<CommandResult> result = new CompletableFuture<>();
+
+    public Job(int number, String command) {
+        this.number = number;
+        this.command = command;
+    }
+
+    public int number() {
+        return this.number;
+    }
+
+    public String command() {
+        return this.command;
+    }
+
+    public State state() {
+        return this.state;
+    }
+
+    public boolean finished() {
+        return this.state != State.RUNNING;
+    }
+
+    /**
+     * Runs the work on the calling thread and records its outcome, unless the job was killed first.
+     */
+    public void run(Supplier<CommandResult> work) {
+        this.thread = Thread.currentThread();
+        if (this.state == State.KILLED) {
+            return;
+        }
+        try {
+            complete(work.get());
+        } catch (RuntimeException e) {
+            complete(CommandResult.failure(e.getMessage()));
+        }
+    }
+
+    void complete(CommandResult outcome) {
+        synchronized (this) {
+            if (this.state == State.KILLED) {
+                return;
+            }
+            this.state = outcome.success() ? State.DONE : State.FAILED;
+        }
+        this.result.complete(outcome);
+    }
+
+    /**
+     * Appends output; throws once the job is killed, which ends the job's pipeline.
+     */
+    public synchronized void append(String chunk) {
+        if (this.state == State.KILLED) {
+            throw new CancellationException("Killed");
+        }
+        this.output.addLast(chunk);
+        this.bufferedCharacters += chunk.length();
+        while (this.bufferedCharacters > OUTPUT_LIMIT && this.output.size() > 1) {
+            var dropped = this.output.removeFirst();
+            this.bufferedCharacters -= dropped.length();
+            this.droppedCharacters += dropped.length();
+        }
+    }
+
+    /**
+     * Returns the buffered output without a trailing newline, noting dropped output.
+     */
+    public synchronized String output() {
+        var text = new StringBuilder();
+        if (this.droppedCharacters > 0) {
+            text.append("[").append(this.droppedCharacters).append(" characters of earlier output dropped]\n");
+        }
+        this.output.forEach(text::append);
+        if (!text.isEmpty() && text.charAt(text.length() - 1) == '\n') {
+            text.setLength(text.length() - 1);
+        }
+        return text.toString();
+    }
+
+    public void kill() {
+        synchronized (this) {
+            if (finished()) {
+                return;
+            }
+            this.state = State.KILLED;
+        }
+        var running = this.thread;
+        if (running != null) {
+            running.interrupt();
+        }
+        this.result.complete(CommandResult.failure("Killed"));
+    }
+
+    /**
+     * Blocks until the job has finished and returns its result.
+     */
+    public CommandResult await() throws InterruptedException {
+        try {
+            return this.result.get();
+        } catch (ExecutionException e) {
+            return CommandResult.failure(e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.webos.portfolio.terminal.entity;
+
+import java.util.List;
+
+/**
+ * Commands connected with pipes, optionally reading their input from a file
+ * and writing (or appending) their output to a file.
+ */
+public record Pipeline(List<Stage> stages, String inputFile, String outputFile, boolean append) {
+
+    public Pipeline {
+        stages = List.copyOf(stages);
+    }
+
+    public boolean redirectsInput() {
+        return this.inputFile != null;
+    }
+
+    public boolean redirectsOutput() {
+        return this.outputFile != null;
+    }
+}
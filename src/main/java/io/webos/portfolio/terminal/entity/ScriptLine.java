@@ -0,0 +1,22 @@
+package io.webos.portfolio.terminal.entity;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+/**
+ * Result of one line of a terminal script, numbered as in the submitted script.
+ */
+public record ScriptLine(int line, String command, CommandResult result) {
+
+    public int exitStatus() {
+        return this.result.success() ? 0 : 1;
+    }
+
+    public JsonObject toJSON() {
+        return Json.createObjectBuilder(this.result.toJSON())
+            .add("line", this.line)
+            .add("command", this.command)
+            .add("exitStatus", exitStatus())
+            .build();
+    }
+}
@@ -0,0 +1,13 @@
+package io.webos.portfolio.terminal.entity;
+
+import java.util.List;
+
+/**
+ * A single command of a pipeline with its already unquoted and expanded arguments.
+ */
+public record Stage(String command, List<String> arguments) {
+
+    public Stage {
+        arguments = List.copyOf(arguments);
+    }
+}
@@ -0,0 +1,160 @@
+package io.webos.portfolio.terminal.entity;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of a single visitor's terminal: working directory, environment variables,
+ * command history, background jobs and the exit status of the last command.
+ * Sessions are isolated from each other, so concurrent visitors never observe
+ * another visitor's cd.
+ */
+public class TerminalSession {
+
+    public static final String HOME_DIRECTORY = "desktop";
+    static final int RECENT_USE_CAPACITY = 256;
+    static final int HISTORY_CAPACITY = 500;
+    static final int JOB_LIMIT = 16;
+
+    String id;
+    volatile String currentDirectory;
+    volatile int lastExitStatus;
+    volatile long lastAccessMillis;
+    Map<String, String> environment = new ConcurrentHashMap<>(Map.of(
+        "USER", "Visitor",
+        "HOME", "/Desktop",
+        "SHELL", "/bin/webos-sh"
+    ));
+    CommandHistory history = new CommandHistory(HISTORY_CAPACITY);
+    ConcurrentSkipListMap<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+    AtomicLong useClock = new AtomicLong();
+    Map<String, Long> recentUse = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > RECENT_USE_CAPACITY;
+        }
+    });
+
+    public TerminalSession(String id) {
+        this.id = id;
+        this.currentDirectory = HOME_DIRECTORY;
+        this.lastAccessMillis = System.currentTimeMillis();
+    }
+
+    public String id() {
+        return this.id;
+    }
+
+    public String currentDirectory() {
+        return this.currentDirectory;
+    }
+
+    public void changeDirectory(String directoryId) {
+        this.currentDirectory = directoryId;
+    }
+
+    public Map<String, String> environment() {
+        return Map.copyOf(this.environment);
+    }
+
+    public Optional<String> variable(String name) {
+        return Optional.ofNullable(this.environment.get(name));
+    }
+
+    public void export(String name, String value) {
+        this.environment.put(name, value);
+    }
+
+    public int lastExitStatus() {
+        return this.lastExitStatus;
+    }
+
+    public void recordExitStatus(int status) {
+        this.lastExitStatus = status;
+    }
+
+    /**
+     * Remembers that a command or name was just used; only the most recent ones are kept.
+     * Case is ignored, matching the case-insensitive completion.
+     */
+    public void recordUse(String word) {
+        this.recentUse.put(word.toLowerCase(Locale.ROOT), this.useClock.incrementAndGet());
+    }
+
+    /**
+     * Returns a logical timestamp of the last use, 0 if never used (or forgotten).
+     */
+    public long lastUse(String word) {
+        return this.recentUse.getOrDefault(word.toLowerCase(Locale.ROOT), 0L);
+    }
+
+    public CommandHistory history() {
+        return this.history;
+    }
+
+    /**
+     * Registers a background job under the lowest free number above all current jobs, as bash does.
+     * Returns nothing if the session already runs JOB_LIMIT jobs.
+     */
+    public synchronized Optional<Job> addJob(String command) {
+        var running = this.jobs.values().stream()
+            .filter(job -> !job.finished())
+            .count();
+        if (running >= JOB_LIMIT) {
+            return Optional.empty();
+        }
+        var number = this.jobs.isEmpty() ? 1 : this.jobs.lastKey() + 1;
+        var job = new Job(number, command);
+        this.jobs.put(number, job);
+        return Optional.of(job);
+    }
+
+    public Optional<Job> job(int number) {
+        return Optional.ofNullable(this.jobs.get(number));
+    }
+
+    /**
+     * The most recently started job, which fg and wait default to.
+     */
+    public Optional<Job> currentJob() {
+        return Optional.ofNullable(this.jobs.lastEntry()).map(Map.Entry::getValue);
+    }
+
+    public List<Job> jobs() {
+        return List.copyOf(this.jobs.values());
+    }
+
+    public void removeJob(Job job) {
+        this.jobs.remove(job.number(), job);
+    }
+
+    /**
+     * Kills all jobs, e.g. when the session is evicted.
+     */
+    public void killJobs() {
+        this.jobs.values().forEach(Job::kill);
+        this.jobs.clear();
+    }
+
+    public long lastAccessMillis() {
+        return this.lastAccessMillis;
+    }
+
+    public void touch() {
+        this.lastAccessMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * A session is idle when it has not been used since the given instant.
+     */
+    public boolean idleSince(long cutoffMillis) {
+        return this.lastAccessMillis < cutoffMillis;
+    }
+}
@@ -3,5 +3,7 @@
  * 
  * Supports basic file operations (ls, cat), system info commands (uname, whoami),
  * and developer commands (java --version) using Java 25 pattern matching.
+ * Commands compose into pipelines whose records are streamed lazily between stages,
+ * so filters like head stop reading as soon as they have enough output.
  */
 package io.webos.portfolio.terminal;
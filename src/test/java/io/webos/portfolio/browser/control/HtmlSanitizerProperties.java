@@ -0,0 +1,136 @@
+package io.webos.portfolio.browser.control;
+
+import net.jqwik.api.*;
+import net.jqwik.api.constraints.Size;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests comparing the streaming sanitizer with the document pipeline it replaced, by the documents
+ * a browser builds from their output: the same elements with the same attributes, the same text
+ * and comments, the custom styles once, and nothing that was to be dropped.
+ */
+class HtmlSanitizerProperties {
+
+    static final String STYLES = "body { margin: 0; }";
+
+    @Property(tries = 100)
+    void pagesAreSanitizedLikeTheDocumentPipeline(@ForAll("pages") String page) {
+        assertSameDocument(page);
+    }
+
+    /**
+     * However markup fragments are strung together, no script, iframe, object or embed SHALL come
+     * out, and the custom styles SHALL come out once.
+     */
+    @Property
+    void nothingDroppedComesOut(@ForAll @Size(max = 12) List<@From("fragments") String> fragments) {
+        var document = Jsoup.parse(sanitize(String.join("", fragments)));
+
+        assertThat(document.select("script, iframe, object, embed")).isEmpty();
+        assertThat(document.select("style")).hasSize(1);
+    }
+
+    /**
+     * An object left open SHALL be dropped up to the end of the element around it, not to the end
+     * of the page, unlike the document pipeline, which treats it as a scope the end tag cannot reach.
+     */
+    @Example
+    void anObjectLeftOpenEndsWithTheElementAroundIt() {
+        assertThat(sanitize("<div><object data=/x><p>hidden</div><p>shown</p>"))
+            .contains("<div></div><p>shown</p>");
+        assertThat(sanitize("<ul><li><object><param name=a><div>hidden</li><li>next</li></ul>"))
+            .contains("<ul><li></li><li>next</li></ul>");
+        assertThat(sanitize("<object><object>x</object>y</object>z<object><b>hidden</b>"))
+            .isEqualTo("z<style type=\"text/css\">" + STYLES + "</style>");
+    }
+
+    @Provide
+    Arbitrary<String> pages() {
+        return Arbitraries.oneOf(Arbitraries.integers().between(0, 120).map(SanitizerBenchmark::page), Arbitraries.of(
+            "<p>a</p><script>alert(1)</script ><p>b</p>",
+            "<p>a</p><SCRIPT>if (a</scripty) alert(1)</SCRIPT\t>b",
+            "<script>x</script/><p>after</p>",
+            "<p>a</p><script>never closed</script",
+            "<iframe src=/x><p>not markup</p></iframe>c",
+            "<object><object>x</object>y</object>z",
+            "<DIV\nCLASS = \"a\"\tID='b'>x</DiV><a\fhref=/x>y</A>",
+            "<p>a<!-->b<!--->c<!-- d --!>e<!-- f --> g</p>",
+            "<p>a<!-- <script>alert(1)</script> -->b</p>",
+            "<a href=\"/a?b=1&amp;c=2\" title=\"&lt;b&gt; &#x41; &#66; &notanentity; &amp\">x</a>",
+            "<img src='logo.png' alt=\"&quot;quoted&quot; &eacute;\">",
+            "<html><head><title>t</title></head><body><p>x</p></body></html>",
+            "<html><body><p>no head</p></body></html>",
+            "<p>neither head nor body</p>",
+            "<head><title>t</title></head><p>no body</p>",
+            "<p>a</p><a href=\"/x",
+            "<p>a</p><img src=/y alt",
+            "<svg><![CDATA[a > b]]></svg><p>after</p>",
+            "<p>1 < 2 > 0 & more</p><?xml version=\"1.0\"?>",
+            "<form action=search><input name=q></form><embed src=/e>"));
+    }
+
+    @Provide
+    Arbitrary<String> fragments() {
+        return Arbitraries.of(
+            "<script>", "</script", "</script>", "<SCRIPT >", "<iframe>", "</iframe>", "<object>", "</object>",
+            "<embed src=x>", "<div>", "</div>", "<p>", "text", "<!--", "-->", "--!>", "<!-->", "<![CDATA[",
+            "]]>", "<svg>", "</svg>", "<", ">", "&amp;", "\"", "'", "<a href=\"", "<a href='/x'>", "</a>",
+            "<head>", "</head>", "<body>", "<?pi", "</ >", "</>");
+    }
+
+    static void assertSameDocument(String page) {
+        var streamed = Jsoup.parse(sanitize(page));
+        var document = Jsoup.parse(SanitizerBenchmark.document(page, STYLES));
+
+        assertThat(elements(streamed)).isEqualTo(elements(document));
+        assertThat(streamed.body().text()).isEqualTo(document.body().text());
+        assertThat(comments(streamed)).isEqualTo(comments(document));
+        assertThat(streamed.select("style").eachAttr("type")).containsExactly("text/css");
+        assertThat(streamed.select("script, iframe, object, embed")).isEmpty();
+    }
+
+    static String sanitize(String page) {
+        var html = new StringWriter();
+        try {
+            new HtmlSanitizer(new StringReader(page), html, SanitizerBenchmark.URL, STYLES).sanitize();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return html.toString();
+    }
+
+    /**
+     * Each element but the injected styles as its name and attributes, in document order.
+     */
+    static List<String> elements(Document document) {
+        return document.getAllElements().stream()
+            .filter(element -> !element.tagName().equals("style"))
+            .map(element -> element.tagName() + element.attributes().html())
+            .toList();
+    }
+
+    /**
+     * The comments, with the angle brackets the sanitizer escaped in them read back.
+     */
+    static List<String> comments(Document document) {
+        var comments = new ArrayList<String>();
+        NodeTraversor.traverse((NodeVisitor) (node, depth) -> {
+            if (node instanceof Comment comment) {
+                comments.add(comment.getData().replace("&lt;", "<").replace("&gt;", ">").strip());
+            }
+        }, document);
+        return comments;
+    }
+}
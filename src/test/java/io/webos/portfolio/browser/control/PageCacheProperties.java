@@ -0,0 +1,98 @@
+package io.webos.portfolio.browser.control;
+
+import net.jqwik.api.*;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for how long the page cache keeps pages fresh, and what it does with no-store and 304 responses.
+ */
+class PageCacheProperties {
+
+    static final long NOW = 1_700_000_000_000L;
+    static final String DATE = "Tue, 14 Nov 2023 22:13:20 GMT";
+
+    @Example
+    void freshnessComesFromMaxAgeElseExpiresElseLastModified() {
+        var cache = createCache();
+
+        assertThat(freshFor(cache, "Cache-Control", "max-age=60", "Age", "15")).isEqualTo(45_000);
+        assertThat(freshFor(cache, "Cache-Control", "max-age=60", "Age", "soon")).isEqualTo(60_000);
+        assertThat(freshFor(cache, "Cache-Control", "no-cache, max-age=60")).isZero();
+        assertThat(freshFor(cache, "Date", DATE, "Expires", "Tue, 14 Nov 2023 22:15:20 GMT")).isEqualTo(120_000);
+        assertThat(freshFor(cache, "Date", DATE, "Expires", "0")).isZero();
+        assertThat(freshFor(cache, "Date", DATE, "Last-Modified", "Tue, 14 Nov 2023 22:03:20 GMT")).isEqualTo(60_000);
+        assertThat(freshFor(cache, "Date", DATE, "Last-Modified", "Tue, 14 Nov 2023 22:12:20 GMT")).isEqualTo(6_000);
+        assertThat(freshFor(cache)).isEqualTo(60_000);
+    }
+
+    /**
+     * For any ages upstream sends, however large or malformed, a page SHALL be fresh no earlier
+     * than now and servable stale no earlier than it stops being fresh.
+     */
+    @Property
+    void anyAgeGivesAnOrderedLifetime(@ForAll("ages") String maxAge, @ForAll("ages") String staleWhileRevalidate,
+                                      @ForAll("ages") String age) {
+        var page = createCache().page("<p>", headers("Cache-Control",
+            "max-age=" + maxAge + ", stale-while-revalidate=" + staleWhileRevalidate, "Age", age), NOW, null);
+
+        assertThat(page.freshUntilMillis()).isBetween(NOW, NOW + (1L << 31) * 1000);
+        assertThat(page.staleUntilMillis()).isGreaterThanOrEqualTo(page.freshUntilMillis());
+    }
+
+    /**
+     * A no-store response SHALL drop the cached page; a 304 SHALL renew it, keeping its html and
+     * the validators the response does not replace.
+     */
+    @Example
+    void noStoreDropsThePageAndA304RenewsIt() {
+        var cache = createCache();
+        cache.store("https://a", "<p>a</p>", headers("Cache-Control", "max-age=60", "ETag", "\"v1\""), NOW);
+        cache.store("https://b", "<p>b</p>", headers("Cache-Control", "max-age=60"), NOW);
+
+        cache.store("https://b", "<p>b</p>", headers("Cache-Control", "no-store"), NOW);
+        var cached = cache.get("https://a").orElseThrow();
+        var renewed = cache.revalidated("https://a", cached, headers("Cache-Control", "max-age=120"), NOW + 90_000);
+
+        assertThat(cache.get("https://b")).isEmpty();
+        assertThat(cached.fresh(NOW + 90_000)).isFalse();
+        assertThat(renewed.html()).isEqualTo("<p>a</p>");
+        assertThat(renewed.etag()).isEqualTo("\"v1\"");
+        assertThat(renewed.freshUntilMillis()).isEqualTo(NOW + 210_000);
+        assertThat(cache.get("https://a")).contains(renewed);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Provide
+    Arbitrary<String> ages() {
+        return Arbitraries.oneOf(
+            Arbitraries.longs().map(String::valueOf),
+            Arbitraries.strings().numeric().ofMinLength(1).ofMaxLength(40),
+            Arbitraries.of("", "soon", "1.5", "\"30\"", "-0"));
+    }
+
+    static long freshFor(PageCache cache, String... headers) {
+        return cache.page("<p>", headers(headers), NOW, null).freshUntilMillis() - NOW;
+    }
+
+    static HttpHeaders headers(String... namesAndValues) {
+        var headers = new LinkedHashMap<String, List<String>>();
+        for (var i = 0; i < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], List.of(namesAndValues[i + 1]));
+        }
+        return HttpHeaders.of(headers, (name, value) -> true);
+    }
+
+    static PageCache createCache() {
+        var cache = new PageCache();
+        cache.maxBytes = 1 << 20;
+        cache.heuristicTtl = Duration.ofMinutes(1);
+        cache.staleWhileRevalidate = Duration.ofMinutes(10);
+        return cache;
+    }
+}
@@ -0,0 +1,92 @@
+package io.webos.portfolio.browser.control;
+
+import org.jsoup.Jsoup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Compares the streaming sanitizer with the document pipeline it replaced, by time and by bytes
+ * allocated per page, both starting from the bytes of the response as upstream sends them.
+ * Not a test: run its main method, optionally with the number of measured rounds and the number
+ * of repositories on the generated page.
+ */
+class SanitizerBenchmark {
+
+    static final String URL = "https://github.com/octocat";
+    static final int WARM_UP_ROUNDS = 20;
+
+    public static void main(String... args) {
+        var rounds = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        var page = page(args.length > 1 ? Integer.parseInt(args[1]) : 2000).getBytes(StandardCharsets.UTF_8);
+        var service = new BrowserService();
+        System.err.printf("page of %d KiB%n", page.length / 1024);
+        measure("document", body -> document(new String(body, StandardCharsets.UTF_8), service.config.customStyles()),
+            page, rounds);
+        measure("stream", body -> service.sanitize(new InputStreamReader(new ByteArrayInputStream(body),
+            StandardCharsets.UTF_8), URL), page, rounds);
+    }
+
+    static void measure(String pipeline, Function<byte[], String> sanitize, byte[] page, int rounds) {
+        for (var round = 0; round < WARM_UP_ROUNDS; round++) {
+            sanitize.apply(page);
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var thread = Thread.currentThread().getId();
+        var latencies = new long[rounds];
+        var allocated = 0L;
+        for (var round = 0; round < rounds; round++) {
+            var bytes = threads.getThreadAllocatedBytes(thread);
+            var started = System.nanoTime();
+            sanitize.apply(page);
+            latencies[round] = System.nanoTime() - started;
+            allocated += threads.getThreadAllocatedBytes(thread) - bytes;
+        }
+        Arrays.sort(latencies);
+        System.err.printf("%-8s per page p50 %7.2f ms, p90 %7.2f ms | allocated %7.2f MiB%n",
+            pipeline, millis(latencies, 0.5), millis(latencies, 0.9), allocated / (double) rounds / (1 << 20));
+    }
+
+    /**
+     * The pipeline before the streaming sanitizer: a full document, four selections, serialized again.
+     */
+    static String document(String rawHtml, String styles) {
+        var document = Jsoup.parse(rawHtml);
+        document.select("script, iframe, object, embed").remove();
+        document.setBaseUri(URL);
+        document.select("[src]").forEach(element -> element.attr("src", element.absUrl("src")));
+        document.select("[href]").forEach(element -> element.attr("href", element.absUrl("href")));
+        document.select("[action]").forEach(element -> element.attr("action", element.absUrl("action")));
+        document.head().appendElement("style").attr("type", "text/css").text(styles);
+        return document.html();
+    }
+
+    /**
+     * A profile-like page with a list of repositories, scripts and relative links.
+     */
+    static String page(int repositories) {
+        var page = new StringBuilder("""
+            <!DOCTYPE html>
+            <html lang="en"><head><meta charset="utf-8"><title>octocat</title>
+            <link rel="stylesheet" href="/assets/site.css"><script src="/assets/app.js"></script>
+            </head><body><header><a href="/"><img src="/logo.svg" alt="logo"></a>
+            <form action="/search"><input name="q"></form></header><main><ul>
+            """);
+        for (var i = 0; i < repositories; i++) {
+            page.append("<li class=\"repo\"><a href=\"/octocat/repo-").append(i).append("\">repo-").append(i)
+                .append("</a> <span title=\"stars &amp; forks\">").append(i * 7).append(" &#9733;</span>")
+                .append("<!-- stats --><p>A repository with <em>things</em> in it &lt;").append(i).append("&gt;</p>")
+                .append(i % 50 == 0 ? "<script>track(" + i + ")</script><iframe src=\"/embed\"></iframe>" : "")
+                .append("</li>\n");
+        }
+        return page.append("</ul></main></body></html>\n").toString();
+    }
+
+    static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1_000_000.0;
+    }
+}
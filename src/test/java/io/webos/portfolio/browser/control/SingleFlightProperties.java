@@ -0,0 +1,141 @@
+package io.webos.portfolio.browser.control;
+
+import net.jqwik.api.Example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for coalescing concurrent fetches of the same page into one.
+ */
+class SingleFlightProperties {
+
+    static final int CALLERS = 4;
+
+    /**
+     * Concurrent callers for the same key SHALL share one run of the work and its result.
+     */
+    @Example
+    void concurrentCallersShareOneRun() throws Exception {
+        var executor = Executors.newCachedThreadPool();
+        try {
+            var flight = new SingleFlight<String>(executor);
+            var runs = new AtomicInteger();
+            var release = new CountDownLatch(1);
+
+            var callers = call(executor, CALLERS, () -> flight.run("page", () -> {
+                runs.incrementAndGet();
+                await(release);
+                return "html";
+            }));
+            awaitWaiters(flight, "page", CALLERS);
+            release.countDown();
+
+            for (var caller : callers) {
+                assertThat(caller.get(5, TimeUnit.SECONDS)).isEqualTo("html");
+            }
+            assertThat(runs).hasValue(1);
+            assertThat(flight.size()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Every caller SHALL get the failure of the run it joined, and the next call SHALL run the work again.
+     */
+    @Example
+    void aFailureIsSharedAndNotKept() throws Exception {
+        var executor = Executors.newCachedThreadPool();
+        try {
+            var flight = new SingleFlight<String>(executor);
+            var runs = new AtomicInteger();
+            var release = new CountDownLatch(1);
+
+            var callers = call(executor, CALLERS, () -> flight.run("page", () -> {
+                runs.incrementAndGet();
+                await(release);
+                throw new BadGatewayException("upstream down");
+            }));
+            awaitWaiters(flight, "page", CALLERS);
+            release.countDown();
+
+            for (var caller : callers) {
+                assertThatThrownBy(() -> caller.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(BadGatewayException.class);
+            }
+            assertThat(flight.run("page", () -> "html")).isEqualTo("html");
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The work SHALL go on while a caller still waits for it, and be cancelled when the last one stops.
+     */
+    @Example
+    void theWorkIsCancelledWhenTheLastCallerStopsWaiting() throws Exception {
+        var executor = Executors.newCachedThreadPool();
+        try {
+            var flight = new SingleFlight<String>(executor);
+            var cancelled = new CountDownLatch(1);
+
+            var callers = call(executor, 2, () -> flight.run("page", () -> {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    cancelled.countDown();
+                }
+                return "html";
+            }));
+            awaitWaiters(flight, "page", 2);
+
+            callers.get(0).cancel(true);
+            assertThat(cancelled.await(200, TimeUnit.MILLISECONDS)).isFalse();
+            assertThat(flight.size()).isEqualTo(1);
+
+            callers.get(1).cancel(true);
+            assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(flight.size()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static <T> List<Future<T>> call(ExecutorService executor, int callers, Callable<T> call) {
+        var futures = new ArrayList<Future<T>>();
+        for (var i = 0; i < callers; i++) {
+            futures.add(executor.submit(call));
+        }
+        return futures;
+    }
+
+    static void awaitWaiters(SingleFlight<?> flight, String key, int waiters) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.flights.get(key) == null || flight.flights.get(key).waiters.get() < waiters) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
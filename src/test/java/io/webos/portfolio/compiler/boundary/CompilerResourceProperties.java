@@ -0,0 +1,114 @@
+package io.webos.portfolio.compiler.boundary;
+
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.net.SocketAddress;
+import io.webos.portfolio.compiler.control.JShellService;
+import io.webos.portfolio.compiler.control.TooManyRequestsException;
+import io.webos.portfolio.compiler.entity.ExecutionEvent;
+import jakarta.json.Json;
+import jakarta.json.JsonValue;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import net.jqwik.api.*;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for validating compiler requests and answering them.
+ */
+class CompilerResourceProperties {
+
+    List<String> sinkCalls = new CopyOnWriteArrayList<>();
+
+    @Example
+    void aRejectedStreamIsAnsweredWithItsStatusNotAnEmptyStream() {
+        var request = Json.createObjectBuilder().add("code", "1 + 1").add("sessionId", "duke").build();
+
+        var rejecting = createResource(events -> {
+            throw new TooManyRequestsException(2);
+        });
+        assertThatThrownBy(() -> rejecting.executeStreaming(request, sink(), sse(), null))
+            .isInstanceOfSatisfying(TooManyRequestsException.class,
+                e -> assertThat(e.getResponse().getStatus()).isEqualTo(429));
+        assertThat(this.sinkCalls).isEmpty();
+
+        var streaming = createResource(events -> events.accept(ExecutionEvent.done("completed", "", 1)));
+        streaming.executeStreaming(request, sink(), sse(), null);
+        assertThat(this.sinkCalls).containsExactly("send done", "close");
+    }
+
+    @Example
+    void cursorsThatAreNoOffsetWithinTheCodeAreBadRequests() {
+        var code = "Math.";
+        var invalid = List.of(Json.createValue("3"), Json.createValue(2.5), Json.createValue(-1),
+            Json.createValue(6), Json.createValue(Long.MAX_VALUE), JsonValue.TRUE, JsonValue.EMPTY_JSON_ARRAY);
+
+        for (var cursor : invalid) {
+            var request = Json.createObjectBuilder().add("code", code).add("cursor", cursor).build();
+            assertThatThrownBy(() -> CompilerResource.cursor(request, code)).isInstanceOf(BadRequestException.class);
+        }
+        assertThat(CompilerResource.cursor(Json.createObjectBuilder().add("cursor", 2).build(), code)).isEqualTo(2);
+        assertThat(CompilerResource.cursor(Json.createObjectBuilder().addNull("cursor").build(), code)).isEqualTo(5);
+        assertThat(CompilerResource.cursor(JsonValue.EMPTY_JSON_OBJECT, code)).isEqualTo(5);
+    }
+
+    /**
+     * Executions outside a session SHALL take turns in the scheduler by the client's address.
+     */
+    @Example
+    void clientsAreKeyedByTheirAddress() {
+        assertThat(CompilerResource.client(request("10.0.0.1"))).isEqualTo("client:10.0.0.1");
+        assertThat(CompilerResource.client(request("10.0.0.2"))).isNotEqualTo(CompilerResource.client(request("10.0.0.1")));
+        assertThat(CompilerResource.client(null)).isEqualTo("client:");
+    }
+
+    static HttpServerRequest request(String address) {
+        return (HttpServerRequest) Proxy.newProxyInstance(CompilerResourceProperties.class.getClassLoader(),
+            new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> SocketAddress.inetSocketAddress(80, address));
+    }
+
+    CompilerResource createResource(Consumer<Consumer<ExecutionEvent>> execution) {
+        var resource = new CompilerResource();
+        resource.jshellService = new JShellService() {
+            @Override
+            public void stream(String client, String sessionId, String code, Consumer<ExecutionEvent> events) {
+                execution.accept(events);
+            }
+        };
+        return resource;
+    }
+
+    /**
+     * A sink recording what is sent to it and whether it is closed, standing in for the container's.
+     */
+    SseEventSink sink() {
+        return (SseEventSink) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SseEventSink.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "send" -> {
+                    this.sinkCalls.add("send " + ((OutboundSseEvent) args[0]).getName());
+                    yield CompletableFuture.completedFuture(null);
+                }
+                case "close" -> this.sinkCalls.add("close");
+                default -> false;
+            });
+    }
+
+    Sse sse() {
+        return (Sse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Sse.class},
+            (proxy, method, args) -> event((String) args[0]));
+    }
+
+    static OutboundSseEvent event(String name) {
+        return (OutboundSseEvent) Proxy.newProxyInstance(CompilerResourceProperties.class.getClassLoader(),
+            new Class<?>[]{OutboundSseEvent.class}, (proxy, method, args) -> name);
+    }
+}
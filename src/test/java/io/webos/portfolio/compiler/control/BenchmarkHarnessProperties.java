@@ -0,0 +1,59 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.BenchmarkStatistics;
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import io.webos.portfolio.compiler.entity.Limit;
+import net.jqwik.api.*;
+import net.jqwik.api.constraints.LongRange;
+import net.jqwik.api.constraints.Size;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for the statistics of measured benchmark iterations.
+ */
+class BenchmarkHarnessProperties {
+
+    @Example
+    void statisticsAreInNanosecondsPerOperation() {
+        var statistics = BenchmarkStatistics.of(10, new long[]{500, 100, 400, 200, 300});
+
+        assertThat(statistics.iterations()).isEqualTo(5);
+        assertThat(statistics.mean()).isEqualTo(30);
+        assertThat(statistics.stdDev()).isCloseTo(Math.sqrt(250), within(1e-9));
+        assertThat(statistics.error()).isCloseTo(2.776 * Math.sqrt(250) / Math.sqrt(5), within(1e-9));
+        assertThat(List.of(statistics.min(), statistics.p50(), statistics.p90(), statistics.p99(), statistics.max()))
+            .containsExactly(10.0, 30.0, 50.0, 50.0, 50.0);
+    }
+
+    /**
+     * For any iteration times, the percentiles SHALL be ordered between the fastest and the slowest
+     * iteration, with the mean among them.
+     */
+    @Property
+    void percentilesLieBetweenTheFastestAndTheSlowestIteration(
+            @ForAll @LongRange(min = 1, max = 1L << 20) long ops,
+            @ForAll @Size(min = 1, max = 50) List<@LongRange(min = 0, max = 1L << 40) Long> nanos) {
+        var statistics = BenchmarkStatistics.of(ops, nanos.stream().mapToLong(Long::longValue).toArray());
+
+        assertThat(List.of(statistics.min(), statistics.p50(), statistics.p90(), statistics.p99(), statistics.max()))
+            .isSorted();
+        assertThat(statistics.mean()).isBetween(statistics.min() * (1 - 1e-12), statistics.max() * (1 + 1e-12));
+        assertThat(statistics.error()).isGreaterThanOrEqualTo(0);
+        assertThat(statistics.iterations()).isEqualTo(nanos.size());
+    }
+
+    @Example
+    void iterationTimesAreTakenOutOfTheOutput() {
+        var measured = BenchmarkHarness.result(ExecutionResult.success("warming up\n@benchmark 4 40 80\n"));
+        var killed = BenchmarkHarness.result(ExecutionResult.limitExceeded(Limit.WALL_TIME, "Timeout Error"));
+
+        assertThat(measured.execution().output()).isEqualTo("warming up");
+        assertThat(measured.statistics().opsPerIteration()).isEqualTo(4);
+        assertThat(measured.statistics().mean()).isEqualTo(15);
+        assertThat(killed.statistics()).isNull();
+    }
+}
@@ -0,0 +1,60 @@
+package io.webos.portfolio.compiler.control;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Compares the latency of evaluating snippets on the remote and the local engine.
+ * Not a test: run its main method, optionally with the number of measured rounds.
+ */
+class EngineLatencyBenchmark {
+
+    static final String[] SNIPPETS = {
+        "1 + 1",
+        "var words = java.util.List.of(\"a\", \"b\", \"c\")",
+        "String.join(\"-\", words)",
+        "System.out.println(words.size())"
+    };
+    static final int WARM_UP_ROUNDS = 20;
+
+    public static void main(String... args) {
+        var rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        measure("remote", PooledShell::new, rounds);
+        measure("local", () -> new PooledShell(true), rounds);
+    }
+
+    static void measure(String engine, Supplier<PooledShell> start, int rounds) {
+        var started = System.nanoTime();
+        try (var shell = start.get()) {
+            var startMillis = (System.nanoTime() - started) / 1_000_000;
+            for (var round = 0; round < WARM_UP_ROUNDS; round++) {
+                evaluate(shell);
+            }
+            var latencies = new long[rounds];
+            for (var round = 0; round < rounds; round++) {
+                latencies[round] = evaluate(shell);
+            }
+            Arrays.sort(latencies);
+            System.err.printf("%-6s start %5d ms | per execution p50 %7.2f ms, p90 %7.2f ms, p99 %7.2f ms%n",
+                engine, startMillis, millis(latencies, 0.5), millis(latencies, 0.9), millis(latencies, 0.99));
+        }
+    }
+
+    /**
+     * Evaluates all snippets as one execution and resets the shell, as the engines do per request.
+     */
+    static long evaluate(PooledShell shell) {
+        var started = System.nanoTime();
+        for (var snippet : SNIPPETS) {
+            shell.eval(snippet);
+        }
+        shell.takeOutput();
+        var elapsed = System.nanoTime() - started;
+        shell.reset();
+        return elapsed;
+    }
+
+    static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1_000_000.0;
+    }
+}
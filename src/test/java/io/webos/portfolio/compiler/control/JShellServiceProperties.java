@@ -0,0 +1,153 @@
+package io.webos.portfolio.compiler.control;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.webos.portfolio.compiler.entity.BatchItem;
+import io.webos.portfolio.compiler.entity.ExecutionEvent;
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import io.webos.portfolio.compiler.entity.Limit;
+import net.jqwik.api.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for executing code under the scheduler and the execution limits.
+ */
+class JShellServiceProperties {
+
+    @Example
+    void aBatchFindingTheQueueFullIsRejectedBeforeItsFirstEvent() throws InterruptedException {
+        var service = new JShellService();
+        service.scheduler = createScheduler(1, 0);
+        var events = new ArrayList<ExecutionEvent>();
+
+        try (var busy = service.scheduler.admit("duke")) {
+            assertThatThrownBy(() -> service.batch("duke", List.of(new BatchItem("1", "1 + 1")), events::add))
+                .isInstanceOf(TooManyRequestsException.class);
+        }
+        assertThat(events).isEmpty();
+        assertThat(service.scheduler.running()).isZero();
+    }
+
+    /**
+     * An item failing in a way nobody anticipated SHALL still give a result, so the batch ends.
+     */
+    @Example
+    void anItemFailingUnexpectedlyStillEndsTheBatch() throws Exception {
+        var service = new JShellService();
+        service.scheduler = createScheduler(2, 4);
+        service.limits = createLimits(Duration.ofSeconds(3), Duration.ofSeconds(2), 65536);
+        service.cache = ResultCacheProperties.createCache(2);
+        service.engine = "remote";
+        service.pool = new JShellPool() {
+            @Override
+            public PooledShell borrow(Duration timeout) {
+                throw new UnsupportedOperationException("no shells here");
+            }
+        };
+        var events = new ArrayList<ExecutionEvent>();
+
+        var batch = CompletableFuture.runAsync(() -> service.batch("duke",
+            List.of(new BatchItem("1", "1 + 1"), new BatchItem("2", "2 + 2")), events::add));
+
+        assertThat(batch).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(events).extracting(ExecutionEvent::name).containsExactly("result", "result", "done");
+        assertThat(events.get(0).data()).contains("no shells here");
+        assertThat(service.scheduler.running()).isZero();
+    }
+
+    @Example
+    void timeLimitsKillTheShellOfASnippetThatKeepsRunning() {
+        var sleeping = evaluate(createLimits(Duration.ofMillis(500), Duration.ofSeconds(20), 65536), "Thread.sleep(60_000);");
+        var spinning = evaluate(createLimits(Duration.ofSeconds(20), Duration.ofMillis(500), 65536), "while (true) {}");
+
+        assertThat(sleeping.limit()).isEqualTo(Limit.WALL_TIME);
+        assertThat(sleeping.output()).startsWith("Timeout Error");
+        assertThat(spinning.limit()).isEqualTo(Limit.CPU_TIME);
+        assertThat(spinning.output()).startsWith("Limit Error");
+    }
+
+    @Example
+    void runningOutOfHeapIsTheMemoryLimit() {
+        var result = evaluate(createLimits(Duration.ofSeconds(20), Duration.ofSeconds(20), 65536), """
+            var hoard = new long[1000][];
+            for (var i = 0; i < hoard.length; i++) hoard[i] = new long[1_000_000];
+            """);
+
+        assertThat(result.limit()).isEqualTo(Limit.MEMORY);
+    }
+
+    @Example
+    void outputBeyondTheLimitEndsTheExecution() {
+        var result = evaluate(createLimits(Duration.ofSeconds(20), Duration.ofSeconds(20), 10_000),
+            "while (true) System.out.println(\"Duke\".repeat(100));");
+
+        assertThat(result.limit()).isEqualTo(Limit.OUTPUT);
+        assertThat(result.output()).contains("10000 bytes");
+    }
+
+    /**
+     * Each replayed snippet SHALL get the execution limits of its own, so a session whose snippets
+     * together take longer than the wall time is still restored.
+     */
+    @Example
+    void eachReplayedSnippetHasLimitsOfItsOwn() {
+        var service = new JShellService();
+        service.limits = createLimits(Duration.ofSeconds(1), Duration.ofSeconds(20), 65536);
+        var pooled = new PooledShell(service.limits.remoteVMOptions());
+        try {
+            var session = new ReplSession("a", pooled, 10);
+            session.restore = List.of(
+                "int nap(int i) { try { Thread.sleep(400); } catch (InterruptedException e) {} return i; }",
+                "var a = nap(1);", "var b = nap(2);", "var c = nap(3);");
+
+            service.restore(session);
+
+            assertThat(session.log).hasSize(4);
+            assertThat(service.evaluate(pooled, "a + b + c", snippet -> {}, () -> {}).output()).contains("6");
+        } finally {
+            pooled.close();
+        }
+    }
+
+    /**
+     * Evaluates on a fresh shell, whose JVM SHALL be gone once a limit was breached.
+     */
+    static ExecutionResult evaluate(ExecutionLimits limits, String code) {
+        var service = new JShellService();
+        service.limits = limits;
+        var pooled = new PooledShell(limits.remoteVMOptions());
+        try {
+            var result = service.evaluate(pooled, code, source -> {}, () -> {});
+            if (result.limit() != null && pooled.remote != null) {
+                assertThat(pooled.remote.onExit()).succeedsWithin(Duration.ofSeconds(5));
+            }
+            return result;
+        } finally {
+            pooled.close();
+        }
+    }
+
+    static ExecutionLimits createLimits(Duration wallTime, Duration cpuTime, long maxOutputBytes) {
+        var limits = new ExecutionLimits();
+        limits.wallTime = wallTime;
+        limits.cpuTime = cpuTime;
+        limits.maxHeap = "64m";
+        limits.maxOutputBytes = maxOutputBytes;
+        return limits;
+    }
+
+    static ExecutionScheduler createScheduler(int maxConcurrent, int maxQueued) {
+        var scheduler = new ExecutionScheduler();
+        scheduler.maxConcurrent = maxConcurrent;
+        scheduler.maxQueued = maxQueued;
+        scheduler.meter = OpenTelemetry.noop().getMeter("test");
+        scheduler.registerMetrics();
+        return scheduler;
+    }
+}
@@ -0,0 +1,79 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.filesystem.entity.FileNode;
+import io.webos.portfolio.filesystem.entity.FileType;
+import net.jqwik.api.Example;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the files an incremental build compiles again.
+ */
+class JavacServiceProperties {
+
+    static final FileNode A = source("A", "class A { int value() { return 1; } }");
+    static final FileNode B = source("B", "class B { int twice() { return 2 * new A().value(); } }");
+    static final FileNode C = source("C", "class C { public static void main(String... args) { } }");
+
+    @Example
+    void anUnchangedProjectReusesEveryFile() {
+        var service = createService();
+
+        var first = service.compile("project", List.of(A, B, C));
+        var second = service.compile("project", List.of(A, B, C));
+
+        assertThat(first.success()).isTrue();
+        assertThat(first.recompiled()).isEqualTo(3);
+        assertThat(second.recompiled()).isZero();
+        assertThat(second.reused()).isEqualTo(3);
+        assertThat(second.classes()).containsOnlyKeys("A", "B", "C");
+    }
+
+    /**
+     * A changed file SHALL be compiled together with the files mentioning its types, and no other.
+     */
+    @Example
+    void aChangedFileIsCompiledWithItsDependents() {
+        var service = createService();
+        service.compile("project", List.of(A, B, C));
+
+        var changed = service.compile("project",
+            List.of(source("A", "class A { int value() { return 2; } }"), B, C));
+
+        assertThat(changed.success()).isTrue();
+        assertThat(changed.recompiled()).isEqualTo(2);
+        assertThat(changed.reused()).isEqualTo(1);
+    }
+
+    /**
+     * Dependents of a removed file SHALL be checked against its absence, and a failed build
+     * SHALL leave the classes of the last successful one in place.
+     */
+    @Example
+    void theDependentsOfARemovedFileAreCheckedAgain() {
+        var service = createService();
+        service.compile("project", List.of(A, B, C));
+
+        var removed = service.compile("project", List.of(B, C));
+        var restored = service.compile("project", List.of(A, B, C));
+
+        assertThat(removed.success()).isFalse();
+        assertThat(removed.recompiled()).isEqualTo(1);
+        assertThat(removed.diagnostics()).anyMatch(message -> message.contains("B.java") && message.contains("error"));
+        assertThat(restored.success()).isTrue();
+        assertThat(restored.recompiled()).isZero();
+    }
+
+    static FileNode source(String type, String content) {
+        return new FileNode(type.toLowerCase(), "src", type + ".java", FileType.FILE, content);
+    }
+
+    static JavacService createService() {
+        var service = new JavacService();
+        service.maxProjects = 4;
+        service.cache = new ResultCache();
+        return service;
+    }
+}
@@ -0,0 +1,42 @@
+package io.webos.portfolio.compiler.control;
+
+import net.jqwik.api.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the code the local engine admits into the server's JVM.
+ */
+class LocalEngineProperties {
+
+    /**
+     * Code that could allocate beyond any heap the server can spare SHALL not be admitted, however it is spelled.
+     */
+    @Property
+    void hugeAllocationsAreNotAdmitted(@ForAll("huge") String code) {
+        assertThat(new LocalEngine().admits(code)).isFalse();
+    }
+
+    @Example
+    void smallStraightLineCodeIsAdmitted() {
+        var engine = new LocalEngine();
+
+        assertThat(engine.admits("var sum = java.util.stream.IntStream.rangeClosed(1, 100).sum(); sum")).isTrue();
+        assertThat(engine.admits("new int[1024].length + \"abc\".length()")).isTrue();
+    }
+
+    @Provide
+    Arbitrary<String> huge() {
+        return Arbitraries.of(
+            "new long[99999][99999]",
+            "new long[99999] [99999]",
+            "long[][] a = new long[99999][]",
+            "new byte[Integer.MAX_VALUE - 8]",
+            "new byte[Integer.\\u004dAX_VALUE - 8]",
+            "\"x\".repeat(Integer.MAX_VALUE)",
+            "\"x\".repeat(99999).repeat(99999)",
+            "java.util.Collections.nCopies(99999, 1).toArray()",
+            "new int[1_000_000]",
+            "new int[1 << 30]");
+    }
+}
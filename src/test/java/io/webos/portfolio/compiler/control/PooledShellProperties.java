@@ -0,0 +1,82 @@
+package io.webos.portfolio.compiler.control;
+
+import net.jqwik.api.*;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for reusing pooled shells between borrowers.
+ */
+class PooledShellProperties {
+
+    @Example
+    void globalStateSetByOneBorrowerIsNotSeenByTheNext() throws InterruptedException {
+        var pool = createPool();
+        var spellings = List.of(
+            "System.setProperty(\"webos.leak\", \"plain\");",
+            "\\u0053ystem.setProperty(\"webos.leak\", \"escaped\");",
+            "var props = java.lang.System.getProperties(); props.put(\"webos.leak\", \"aliased\");");
+
+        for (var code : spellings) {
+            var shell = pool.borrow(Duration.ofSeconds(10));
+            shell.inspect(code);
+            shell.eval(code);
+            pool.recycleOrReturn(shell);
+
+            var next = pool.borrow(Duration.ofSeconds(10));
+            assertThat(next.eval("System.getProperty(\"webos.leak\")").getFirst().value()).isEqualTo("null");
+            pool.recycleOrReturn(next);
+        }
+        pool.idle.forEach(PooledShell::close);
+    }
+
+    @Example
+    void confinedCodeKeepsTheShell() throws InterruptedException {
+        var pool = createPool();
+        var shell = pool.borrow(Duration.ofSeconds(10));
+        var code = "record Point(int x, int y) {} var points = List.of(new Point(1, 2)); System.out.println(points);";
+        shell.inspect(code);
+        shell.eval(code);
+        pool.recycleOrReturn(shell);
+
+        var next = pool.borrow(Duration.ofSeconds(10));
+        assertThat(next).isSameAs(shell);
+        assertThat(next.eval("points").getFirst().status().isDefined()).isFalse();
+        next.close();
+    }
+
+    @Example
+    void onlyCodeNamingConfinedTypesIsConfined() {
+        assertThat(List.of(
+            "int x = 1; x++;",
+            "Math.max(Integer.MAX_VALUE, 2)",
+            "System.out.println(\"Thread.sleep(1)\"); // System.exit(0)",
+            "enum Color { RED } Color.RED.name()",
+            "IntStream.range(0, 3).map(i -> i * 2).sum()"))
+            .allMatch(PooledShell::confined);
+        assertThat(List.of(
+            "Thread.setDefaultUncaughtExceptionHandler((t, e) -> {});",
+            "\\u0054hread.sleep(1);",
+            "Locale.setDefault(Locale.GERMAN);",
+            "System.out.printf(\"\").close();",
+            "var c = \"\".getClass();",
+            "String.class.getName()",
+            "class System {} java.lang.System.exit(0);",
+            "List.of(1).parallelStream().forEach(i -> {});",
+            "UUID.randomUUID()"))
+            .noneMatch(PooledShell::confined);
+    }
+
+    JShellPool createPool() {
+        var pool = new JShellPool();
+        pool.minIdle = 0;
+        pool.maxSize = 1;
+        pool.maxUses = 100;
+        pool.limits = new ExecutionLimits();
+        pool.limits.maxHeap = "64m";
+        return pool;
+    }
+}
@@ -0,0 +1,122 @@
+package io.webos.portfolio.compiler.control;
+
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import io.webos.portfolio.compiler.entity.SpilledSession;
+import jakarta.json.Json;
+import jdk.jshell.JShell;
+import net.jqwik.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the registry of JShell Studio sessions, on a pool lending no shells.
+ */
+class ReplSessionsProperties {
+
+    static final Duration TIMEOUT = Duration.ofSeconds(1);
+
+    @Example
+    void executingSessionsAreNotEvicted() throws Exception {
+        var sessions = createSessions(1);
+        var busy = sessions.session("a", TIMEOUT);
+        assertThat(busy.acquire()).isTrue();
+
+        assertThatThrownBy(() -> sessions.session("b", TIMEOUT)).isInstanceOf(TooManyRequestsException.class);
+        assertThat(sessions.sessions).containsOnlyKeys("a");
+
+        busy.release();
+        sessions.session("b", TIMEOUT);
+        assertThat(sessions.sessions).containsOnlyKeys("b");
+        assertThat(busy.closed).isTrue();
+    }
+
+    @Example
+    void aSpilledSessionReplaysTheSnippetsItAccepted() throws Exception {
+        var sessions = createSessions(1);
+        var session = sessions.session("a", TIMEOUT);
+        session.record("int x = 0;");
+        session.record("x = 5;");
+        session.record("x++;");
+
+        assertThat(sessions.spill(session)).isTrue();
+
+        assertThat(sessions.session("a", TIMEOUT).takeRestore()).containsExactly("int x = 0;", "x = 5;", "x++;");
+    }
+
+    /**
+     * A session whose log overflowed SHALL be restored from its declarations, and the execution
+     * restoring it SHALL report that values were lost, as SHALL one restored from a spill written
+     * before snippets were logged.
+     */
+    @Example
+    void aSessionWhoseLogOverflowedIsRestoredLossy() throws Exception {
+        var sessions = createSessions(1);
+        var session = sessions.session("a", TIMEOUT);
+        session.defer("int x = 0;");
+        IntStream.rangeClosed(1, 11).forEach(i -> session.record("x = " + i + ";"));
+
+        assertThat(sessions.spill(session)).isTrue();
+
+        var restored = sessions.session("a", TIMEOUT);
+        assertThat(restored.takeRestore()).containsExactly("int x = 0;");
+        assertThat(restored.takeLossy()).isTrue();
+        assertThat(restored.takeLossy()).isFalse();
+        assertThat(ExecutionResult.success("").asLossy().toJSON().getBoolean("lossy")).isTrue();
+        var legacy = Json.createObjectBuilder()
+            .add("id", "b")
+            .add("declarations", Json.createArrayBuilder().add("int y = 1;"))
+            .add("lastAccessMillis", 0)
+            .build();
+        assertThat(SpilledSession.fromJSON(legacy).lossy()).isTrue();
+    }
+
+    /**
+     * A spilled session SHALL replay its declarations and the values assigned to them, not what only
+     * read or printed them, and SHALL be restored lossy once a statement that may have changed values
+     * was left out.
+     */
+    @Example
+    void aSpilledSessionReplaysDeclarationsAndValues() throws Exception {
+        var sessions = createSessions(1);
+        var session = sessions.session("a", TIMEOUT);
+        try (var shell = JShell.builder().executionEngine("local").build()) {
+            Stream.of("int x = 0;", "x = 5;", "x", "x++;", "System.out.println(x);")
+                .flatMap(source -> shell.eval(source).stream())
+                .forEach(event -> session.record(event.snippet()));
+            assertThat(session.replayLossy()).isFalse();
+            shell.eval("for (var i = 0; i < 3; i++) x += i;").forEach(event -> session.record(event.snippet()));
+        }
+
+        assertThat(sessions.spill(session)).isTrue();
+
+        var restored = sessions.session("a", TIMEOUT);
+        assertThat(restored.takeRestore()).containsExactly("int x = 0;", "x = 5;", "x++;");
+        assertThat(restored.takeLossy()).isTrue();
+    }
+
+    ReplSessions createSessions(int maxSessions) throws IOException {
+        var sessions = new ReplSessions();
+        sessions.maxSessions = maxSessions;
+        sessions.maxLoggedSnippets = 10;
+        sessions.pool = new JShellPool() {
+            @Override
+            public PooledShell borrow(Duration timeout) {
+                return null;
+            }
+
+            @Override
+            public void release(PooledShell shell) {
+            }
+        };
+        sessions.spill = new SessionSpill();
+        sessions.spill.directory = Files.createTempDirectory("repl-spill");
+        return sessions;
+    }
+}
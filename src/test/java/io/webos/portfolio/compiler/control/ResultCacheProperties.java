@@ -0,0 +1,103 @@
+package io.webos.portfolio.compiler.control;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.webos.portfolio.compiler.entity.Engine;
+import io.webos.portfolio.compiler.entity.ExecutionResult;
+import net.jqwik.api.*;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for which executions the result cache admits, what it keys them by, and what it evicts.
+ */
+class ResultCacheProperties {
+
+    /**
+     * Code that might print something else on its next run SHALL not be cached, however it is spelled.
+     */
+    @Property
+    void nondeterministicCodeIsNotCached(@ForAll("nondeterministic") String code) {
+        assertThat(createCache(2).key(Engine.REMOTE, code)).isNull();
+    }
+
+    @Property
+    void deterministicCodeIsCached(@ForAll("deterministic") String code) {
+        assertThat(createCache(2).key(Engine.REMOTE, code)).isNotNull();
+    }
+
+    /**
+     * Runs on another engine or under other limits SHALL be cached apart, and the least recently
+     * used entry SHALL be evicted first.
+     */
+    @Example
+    void entriesAreKeyedByEngineAndLimitsAndEvictedLeastRecentlyUsedFirst() {
+        var cache = createCache(2);
+        var code = "1 + 1";
+        var remote = cache.key(Engine.REMOTE, code);
+        var local = cache.key(Engine.LOCAL, code);
+        assertThat(cache.key(Engine.LOCAL, "1 + 1   \r\n")).isEqualTo(local);
+        cache.limits.wallTime = Duration.ofSeconds(10);
+        var longer = cache.key(Engine.REMOTE, code);
+        assertThat(remote).isNotEqualTo(local).isNotEqualTo(longer);
+
+        cache.put(remote, ExecutionResult.success("2"));
+        cache.put(local, ExecutionResult.success("2"));
+        assertThat(cache.result(remote)).isPresent();
+        cache.put(longer, ExecutionResult.success("2"));
+
+        assertThat(cache.entries).containsOnlyKeys(remote, longer);
+        assertThat(cache.result(local)).isEmpty();
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Provide
+    Arbitrary<String> nondeterministic() {
+        return Arbitraries.of(
+            "System.nanoTime()",
+            "\\u0053ystem.nanoTime()",
+            "System.\\u006eanoTime()",
+            "var r = new java.util.Random(); r.nextInt()",
+            "import static java.lang.System.nanoTime; nanoTime()",
+            "import static java.lang.System.*; currentTimeMillis()",
+            "import java.util.*; new Random().nextInt()",
+            "Math.random()",
+            "Set.of(1, 2, 3)",
+            "var map = Map.ofEntries(Map.entry(1, 2)); map",
+            "new Object().hashCode()",
+            "List.of(1, 2).stream().collect(Collectors.toSet())",
+            "List.of(1, 2).parallelStream().toList()",
+            "Thread.sleep(1)",
+            "System.getenv(\"HOME\")",
+            "Files.readString(Path.of(\"/etc/hostname\"))",
+            "String.class.getName()",
+            "LocalDate.now()");
+    }
+
+    @Provide
+    Arbitrary<String> deterministic() {
+        return Arbitraries.of(
+            "1 + 1",
+            "System.out.println(\"System.nanoTime()\")",
+            "// new Random()\n\"done\"",
+            "import java.util.*; List.of(3, 1, 2).stream().sorted().map(i -> i * 2).toList()",
+            "record Point(int x, int y) {} new Point(1, 2)",
+            "enum Color { RED } Color.RED.name()",
+            "var map = new TreeMap<String, Integer>(); map.put(\"a\", 1); map",
+            "String.join(System.lineSeparator(), \"a\", \"b\")");
+    }
+
+    static ResultCache createCache(int maxEntries) {
+        var cache = new ResultCache();
+        cache.maxEntries = maxEntries;
+        cache.meter = OpenTelemetry.noop().getMeter("test");
+        cache.limits = new ExecutionLimits();
+        cache.limits.wallTime = Duration.ofSeconds(3);
+        cache.limits.cpuTime = Duration.ofSeconds(2);
+        cache.limits.maxHeap = "64m";
+        cache.limits.maxOutputBytes = 65536;
+        cache.registerMetrics();
+        return cache;
+    }
+}
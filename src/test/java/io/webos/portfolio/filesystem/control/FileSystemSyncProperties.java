@@ -1,11 +1,15 @@
 package io.webos.portfolio.filesystem.control;
 
+import io.webos.portfolio.filesystem.entity.FileNode;
 import io.webos.portfolio.filesystem.entity.FileType;
 import io.webos.portfolio.terminal.control.CommandService;
 import net.jqwik.api.*;
 import net.jqwik.api.constraints.AlphaChars;
 import net.jqwik.api.constraints.StringLength;
 
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -176,6 +180,52 @@ class FileSystemSyncProperties {
         assertThat(deletedNode).isEmpty();
     }
 
+    /**
+     * Deleting a directory that still has entries via rm -r SHALL remove it and every entry
+     * below it, and leave no index entry for any of them.
+     */
+    @Example
+    void rmRecursiveRemovesANonEmptyDirectoryAndItsIndexEntries() {
+        var fileSystemService = new FileSystemService();
+        var commandService = createCommandService(fileSystemService);
+        var doomed = Set.copyOf(fileSystemService.collectChildIds("projects"));
+        assertThat(doomed).isNotEmpty();
+
+        var result = commandService.execute("rm -r Projects");
+
+        assertThat(result.success()).isTrue();
+        assertThat(fileSystemService.findById("projects")).isEmpty();
+        assertThat(doomed).allMatch(id -> fileSystemService.findById(id).isEmpty());
+        assertThat(fileSystemService.children).doesNotContainKeys("projects");
+        assertThat(fileSystemService.names).doesNotContainKeys("projects");
+        assertThat(fileSystemService.completeName("desktop", "Proj")).isEmpty();
+    }
+
+    /**
+     * The name index and the children of a directory SHALL agree for every reader
+     * while another thread creates and deletes entries in it.
+     */
+    @Example
+    void indexesAgreeWithTheTableDuringConcurrentMutations() throws InterruptedException {
+        var fileSystemService = new FileSystemService();
+        var writer = Thread.ofPlatform().start(() -> {
+            for (var i = 0; i < 2_000; i++) {
+                var node = fileSystemService.createNode("desktop", "bean-" + i + ".txt", FileType.FILE, "");
+                fileSystemService.deleteNode(node.id());
+            }
+        });
+
+        var disagreements = 0;
+        while (writer.isAlive()) {
+            var agree = fileSystemService.read(() -> Set.copyOf(fileSystemService.completeName("desktop", ""))
+                .equals(fileSystemService.findByParentId("desktop").stream().map(FileNode::name).collect(Collectors.toSet())));
+            disagreements += agree ? 0 : 1;
+        }
+        writer.join();
+
+        assertThat(disagreements).isZero();
+    }
+
     /**
      * Creates a CommandService with injected FileSystemService.
      * Uses reflection to set the field since we're not in a CDI context.
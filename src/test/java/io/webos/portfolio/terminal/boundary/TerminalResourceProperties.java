@@ -0,0 +1,95 @@
+package io.webos.portfolio.terminal.boundary;
+
+import io.webos.portfolio.filesystem.control.FileSystemService;
+import io.webos.portfolio.filesystem.entity.FileType;
+import io.webos.portfolio.terminal.control.CommandService;
+import jakarta.json.Json;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import net.jqwik.api.*;
+
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for streaming terminal output as server-sent events.
+ */
+class TerminalResourceProperties {
+
+    static final int CHUNK_SIZE = 8 * 1024;
+
+    List<OutboundSseEvent> sent = new CopyOnWriteArrayList<>();
+
+    /**
+     * Output larger than a chunk SHALL arrive as output events of at most a chunk and a record each,
+     * holding every record in order, followed by one exit event with the exit status.
+     */
+    @Example
+    void outputArrivesInChunksFollowedByTheExitEvent() {
+        var fileSystemService = new FileSystemService();
+        var resource = createResource(fileSystemService);
+        var lines = IntStream.range(0, 2_000).mapToObj(i -> "line " + i).toList();
+        fileSystemService.createNode("desktop", "lines.txt", FileType.FILE, String.join("\n", lines));
+        var request = Json.createObjectBuilder().add("sessionId", "duke").add("command", "cat lines.txt").build();
+
+        resource.executeStreaming(request, sink(), sse());
+
+        var output = this.sent.subList(0, this.sent.size() - 1);
+        var exit = this.sent.getLast();
+        assertThat(output).hasSizeGreaterThan(1)
+            .allMatch(event -> event.getName().equals("output"))
+            .allMatch(event -> ((String) event.getData()).length() < CHUNK_SIZE + 16);
+        assertThat(output.stream().map(event -> (String) event.getData()).collect(Collectors.joining()))
+            .isEqualTo(String.join("\n", lines) + "\n");
+        assertThat(exit.getName()).isEqualTo("exit");
+        assertThat(Json.createReader(new StringReader((String) exit.getData())).readObject().getInt("exitStatus")).isZero();
+    }
+
+    /**
+     * Creates a TerminalResource whose CommandService works on the given FileSystemService,
+     * set by reflection since we're not in a CDI context.
+     */
+    TerminalResource createResource(FileSystemService fileSystemService) {
+        var resource = new TerminalResource();
+        resource.commandService = new CommandService();
+        try {
+            var field = CommandService.class.getDeclaredField("fileSystemService");
+            field.setAccessible(true);
+            field.set(resource.commandService, fileSystemService);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to inject FileSystemService", e);
+        }
+        return resource;
+    }
+
+    SseEventSink sink() {
+        return (SseEventSink) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SseEventSink.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "send" -> {
+                    this.sent.add((OutboundSseEvent) args[0]);
+                    yield CompletableFuture.completedFuture(null);
+                }
+                case "isClosed" -> false;
+                default -> null;
+            });
+    }
+
+    Sse sse() {
+        return (Sse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Sse.class},
+            (proxy, method, args) -> event((String) args[0], (String) args[1]));
+    }
+
+    static OutboundSseEvent event(String name, String data) {
+        return (OutboundSseEvent) Proxy.newProxyInstance(TerminalResourceProperties.class.getClassLoader(),
+            new Class<?>[]{OutboundSseEvent.class},
+            (proxy, method, args) -> method.getName().equals("getName") ? name : data);
+    }
+}
@@ -0,0 +1,150 @@
+package io.webos.portfolio.terminal.boundary;
+
+import io.webos.portfolio.terminal.control.CommandService;
+import io.webos.portfolio.terminal.entity.CommandResult;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+import net.jqwik.api.*;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the frames exchanged over the terminal WebSocket.
+ */
+class TerminalSocketProperties {
+
+    List<String> sent = new CopyOnWriteArrayList<>();
+
+    @Example
+    void executeRepliesWithOutputExitAndContextCarryingTheRequestId() {
+        var socket = createSocket();
+
+        socket.handle("x7\tseq 2", session(), "duke");
+        socket.handle("x8\tfail", session(), "duke");
+
+        assertThat(this.sent).containsExactly(
+            "o7\t1\n", "o7\t2\n", "e7\t0", "c7\tdesktop\t/Desktop\tDesktop\t0",
+            "e8\t1\tfail: command not found", "c8\tdesktop\t/Desktop\tDesktop\t0");
+    }
+
+    @Example
+    void autocompleteAndContextAreAnsweredWithoutExecuting() {
+        var socket = createSocket();
+
+        socket.handle("a1\tech", session(), "duke");
+        socket.handle("c2", session(), "duke");
+
+        assertThat(this.sent).containsExactly("a1\techo\nexit", "c2\tdesktop\t/Desktop\tDesktop\t0");
+    }
+
+    /**
+     * Frames of one connection SHALL be answered one after another, in the order they arrived,
+     * even while a command is still streaming its output.
+     */
+    @Example
+    void framesOfAConnectionAreAnsweredInOrder() throws InterruptedException {
+        var socket = createSocket();
+        var session = session();
+
+        socket.onMessage("x1\tseq 3", session, "duke");
+        socket.onMessage("a2\tech", session, "duke");
+        socket.onMessage("c3", session, "duke");
+        TerminalSocket.frames(session).shutdown();
+
+        assertThat(TerminalSocket.frames(session).awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(this.sent).containsExactly(
+            "o1\t1\n", "o1\t2\n", "o1\t3\n", "e1\t0", "c1\tdesktop\t/Desktop\tDesktop\t0",
+            "a2\techo\nexit", "c3\tdesktop\t/Desktop\tDesktop\t0");
+    }
+
+    /**
+     * For any text that is not a request frame, the socket SHALL answer with an error frame.
+     */
+    @Property(tries = 50)
+    void malformedFramesAreAnsweredWithAnError(@ForAll("notRequests") String message) {
+        this.sent.clear();
+
+        createSocket().handle(message, session(), "duke");
+
+        assertThat(this.sent).hasSize(1);
+        assertThat(this.sent.getFirst()).startsWith("!");
+    }
+
+    @Provide
+    Arbitrary<String> notRequests() {
+        var replies = Arbitraries.of("o", "e", "!").flatMap(code -> Arbitraries.strings().ofMaxLength(10).map(code::concat));
+        var unknown = Arbitraries.strings().ofMinLength(1).ofMaxLength(10).filter(text -> "xcaoe!".indexOf(text.charAt(0)) < 0);
+        return Arbitraries.oneOf(replies, unknown, Arbitraries.just(""));
+    }
+
+    TerminalSocket createSocket() {
+        var socket = new TerminalSocket();
+        socket.commandService = new ScriptedCommands();
+        return socket;
+    }
+
+    /**
+     * Streams each line of "seq n" as its own chunk and fails everything else, like a missing command.
+     */
+    static class ScriptedCommands extends CommandService {
+
+        @Override
+        public CommandResult stream(String sessionId, String input, Consumer<String> chunks) {
+            if (!input.startsWith("seq ")) {
+                return CommandResult.failure(input + ": command not found");
+            }
+            for (var line = 1; line <= Integer.parseInt(input.substring(4)); line++) {
+                chunks.accept(line + "\n");
+            }
+            return CommandResult.success("");
+        }
+
+        @Override
+        public List<String> autocomplete(String sessionId, String input) {
+            return List.of("echo", "exit");
+        }
+
+        @Override
+        public JsonObject context(String sessionId) {
+            return Json.createObjectBuilder()
+                .add("currentDirectory", "desktop")
+                .add("currentPath", "/Desktop")
+                .add("currentDirName", "Desktop")
+                .add("lastExitStatus", 0)
+                .build();
+        }
+    }
+
+    /**
+     * An open session whose basic remote records the frames sent, standing in for the container's.
+     */
+    Session session() {
+        var remote = (RemoteEndpoint.Basic) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{RemoteEndpoint.Basic.class}, (proxy, method, args) -> record(method.getName(), args));
+        var properties = new HashMap<String, Object>();
+        var session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getBasicRemote" -> remote;
+                case "getUserProperties" -> properties;
+                default -> null;
+            });
+        TerminalSocket.attach(session, "duke");
+        return session;
+    }
+
+    Object record(String method, Object[] args) {
+        if (method.equals("sendText")) {
+            this.sent.add((String) args[0]);
+        }
+        return null;
+    }
+}
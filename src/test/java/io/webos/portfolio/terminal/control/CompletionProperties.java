@@ -0,0 +1,60 @@
+package io.webos.portfolio.terminal.control;
+
+import io.webos.portfolio.filesystem.control.FileSystemService;
+import net.jqwik.api.*;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for completing commands, flags and paths in the terminal.
+ */
+class CompletionProperties {
+
+    @Example
+    void pathsAreCompletedWithinTheDirectoriesTheyName() {
+        var commandService = createCommandService();
+
+        assertThat(commandService.autocomplete("duke", "cat Projects/"))
+            .containsExactly("Projects/REST API Framework", "Projects/WebOS Portfolio");
+        assertThat(commandService.autocomplete("duke", "cat Projects/w")).containsExactly("Projects/WebOS Portfolio");
+        assertThat(commandService.autocomplete("duke", "cat Nowhere/")).isEmpty();
+        assertThat(commandService.autocomplete("duke", "grep -")).containsExactly("-i", "-l", "-n", "-r", "-v");
+        assertThat(commandService.autocomplete("duke", "rm -r")).containsExactly("-r");
+        assertThat(commandService.autocomplete("duke", "pwd -")).isEmpty();
+    }
+
+    /**
+     * Commands and names used recently SHALL come first, whatever the default locale, and the
+     * others SHALL keep their alphabetical order.
+     */
+    @Example
+    void recentlyUsedCandidatesComeFirst() {
+        var defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            var commandService = createCommandService();
+            assertThat(commandService.autocomplete("duke", "w")).containsExactly("wait", "wc", "whoami");
+
+            commandService.execute("duke", "whoami");
+            commandService.execute("duke", "cat 'Projects/WebOS Portfolio'");
+            commandService.execute("duke", "wc 'Projects/REST API Framework'");
+
+            assertThat(commandService.autocomplete("duke", "w")).containsExactly("wc", "whoami", "wait");
+            assertThat(commandService.autocomplete("duke", "cat Projects/"))
+                .containsExactly("Projects/REST API Framework", "Projects/WebOS Portfolio");
+            commandService.execute("duke", "cat 'PROJECTS/WEBOS PORTFOLIO'");
+            assertThat(commandService.autocomplete("duke", "cat Projects/"))
+                .containsExactly("Projects/WebOS Portfolio", "Projects/REST API Framework");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    CommandService createCommandService() {
+        var commandService = new CommandService();
+        commandService.fileSystemService = new FileSystemService();
+        return commandService;
+    }
+}
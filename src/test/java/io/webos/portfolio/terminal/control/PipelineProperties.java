@@ -0,0 +1,193 @@
+package io.webos.portfolio.terminal.control;
+
+import io.webos.portfolio.filesystem.control.FileSystemService;
+import io.webos.portfolio.terminal.entity.ScriptLine;
+import io.webos.portfolio.terminal.entity.Stage;
+import net.jqwik.api.*;
+import net.jqwik.api.constraints.AlphaChars;
+import net.jqwik.api.constraints.Size;
+import net.jqwik.api.constraints.StringLength;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the terminal pipeline: parsing, redirection and text operators.
+ */
+class PipelineProperties {
+
+    /**
+     * For any lines appended to a file, sort | uniq SHALL yield the sorted distinct lines.
+     */
+    @Property(tries = 50)
+    void sortUniqYieldsSortedDistinctLines(
+            @ForAll @Size(min = 1, max = 20) List<@AlphaChars @StringLength(min = 1, max = 8) String> lines
+    ) {
+        var commandService = createCommandService();
+        lines.forEach(line -> commandService.execute("echo " + line + " >> lines.txt"));
+
+        var result = commandService.execute("cat lines.txt | sort | uniq");
+
+        var expected = String.join("\n", lines.stream().sorted().distinct().toList());
+        assertThat(result.success()).isTrue();
+        assertThat(result.output()).isEqualTo(expected);
+    }
+
+    @Example
+    void quotesEscapesAndOperatorsAreTokenized() {
+        UnaryOperator<String> variables = name -> "HOME".equals(name) ? "/Desktop" : "";
+
+        var pipeline = CommandLineParser.parse("grep 'a|b' \"$HOME/x y\" a\\ b < in.txt | head -n 2 >> out.txt", variables);
+
+        assertThat(pipeline.stages()).containsExactly(
+            new Stage("grep", List.of("a|b", "/Desktop/x y", "a b")),
+            new Stage("head", List.of("-n", "2")));
+        assertThat(pipeline.inputFile()).isEqualTo("in.txt");
+        assertThat(pipeline.outputFile()).isEqualTo("out.txt");
+        assertThat(pipeline.append()).isTrue();
+    }
+
+    @Example
+    void operatorsFilterFileContent() {
+        var commandService = createCommandService();
+        commandService.execute("echo \"quarkus rocks\" > beans.txt");
+        commandService.execute("echo \"jakarta ee\" >> beans.txt");
+        commandService.execute("echo \"microprofile config\" >> beans.txt");
+
+        assertThat(commandService.execute("grep -n -i JAKARTA beans.txt").output()).isEqualTo("2:jakarta ee");
+        assertThat(commandService.execute("cat beans.txt | grep -v ee | tail -1").output()).isEqualTo("microprofile config");
+        assertThat(commandService.execute("wc < beans.txt").output()).isEqualTo("3 6 45");
+        assertThat(commandService.execute("cat missing.txt | head").error()).isEqualTo("File not found: missing.txt");
+    }
+
+    @Example
+    void findAndRecursiveGrepSearchSubdirectories() {
+        var commandService = createCommandService();
+        commandService.execute("mkdir cdi");
+        commandService.execute("cd cdi");
+        commandService.execute("echo \"@Inject beats new\" > beans.txt");
+        commandService.execute("cd");
+
+        var found = commandService.execute("find . -name \"*.txt\" | sort");
+        var matches = commandService.execute("grep -r -n inject . -i");
+
+        assertThat(found.output()).isEqualTo("./About Me.txt\n./cdi/beans.txt");
+        assertThat(matches.output()).isEqualTo("./cdi/beans.txt:1:@Inject beats new");
+    }
+
+    @Example
+    void unquotedWildcardsExpandToMatchingPaths() {
+        var commandService = createCommandService();
+        commandService.execute("mkdir logs");
+        commandService.execute("cd logs");
+        commandService.execute("touch a.log");
+        commandService.execute("touch b.log");
+        commandService.execute("touch notes.txt");
+        commandService.execute("cd");
+
+        assertThat(commandService.execute("echo logs/*.log").output()).isEqualTo("logs/a.log logs/b.log");
+        assertThat(commandService.execute("echo 'logs/*.log'").output()).isEqualTo("logs/*.log");
+        assertThat(commandService.execute("echo **/[!a]*.txt").output()).isEqualTo("About Me.txt logs/notes.txt");
+        assertThat(commandService.execute("echo logs/'*'*").output()).isEqualTo("logs/**");
+        assertThat(commandService.execute("echo \"logs/?\"*.log").output()).isEqualTo("logs/?*.log");
+        assertThat(commandService.execute("echo \"logs/a\"*").output()).isEqualTo("logs/a.log");
+
+        commandService.execute("rm logs/*.log");
+        assertThat(commandService.execute("ls logs").output()).isEqualTo("notes.txt");
+    }
+
+    @Example
+    void malformedCharacterClassesAreMatchedLiterally() {
+        var commandService = createCommandService();
+        commandService.execute("touch a.txt");
+
+        assertThat(Glob.compile("[z-a]*").matcher("[z-a].txt").matches()).isTrue();
+        assertThat(Glob.compile("[a-\\]").matcher("[a-\\]").matches()).isTrue();
+        assertThat(Glob.compile("[.^$]x").matcher("^x").matches()).isTrue();
+        assertThat(commandService.execute("echo [z-a]*").output()).isEqualTo("[z-a]*");
+    }
+
+    @Example
+    void historyDesignatorsAndReverseSearchFindEarlierCommands() {
+        var commandService = createCommandService();
+        commandService.execute("echo alpha");
+        commandService.execute("echo beta");
+        commandService.execute("pwd");
+
+        assertThat(commandService.execute("!2").output()).isEqualTo("beta");
+        assertThat(commandService.execute("echo '!!' !!").output()).isEqualTo("!! echo beta");
+        assertThat(commandService.execute("!99").error()).isEqualTo("!99: event not found");
+        assertThat(commandService.execute("!99999999999999999999").error())
+            .isEqualTo("!99999999999999999999: event not found");
+
+        var latest = commandService.searchHistory(null, "ec", Long.MAX_VALUE).orElseThrow();
+        var narrowed = commandService.searchHistory(null, "echo a", Long.MAX_VALUE).orElseThrow();
+        var earlier = commandService.searchHistory(null, "echo", latest.number()).orElseThrow();
+        assertThat(latest.command()).isEqualTo("echo '!!' echo beta");
+        assertThat(narrowed.command()).isEqualTo("echo alpha");
+        assertThat(earlier.command()).isEqualTo("echo beta");
+        assertThat(commandService.execute("history 2").output()).isEqualTo("    5  echo '!!' echo beta\n    6  history 2");
+        assertThat(commandService.execute("echo \"don't\" !!").output()).isEqualTo("don't history 2");
+    }
+
+    @Example
+    void scriptLinesHonourListOperatorsAndVariables() {
+        var commandService = createCommandService();
+        var script = """
+            # setup
+            DIR=work; mkdir $DIR && cd $DIR
+            cat missing.txt || echo "fallback in $DIR"
+            false && echo skipped
+            echo 'a && b; c' ; pwd
+            echo never
+            """;
+
+        var lines = commandService.runScript(null, script, true);
+
+        assertThat(lines).extracting(ScriptLine::line).containsExactly(2, 3, 4);
+        assertThat(lines.get(1).result().output()).isEqualTo("fallback in work");
+        assertThat(lines.get(2).result().error()).isEqualTo("Unknown command: false");
+        assertThat(commandService.runScript(null, "echo 'a && b; c' ; pwd", true).getFirst().result().output())
+            .isEqualTo("a && b; c\n/Desktop/work");
+    }
+
+    @Example
+    void backgroundJobsRunConcurrentlyAndCanBeKilled() {
+        var commandService = createCommandService();
+
+        assertThat(commandService.execute("sleep 30 & echo hello &").output()).isEqualTo("[1] sleep 30\n[2] echo hello");
+        assertThat(commandService.execute("fg %2").output()).isEqualTo("hello");
+        assertThat(commandService.execute("jobs").output()).isEqualTo("[1]  Running  sleep 30");
+
+        assertThat(commandService.execute("kill %1").success()).isTrue();
+        assertThat(commandService.execute("jobs").output()).isEmpty();
+        assertThat(commandService.execute("cat missing.txt & wait").error()).isEqualTo("File not found: missing.txt");
+    }
+
+    /**
+     * What a producer collected SHALL be flushed while it waits for its next record, not only
+     * once the next record arrives.
+     */
+    @Example
+    void outputIsFlushedWhileTheProducerWaits() throws InterruptedException {
+        var chunks = new CopyOnWriteArrayList<String>();
+
+        try (var output = new ChunkedOutput(chunks::add, CommandService.CHUNK_SIZE, CommandService.FLUSH_INTERVAL_MS)) {
+            output.append("first");
+            Thread.sleep(CommandService.FLUSH_INTERVAL_MS * 4);
+            assertThat(chunks).containsExactly("first\n");
+            output.append("second");
+        }
+
+        assertThat(chunks).containsExactly("first\n", "second\n");
+    }
+
+    CommandService createCommandService() {
+        var commandService = new CommandService();
+        commandService.fileSystemService = new FileSystemService();
+        return commandService;
+    }
+}
@@ -0,0 +1,49 @@
+package io.webos.portfolio.terminal.control;
+
+import net.jqwik.api.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the bounded registry of terminal sessions.
+ */
+class TerminalSessionsProperties {
+
+    @Example
+    void creatingBeyondTheCapEvictsTheLeastRecentlyUsedSession() throws InterruptedException {
+        var sessions = new TerminalSessions();
+        sessions.maxSessions = 2;
+        var quarkus = sessions.session("quarkus");
+        Thread.sleep(2);
+        sessions.session("jakarta");
+        Thread.sleep(2);
+        sessions.session("quarkus");
+        Thread.sleep(2);
+
+        sessions.session("microprofile");
+
+        assertThat(sessions.size()).isEqualTo(2);
+        assertThat(sessions.sessions).containsOnlyKeys("quarkus", "microprofile");
+        assertThat(sessions.session("quarkus")).isSameAs(quarkus);
+    }
+
+    /**
+     * For any number of distinct session ids, the registry SHALL never hold more than maxSessions.
+     */
+    @Property(tries = 20)
+    void clientMintedIdsNeverExceedTheCap(@ForAll("sessionCounts") int count) {
+        var sessions = new TerminalSessions();
+        sessions.maxSessions = 8;
+
+        for (var i = 0; i < count; i++) {
+            sessions.session("visitor-" + i);
+        }
+
+        assertThat(sessions.size()).isEqualTo(Math.min(count, 8));
+    }
+
+    @Provide
+    Arbitrary<Integer> sessionCounts() {
+        return Arbitraries.integers().between(1, 200);
+    }
+}
@@ -50,53 +50,183 @@ export async function deleteNode(id: string): Promise<void> {
   if (!response.ok) throw new Error('Failed to delete node')
 }
 
+const TERMINAL_SESSION_KEY = 'webos-terminal-session'
+
+function terminalSessionId(): string {
+  let sessionId = sessionStorage.getItem(TERMINAL_SESSION_KEY)
+  if (!sessionId) {
+    sessionId = crypto.randomUUID()
+    sessionStorage.setItem(TERMINAL_SESSION_KEY, sessionId)
+  }
+  return sessionId
+}
+
 export async function executeCommand(command: string): Promise<CommandResult> {
   const response = await fetch(`${API_BASE}/terminal/exec`, {
     method: 'POST',
     headers: { 'Content-Type': 'application/json' },
-    body: JSON.stringify({ command })
+    body: JSON.stringify({ sessionId: terminalSessionId(), command })
   })
   if (!response.ok) throw new Error('Failed to execute command')
   return response.json()
 }
 
 export interface TerminalContext {
+  sessionId: string
   currentDirectory: string
   currentPath: string
   currentDirName: string
+  lastExitStatus: number
 }
 
 export async function fetchTerminalContext(): Promise<TerminalContext> {
-  const response = await fetch(`${API_BASE}/terminal/context`)
+  const response = await fetch(`${API_BASE}/terminal/context?sessionId=${terminalSessionId()}`)
   if (!response.ok) throw new Error('Failed to fetch terminal context')
   return response.json()
 }
 
 export async function fetchAutocomplete(input: string): Promise<string[]> {
-  const response = await fetch(`${API_BASE}/terminal/autocomplete?input=${encodeURIComponent(input)}`)
+  const response = await fetch(`${API_BASE}/terminal/autocomplete?sessionId=${terminalSessionId()}&input=${encodeURIComponent(input)}`)
   if (!response.ok) throw new Error('Failed to fetch autocomplete')
   const data = await response.json()
   return data.suggestions
 }
 
+export interface HistoryEntry {
+  number: number
+  command: string
+}
+
+export async function fetchCommandHistory(): Promise<HistoryEntry[]> {
+  const response = await fetch(`${API_BASE}/terminal/history?sessionId=${terminalSessionId()}`)
+  if (!response.ok) throw new Error('Failed to fetch command history')
+  const data = await response.json()
+  return data.entries
+}
+
+export async function searchCommandHistory(query: string, before?: number): Promise<HistoryEntry | null> {
+  const beforeParam = before === undefined ? '' : `&before=${before}`
+  const response = await fetch(`${API_BASE}/terminal/history/search?sessionId=${terminalSessionId()}&query=${encodeURIComponent(query)}${beforeParam}`)
+  if (response.status === 404) return null
+  if (!response.ok) throw new Error('Failed to search command history')
+  return response.json()
+}
+
 export function createProcessesEventSource(): EventSource {
   return new EventSource(`${API_BASE}/processes`)
 }
 
 export interface ExecutionResponse {
   output: string
+  limit?: 'wall-time' | 'cpu-time' | 'memory' | 'output'
+  lossy?: boolean
+}
+
+const JSHELL_SESSION_KEY = 'webos-jshell-session'
+
+function jshellSessionId(): string {
+  let sessionId = sessionStorage.getItem(JSHELL_SESSION_KEY)
+  if (!sessionId) {
+    sessionId = crypto.randomUUID()
+    sessionStorage.setItem(JSHELL_SESSION_KEY, sessionId)
+  }
+  return sessionId
 }
 
 export async function executeCode(code: string): Promise<ExecutionResponse> {
   const response = await fetch(`${API_BASE}/compiler/execute`, {
     method: 'POST',
     headers: { 'Content-Type': 'application/json' },
-    body: JSON.stringify({ code })
+    body: JSON.stringify({ code, sessionId: jshellSessionId() })
   })
   if (!response.ok) throw new Error('Failed to execute code')
   return response.json()
 }
 
+export interface CodeDiagnostic {
+  severity: 'error' | 'warning'
+  message: string
+  start: number
+  end: number
+  line: number
+  column: number
+}
+
+export interface CodeAnalysis {
+  completeness: string
+  diagnostics: CodeDiagnostic[]
+}
+
+export interface CodeCompletion {
+  anchor: number
+  suggestions: string[]
+  signatures: string[]
+}
+
+export async function analyzeCode(code: string, signal?: AbortSignal): Promise<CodeAnalysis> {
+  const response = await fetch(`${API_BASE}/compiler/analyze`, {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify({ code }),
+    signal
+  })
+  if (!response.ok) throw new Error('Failed to analyze code')
+  return response.json()
+}
+
+export async function completeCode(code: string, cursor: number): Promise<CodeCompletion> {
+  const response = await fetch(`${API_BASE}/compiler/complete`, {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify({ code, cursor })
+  })
+  if (!response.ok) throw new Error('Failed to complete code')
+  return response.json()
+}
+
+export interface StreamedEvent {
+  event: string
+  data: string
+}
+
+/**
+ * Executes code and reports stdout, stderr, snippet and done events while it runs.
+ * EventSource cannot POST, so the event stream is read from the response body.
+ */
+export async function streamCode(code: string, onEvent: (event: StreamedEvent) => void): Promise<void> {
+  const response = await fetch(`${API_BASE}/compiler/execute/stream`, {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json', 'Accept': 'text/event-stream' },
+    body: JSON.stringify({ code, sessionId: jshellSessionId() })
+  })
+  if (response.status === 429) throw new Error('Too many executions, please retry shortly')
+  if (!response.ok || !response.body) throw new Error('Failed to execute code')
+
+  const reader = response.body.pipeThrough(new TextDecoderStream()).getReader()
+  let buffered = ''
+  for (;;) {
+    const { value, done } = await reader.read()
+    if (done) return
+    buffered += value
+    let boundary = buffered.indexOf('\n\n')
+    while (boundary >= 0) {
+      const lines = buffered.slice(0, boundary).split('\n')
+      buffered = buffered.slice(boundary + 2)
+      const event = lines.find(line => line.startsWith('event:'))?.slice(6) ?? 'message'
+      const data = lines.filter(line => line.startsWith('data:')).map(line => line.slice(5)).join('\n')
+      onEvent({ event, data })
+      boundary = buffered.indexOf('\n\n')
+    }
+  }
+}
+
+export async function resetJShellSession(): Promise<void> {
+  const response = await fetch(`${API_BASE}/compiler/sessions/${jshellSessionId()}`, {
+    method: 'DELETE'
+  })
+  if (!response.ok && response.status !== 404) throw new Error('Failed to reset session')
+}
+
 // Minesweeper API functions
 export async function newMinesweeperGame(sessionId: string): Promise<GameResponse> {
   const response = await fetch(`${API_BASE}/games/minesweeper/new`, {
@@ -1,5 +1,6 @@
 import { useState, useRef, useEffect } from 'react'
-import { executeCode } from '../../api'
+import { analyzeCode, completeCode, resetJShellSession, streamCode } from '../../api'
+import type { CodeCompletion, CodeDiagnostic } from '../../api'
 
 interface JShellStudioProps {
   onClose: () => void
@@ -14,17 +15,73 @@ int x = 10;
 int y = 20;
 x + y`
 
+const ANALYZE_DELAY_MS = 300
+
+interface SnippetEvent {
+  name?: string
+  value?: string
+  diagnostics: string[]
+  exception?: string
+}
+
+function formatSnippet(snippet: SnippetEvent): string {
+  if (snippet.exception) return `Runtime Error: ${snippet.exception}\n`
+  if (snippet.diagnostics.length > 0) return snippet.diagnostics.join('\n') + '\n'
+  if (snippet.name && snippet.value !== undefined) return `${snippet.name} ==> ${snippet.value}\n`
+  return ''
+}
+
 export function JShellStudio({ onClose }: JShellStudioProps) {
   const [code, setCode] = useState(DEFAULT_CODE)
   const [output, setOutput] = useState('')
   const [isExecuting, setIsExecuting] = useState(false)
   const [error, setError] = useState<string | null>(null)
+  const [diagnostics, setDiagnostics] = useState<CodeDiagnostic[]>([])
+  const [completion, setCompletion] = useState<CodeCompletion | null>(null)
   const textareaRef = useRef<HTMLTextAreaElement>(null)
 
   useEffect(() => {
     textareaRef.current?.focus()
   }, [])
 
+  useEffect(() => {
+    const controller = new AbortController()
+    const timer = setTimeout(() => {
+      analyzeCode(code, controller.signal)
+        .then(analysis => setDiagnostics(analysis.diagnostics))
+        .catch(() => {})
+    }, ANALYZE_DELAY_MS)
+    return () => {
+      clearTimeout(timer)
+      controller.abort()
+    }
+  }, [code])
+
+  async function handleComplete() {
+    const cursor = textareaRef.current?.selectionStart ?? code.length
+    try {
+      const result = await completeCode(code, cursor)
+      if (result.suggestions.length === 1) {
+        applySuggestion(result, result.suggestions[0], cursor)
+      } else {
+        setCompletion(result.suggestions.length > 0 || result.signatures.length > 0 ? result : null)
+      }
+    } catch {
+      setCompletion(null)
+    }
+  }
+
+  function applySuggestion(result: CodeCompletion, suggestion: string, cursor = textareaRef.current?.selectionStart ?? code.length) {
+    const updated = code.slice(0, result.anchor) + suggestion + code.slice(cursor)
+    const position = result.anchor + suggestion.length
+    setCode(updated)
+    setCompletion(null)
+    requestAnimationFrame(() => {
+      textareaRef.current?.focus()
+      textareaRef.current?.setSelectionRange(position, position)
+    })
+  }
+
   async function handleRun() {
     if (isExecuting || !code.trim()) return
 
@@ -33,8 +90,19 @@ export function JShellStudio({ onClose }: JShellStudioProps) {
     setError(null)
 
     try {
-      const result = await executeCode(code)
-      setOutput(result.output)
+      await streamCode(code, ({ event, data }) => {
+        if (event === 'stdout' || event === 'stderr') {
+          setOutput(previous => previous + data)
+        } else if (event === 'snippet') {
+          setOutput(previous => previous + formatSnippet(JSON.parse(data)))
+        } else if (event === 'done') {
+          const done = JSON.parse(data)
+          if (done.status !== 'completed') {
+            const prefix = done.status === 'timeout' ? 'Timeout Error' : done.status === 'limit' ? 'Limit Error' : 'Error'
+            setError(`${prefix}: ${done.message}`)
+          }
+        }
+      })
     } catch (err) {
       setError(err instanceof Error ? err.message : 'Failed to execute code')
     } finally {
@@ -42,10 +110,26 @@ export function JShellStudio({ onClose }: JShellStudioProps) {
     }
   }
 
+  async function handleReset() {
+    if (isExecuting) return
+    setOutput('')
+    setError(null)
+    try {
+      await resetJShellSession()
+    } catch (err) {
+      setError(err instanceof Error ? err.message : 'Failed to reset session')
+    }
+  }
+
   function handleKeyDown(e: React.KeyboardEvent) {
     if (e.key === 'Enter' && (e.ctrlKey || e.metaKey)) {
       e.preventDefault()
       handleRun()
+    } else if (e.key === ' ' && e.ctrlKey) {
+      e.preventDefault()
+      handleComplete()
+    } else if (e.key === 'Escape') {
+      setCompletion(null)
     }
   }
 
@@ -85,7 +169,14 @@ export function JShellStudio({ onClose }: JShellStudioProps) {
             </>
           )}
         </button>
-        <span className="text-gray-500 text-xs">Ctrl+Enter to run</span>
+        <button
+          onClick={handleReset}
+          disabled={isExecuting}
+          className="px-3 py-1 bg-gray-700 hover:bg-gray-600 disabled:bg-gray-600 disabled:cursor-not-allowed rounded text-white text-xs font-medium transition-colors"
+        >
+          Reset
+        </button>
+        <span className="text-gray-500 text-xs">Ctrl+Enter to run · Ctrl+Space to complete</span>
       </div>
 
       <div className="flex-1 flex flex-col min-h-0">
@@ -93,7 +184,10 @@ export function JShellStudio({ onClose }: JShellStudioProps) {
           <textarea
             ref={textareaRef}
             value={code}
-            onChange={(e) => setCode(e.target.value)}
+            onChange={(e) => {
+              setCode(e.target.value)
+              setCompletion(null)
+            }}
             onKeyDown={handleKeyDown}
             disabled={isExecuting}
             placeholder="Enter Java code here..."
@@ -102,11 +196,44 @@ export function JShellStudio({ onClose }: JShellStudioProps) {
           />
         </div>
 
+        {completion && (
+          <div className="max-h-32 overflow-auto bg-gray-800 border-b border-gray-700 text-xs">
+            {completion.signatures.map(signature => (
+              <div key={signature} className="px-4 py-0.5 text-gray-400">{signature}</div>
+            ))}
+            {completion.suggestions.map(suggestion => (
+              <button
+                key={suggestion}
+                onClick={() => applySuggestion(completion, suggestion)}
+                className="block w-full text-left px-4 py-0.5 text-green-300 hover:bg-gray-700"
+              >
+                {suggestion}
+              </button>
+            ))}
+          </div>
+        )}
+
+        {diagnostics.length > 0 && (
+          <div className="max-h-24 overflow-auto bg-gray-900 border-b border-gray-700 text-xs">
+            {diagnostics.map(diagnostic => (
+              <div
+                key={`${diagnostic.start}:${diagnostic.message}`}
+                className={`px-4 py-0.5 whitespace-pre-wrap ${diagnostic.severity === 'error' ? 'text-red-400' : 'text-yellow-400'}`}
+              >
+                {diagnostic.line}:{diagnostic.column} {diagnostic.message}
+              </div>
+            ))}
+          </div>
+        )}
+
         <div className="h-1/3 min-h-[120px] flex flex-col">
           <div className="px-4 py-1 bg-gray-800 text-gray-400 text-xs border-b border-gray-700">
             Output
           </div>
           <div className="flex-1 overflow-auto p-5 bg-black">
+            {output && (
+              <pre className="text-gray-300 whitespace-pre-wrap">{output}</pre>
+            )}
             {isExecuting && (
               <div className="flex items-center gap-2 text-yellow-400">
                 <span className="animate-pulse">●</span>
@@ -116,9 +243,6 @@ export function JShellStudio({ onClose }: JShellStudioProps) {
             {error && (
               <pre className="text-red-400 whitespace-pre-wrap">{error}</pre>
             )}
-            {!isExecuting && !error && output && (
-              <pre className="text-gray-300 whitespace-pre-wrap">{output}</pre>
-            )}
             {!isExecuting && !error && !output && (
               <span className="text-gray-600">Click Run to execute your code</span>
             )}
@@ -83,7 +83,9 @@ export function MobileTerminal({ onClose, onFileSystemChange }: MobileTerminalPr
   clear        - Clear terminal
   uname        - System information
   whoami       - Current user
-  java -v      - Java version`,
+  java -v      - Java version
+  javac [f...] - Compile Java files
+  java <f|cls> - Compile and run Java`,
         isError: false,
         path: currentPath
       }])
@@ -1,5 +1,5 @@
 import { useState, useRef, useEffect, type KeyboardEvent } from 'react'
-import { executeCommand, fetchTerminalContext, fetchAutocomplete } from '../../api'
+import { executeCommand, fetchTerminalContext, fetchAutocomplete, fetchCommandHistory, searchCommandHistory } from '../../api'
 
 interface TerminalProps {
   onClose: () => void
@@ -22,12 +22,14 @@ export function Terminal({ onClose, onFileSystemChange }: TerminalProps) {
   const [currentPath, setCurrentPath] = useState('/Desktop')
   const [suggestions, setSuggestions] = useState<string[]>([])
   const [suggestionIndex, setSuggestionIndex] = useState(0)
+  const [search, setSearch] = useState<{ query: string, number: number } | null>(null)
   const inputRef = useRef<HTMLInputElement>(null)
   const outputRef = useRef<HTMLDivElement>(null)
 
   useEffect(() => {
     inputRef.current?.focus()
     refreshContext()
+    loadCommandHistory()
   }, [])
 
   useEffect(() => {
@@ -43,6 +45,29 @@ export function Terminal({ onClose, onFileSystemChange }: TerminalProps) {
     }
   }
 
+  async function loadCommandHistory() {
+    try {
+      const entries = await fetchCommandHistory()
+      setCommandHistory(entries.map(entry => entry.command))
+    } catch {
+      // Start with an empty history on error
+    }
+  }
+
+  async function reverseSearch() {
+    try {
+      // Repeated Ctrl-R keeps the original query and continues before the last match
+      const query = search ? search.query : input
+      const match = await searchCommandHistory(query, search?.number)
+      if (match) {
+        setSearch({ query, number: match.number })
+        setInput(match.command)
+      }
+    } catch {
+      // Ignore search errors
+    }
+  }
+
   async function handleSubmit() {
     const trimmedInput = input.trim()
     if (!trimmedInput || isExecuting) return
@@ -75,7 +100,9 @@ export function Terminal({ onClose, onFileSystemChange }: TerminalProps) {
   clear        - Clear terminal
   uname        - System information
   whoami       - Current user
-  java -v      - Java version`,
+  java -v      - Java version
+  javac [f...] - Compile Java files
+  java <f|cls> - Compile and run Java`,
         isError: false,
         path: currentPath
       }])
@@ -150,6 +177,13 @@ export function Terminal({ onClose, onFileSystemChange }: TerminalProps) {
   }
 
   function handleKeyDown(e: KeyboardEvent<HTMLInputElement>) {
+    if (e.key === 'r' && e.ctrlKey) {
+      e.preventDefault()
+      reverseSearch()
+      return
+    }
+    setSearch(null)
+
     if (e.key === 'Tab') {
       e.preventDefault()
       handleTab()